@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.benchmarks;
+
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations of the {@link TeaRepositoryManager} on a {@link SyntheticRepository}.
+ * <p>
+ *     The repository is generated once per trial in a temporary directory, which can be changed with the
+ *     {@code java.io.tmpdir} system property.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryManagerBenchmark {
+
+    /**
+     * The number of components in the repository.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The storage backend of the repository.
+     */
+    @Param({TeaRepository.DIRECTORY_BACKEND})
+    public String backend;
+
+    private Path basePath;
+    private TeaRepositoryManager manager;
+    private SyntheticRepository repository;
+
+    /**
+     * Source of keys that are not present in the repository.
+     */
+    private int newKeyCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        basePath = Files.createTempDirectory("tea-benchmark");
+        manager = TeaRepositoryManagerFactory.getInstance()
+                .newInstance(TeaRepository.builder(basePath).backend(backend).build());
+        repository = SyntheticRepository.generate(manager, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        SyntheticRepository.delete(basePath);
+    }
+
+    private int randomIndex(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    private int newKey() {
+        return newKeyCounter++;
+    }
+
+    @Benchmark
+    public Component getOrCreateComponentByPurl_existing() throws IOException {
+        return manager.getOrCreateComponentByPurl(SyntheticRepository.componentPurl(randomIndex(size)));
+    }
+
+    @Benchmark
+    public Component getOrCreateComponentByPurl_new() throws IOException {
+        return manager.getOrCreateComponentByPurl(SyntheticRepository.componentPurl(size + newKey()));
+    }
+
+    @Benchmark
+    public Release getOrCreateRelease_existing() throws IOException {
+        return manager.getOrCreateRelease(
+                repository.components.get(randomIndex(size)), SyntheticRepository.RELEASE_VERSION);
+    }
+
+    @Benchmark
+    public Release getOrCreateRelease_new() throws IOException {
+        return manager.getOrCreateRelease(repository.components.get(randomIndex(size)), "2.0." + newKey());
+    }
+
+    @Benchmark
+    public Release saveRelease() throws IOException {
+        int index = randomIndex(size);
+        Release release = repository.releases.get(index);
+        // Modify the release, so that it is not skipped as unchanged
+        release.setPreRelease(!Boolean.TRUE.equals(release.getPreRelease()));
+        manager.saveRelease(repository.components.get(index), release);
+        return release;
+    }
+
+    @Benchmark
+    public Collection saveCollection() throws IOException {
+        Release release = repository.releases.get(randomIndex(size));
+        Collection collection = manager.getLatestCollection(release);
+        collection.setDate(collection.getDate().plusSeconds(1));
+        manager.saveCollection(collection);
+        return collection;
+    }
+
+    @Benchmark
+    public Collection getLatestCollection() throws IOException {
+        return manager.getLatestCollection(repository.releases.get(randomIndex(size)));
+    }
+
+    /**
+     * Saving an existing product only rewrites the page of {@code products.json} that contains it.
+     */
+    @Benchmark
+    public Product saveProduct() throws IOException {
+        Product product = modifyRandomProduct();
+        manager.saveProduct(product);
+        return product;
+    }
+
+    /**
+     * Committing a batch that modified a product regenerates all the pages of {@code products.json}.
+     */
+    @Benchmark
+    public Product saveProduct_batch() throws IOException {
+        Product product = modifyRandomProduct();
+        try (TeaRepositoryBatch batch = manager.beginBatch()) {
+            manager.saveProduct(product);
+            batch.commit();
+        }
+        return product;
+    }
+
+    private Product modifyRandomProduct() {
+        Product product = repository.products.get(randomIndex(repository.products.size()));
+        product.setName(product.getName().endsWith("*") ? product.getName().replace("*", "") : product.getName() + "*");
+        return product;
+    }
+}
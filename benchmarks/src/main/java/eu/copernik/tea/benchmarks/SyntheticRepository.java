@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.benchmarks;
+
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A synthetic TEA repository used by the benchmarks.
+ * <p>
+ *     For a given size {@code n}, the repository contains {@code n} components, each one with a release and a
+ *     collection, and {@code n / 10} products containing ten components each.
+ * </p>
+ */
+final class SyntheticRepository {
+
+    static final String RELEASE_VERSION = "1.0.0";
+    static final int COMPONENTS_PER_PRODUCT = 10;
+    static final OffsetDateTime RELEASE_DATE = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private static final int BATCH_SIZE = 1000;
+
+    final List<Component> components;
+    final List<Release> releases;
+    final List<Product> products;
+
+    private SyntheticRepository(List<Component> components, List<Release> releases, List<Product> products) {
+        this.components = components;
+        this.releases = releases;
+        this.products = products;
+    }
+
+    /**
+     * Returns the Package URL of the component with the given index.
+     */
+    static PackageURL componentPurl(int index) {
+        try {
+            return new PackageURL("maven", "org.example.benchmark", "component-" + index, null, null, null);
+        } catch (MalformedPackageURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Fills an empty repository.
+     *
+     * @param manager the repository manager
+     * @param size the number of components
+     */
+    static SyntheticRepository generate(TeaRepositoryManager manager, int size) throws IOException {
+        List<Component> components = new ArrayList<>(size);
+        List<Release> releases = new ArrayList<>(size);
+        List<Product> products = new ArrayList<>(size / COMPONENTS_PER_PRODUCT);
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            try (TeaRepositoryBatch batch = manager.beginBatch()) {
+                for (int i = start; i < Math.min(size, start + BATCH_SIZE); i++) {
+                    Component component = manager.getOrCreateComponentByPurl(componentPurl(i));
+                    component.setName("Component " + i);
+                    manager.saveComponent(component);
+                    components.add(component);
+
+                    Release release = manager.getOrCreateRelease(component, RELEASE_VERSION);
+                    release.setReleaseDate(RELEASE_DATE);
+                    manager.saveRelease(component, release);
+                    releases.add(release);
+
+                    manager.saveCollection(
+                            new Collection().uuid(release.getUuid()).version(1).date(RELEASE_DATE));
+
+                    if (i % COMPONENTS_PER_PRODUCT == COMPONENTS_PER_PRODUCT - 1) {
+                        Product product = new Product()
+                                .uuid(UUID.nameUUIDFromBytes(("product-" + i).getBytes(StandardCharsets.UTF_8)))
+                                .name("Product " + products.size());
+                        components
+                                .subList(i + 1 - COMPONENTS_PER_PRODUCT, i + 1)
+                                .forEach(c -> product.addComponentsItem(c.getUuid()));
+                        manager.saveProduct(product);
+                        products.add(product);
+                    }
+                }
+                batch.commit();
+            }
+        }
+        return new SyntheticRepository(components, releases, products);
+    }
+
+    /**
+     * Recursively deletes a directory.
+     */
+    static void delete(Path directory) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+/**
+ * A snapshot of the counters of a cache, such as the model cache of a {@link TeaRepositoryManager}.
+ *
+ * @param hitCount the number of lookups served from the cache
+ * @param missCount the number of lookups that required reading a file
+ * @param size the number of entries currently in the cache
+ */
+public record CacheStatistics(long hitCount, long missCount, int size) {}
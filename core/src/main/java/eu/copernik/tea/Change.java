@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An entry of the change feed of a repository.
+ * <p>
+ *     Every save that modifies a TEA object is recorded with a sequence number, which increases by one for each change
+ *     of the repository. Mirrors can use the sequence number of the last change they processed as a cursor.
+ * </p>
+ *
+ * @param sequence the sequence number of the change, starting at {@code 1}
+ * @param type the type of the modified object
+ * @param uuid the UUID of the modified object
+ * @param componentUuid the UUID of the component of a release, {@code null} for other types
+ * @param version the version of a release or collection, {@code null} for other types
+ * @param timestamp the time of the change
+ * @see TeaRepositoryManager#getChanges(long, int)
+ */
+public record Change(
+        long sequence,
+        Type type,
+        UUID uuid,
+        @Nullable UUID componentUuid,
+        @Nullable String version,
+        OffsetDateTime timestamp) {
+
+    /**
+     * The type of the modified TEA object.
+     */
+    public enum Type {
+        PRODUCT,
+        COMPONENT,
+        RELEASE,
+        COLLECTION
+    }
+
+    /**
+     * Returns a copy of this change with another sequence number.
+     *
+     * @param sequence the new sequence number
+     * @return a new change
+     */
+    public Change withSequence(long sequence) {
+        return new Change(sequence, type, uuid, componentUuid, version, timestamp);
+    }
+}
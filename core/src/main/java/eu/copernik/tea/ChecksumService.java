@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import eu.copernik.tea.internal.DefaultChecksumService;
+import eu.copernik.tea.model.ArtifactChecksum;
+import eu.copernik.tea.model.ArtifactChecksumType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the checksums of artifact files.
+ * <p>
+ *     Each file is read once, whatever the number of requested algorithms, and the results are cached as long as the
+ *     size and modification time of the file do not change.
+ * </p>
+ */
+public interface ChecksumService extends Closeable {
+
+    /**
+     * Creates a new checksum service.
+     *
+     * @param parallelism the maximum number of files hashed concurrently
+     * @param cacheSize the maximum number of files whose checksums are cached, or {@code 0} to disable the cache
+     * @return a new checksum service
+     */
+    static ChecksumService newInstance(int parallelism, int cacheSize) {
+        return new DefaultChecksumService(parallelism, cacheSize);
+    }
+
+    /**
+     * Returns the checksum algorithms available in this Java runtime.
+     * <p>
+     *     The algorithms are looked up among the installed security providers: the BLAKE algorithms are only available
+     *     if a provider such as Bouncy Castle is installed. BLAKE3 is looked up under its JCA name {@code BLAKE3-256}.
+     * </p>
+     *
+     * @return the supported checksum types
+     */
+    static Set<ArtifactChecksumType> getSupportedTypes() {
+        return DefaultChecksumService.getSupportedTypes();
+    }
+
+    /**
+     * Computes the checksums of a file.
+     *
+     * @param file a regular file
+     * @param types the algorithms to use
+     * @return the checksums in the order of {@link ArtifactChecksumType}
+     * @throws IllegalArgumentException if one of the algorithms is not supported
+     */
+    List<ArtifactChecksum> computeChecksums(Path file, Set<ArtifactChecksumType> types) throws IOException;
+
+    /**
+     * Computes the checksums of many files concurrently.
+     *
+     * @param files regular files
+     * @param types the algorithms to use
+     * @return the checksums of each file, in the order of {@code files}
+     * @throws IllegalArgumentException if one of the algorithms is not supported
+     */
+    Map<Path, List<ArtifactChecksum>> computeChecksums(Collection<Path> files, Set<ArtifactChecksumType> types)
+            throws IOException;
+
+    /**
+     * Returns the counters of the checksum cache.
+     *
+     * @return a snapshot of the cache counters
+     */
+    CacheStatistics getCacheStatistics();
+
+    @Override
+    void close();
+}
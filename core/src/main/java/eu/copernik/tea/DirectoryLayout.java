@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import eu.copernik.tea.internal.DirectoryLayoutMigrator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Specifies how the entries of the {@code component} and {@code release} folders are laid out on disk.
+ * <p>
+ *     Whatever the layout, the files are published at the URLs of the TEA API, e.g. {@code /component/{uuid}}. The
+ *     layout of an existing repository is recorded in the {@value #LAYOUT_FILE} file and can only be changed with
+ *     {@link #migrate(Path, int)}.
+ * </p>
+ */
+public enum DirectoryLayout {
+    /**
+     * All the entries are stored directly in their folder, e.g. {@code component/{uuid}.json}.
+     */
+    FLAT,
+    /**
+     * The entries are distributed in two levels of subfolders, named after the first four hexadecimal digits of their
+     * UUID, e.g. {@code component/ab/cd/abcd1234-....json}.
+     * <p>
+     *     This limits the size of each folder to a few hundred entries, even for millions of components, since large
+     *     folders are slow to list and modify on many filesystems.
+     * </p>
+     */
+    SHARDED;
+
+    /**
+     * Location of the file that records the layout of a repository, relative to its base path.
+     * <p>
+     *     Repositories without this file use the {@link #FLAT} layout.
+     * </p>
+     */
+    public static final String LAYOUT_FILE = ".index/layout";
+
+    /**
+     * Returns the relative path of the entry of a TEA object in a folder.
+     *
+     * @param folder a relative folder, e.g. {@code component}
+     * @param uuid the UUID of a TEA object
+     * @return the path of the entry without extension, e.g. {@code component/ab/cd/{uuid}}
+     */
+    public String entryPath(String folder, UUID uuid) {
+        String name = uuid.toString();
+        return this == FLAT
+                ? folder + "/" + name
+                : folder + "/" + name.substring(0, 2) + "/" + name.substring(2, 4) + "/" + name;
+    }
+
+    /**
+     * Returns the folders that directly contain the entries of a folder.
+     *
+     * @param folder the absolute path of a folder, e.g. the {@code component} folder of a repository
+     * @return the existing folders in the order of the UUIDs of their entries
+     */
+    public List<Path> entryFolders(Path folder) throws IOException {
+        if (this == FLAT) {
+            return Files.isDirectory(folder) ? List.of(folder) : List.of();
+        }
+        List<Path> folders = new ArrayList<>();
+        for (Path shard : listShards(folder)) {
+            folders.addAll(listShards(shard));
+        }
+        return folders;
+    }
+
+    private static List<Path> listShards(Path folder) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(folder)) {
+            return children.filter(child -> isShardName(String.valueOf(child.getFileName())))
+                    .filter(Files::isDirectory)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static boolean isShardName(String name) {
+        return name.length() == 2
+                && Character.digit(name.charAt(0), 16) >= 0
+                && Character.digit(name.charAt(1), 16) >= 0;
+    }
+
+    /**
+     * Returns the layout of a repository.
+     *
+     * @param basePath the base path of a repository
+     * @return the layout recorded in {@value #LAYOUT_FILE}, or {@link #FLAT} if the file does not exist
+     * @throws IOException if the layout file cannot be read or is invalid
+     */
+    public static DirectoryLayout detect(Path basePath) throws IOException {
+        Path layoutFile = basePath.resolve(LAYOUT_FILE);
+        if (!Files.exists(layoutFile)) {
+            return FLAT;
+        }
+        String value = Files.readString(layoutFile, StandardCharsets.UTF_8).trim();
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown directory layout '" + value + "' in file: " + layoutFile, e);
+        }
+    }
+
+    /**
+     * Converts a repository to this layout.
+     * <p>
+     *     The entries are moved concurrently. The repository is locked during the migration: it fails if the
+     *     repository is open or has unapplied journals. If the migration is interrupted, it can be resumed by running
+     *     it again.
+     * </p>
+     *
+     * @param basePath the base path of a repository in the directory layout
+     * @param parallelism the number of entries moved concurrently
+     * @throws IOException if the repository is in use, has unapplied journals or cannot be migrated
+     */
+    public void migrate(Path basePath, int parallelism) throws IOException {
+        DirectoryLayoutMigrator.migrate(basePath, this, parallelism);
+    }
+}
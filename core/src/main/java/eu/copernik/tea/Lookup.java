@@ -0,0 +1,25 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+/**
+ * The result of a get-or-create operation of a {@link TeaRepositoryManager}.
+ *
+ * @param value the existing TEA object or a new one, which is not saved yet
+ * @param created {@code true} if {@code value} is a new TEA object
+ * @param <T> the type of the TEA object
+ */
+public record Lookup<T>(T value, boolean created) {}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import eu.copernik.tea.internal.DefaultMavenRepositoryImporter;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Imports all the artifacts of a Maven repository into a TEA repository.
+ * <p>
+ *     Each Maven artifact is mapped to a TEA component identified by the Package URL {@code pkg:maven/groupId/artifactId}
+ *     and each version to a TEA release identified by the Package URL with version, with an initial collection. The
+ *     versions that are already present in the TEA repository are skipped, so an interrupted import can be resumed.
+ * </p>
+ * <p>
+ *     The Maven repository is scanned by a single thread, while the TEA objects are created by a pool of workers. The
+ *     whole import is performed in a single {@link TeaRepositoryBatch}: the aggregates are only regenerated once, at
+ *     the end of the import.
+ * </p>
+ */
+public interface MavenRepositoryImporter {
+
+    /**
+     * How the artifacts and their versions are discovered in a Maven repository.
+     */
+    enum Layout {
+        /**
+         * Each {@code groupId/artifactId/version/artifactId-version.pom} file is a version of an artifact.
+         * <p>
+         *     This is the layout of local repositories and full mirrors of remote repositories. The release date is
+         *     the modification time of the POM file.
+         * </p>
+         */
+        POM_FILES,
+        /**
+         * The versions of an artifact are listed in the {@code maven-metadata*.xml} files of its folder.
+         * <p>
+         *     This allows to import a tree that only contains the repository metadata. The release date of a version
+         *     is the modification time of its POM file or folder, if present. Otherwise, it is the {@code lastUpdated}
+         *     timestamp of the metadata, or its modification time, which is exact for the latest version and an upper
+         *     bound for the other ones. If several files date a version, the earliest date is used.
+         * </p>
+         */
+        METADATA
+    }
+
+    /**
+     * Statistics of an import.
+     *
+     * @param components the number of TEA components created
+     * @param releases the number of TEA releases created
+     * @param collections the number of TEA collections created
+     * @param skipped the number of versions that were already present in the TEA repository
+     * @param invalid the number of metadata files or artifacts that could not be imported
+     */
+    record Result(long components, long releases, long collections, long skipped, long invalid) {}
+
+    /**
+     * Creates a new importer.
+     *
+     * @param repositoryManager the repository manager that receives the TEA objects
+     * @param parallelism the number of threads creating TEA objects
+     * @param batchSize the number of Maven artifacts handed to a worker at once
+     * @return a new importer
+     */
+    static MavenRepositoryImporter newInstance(TeaRepositoryManager repositoryManager, int parallelism, int batchSize) {
+        return new DefaultMavenRepositoryImporter(repositoryManager, parallelism, batchSize);
+    }
+
+    /**
+     * Imports the artifacts of a Maven repository.
+     *
+     * @param repository the base folder of a Maven repository
+     * @param layout how the artifacts are discovered
+     * @return the statistics of the import
+     */
+    Result importRepository(Path repository, Layout layout) throws IOException;
+}
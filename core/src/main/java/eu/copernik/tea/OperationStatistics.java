@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the counters of a {@link RepositoryOperation}.
+ * <p>
+ *     Latencies are recorded in a histogram with exponential buckets: bucket {@code i} counts the operations that
+ *     took less than {@link #bucketUpperBound(int) 2<sup>i</sup> microseconds}, but at least as long as the upper
+ *     bound of the previous bucket. The last bucket is unbounded.
+ * </p>
+ *
+ * @param count the number of operations
+ * @param bytes the number of bytes read or written, if applicable to the operation
+ * @param totalTime the total time spent in the operations
+ * @param latencyHistogram the number of operations in each latency bucket
+ */
+public record OperationStatistics(long count, long bytes, Duration totalTime, List<Long> latencyHistogram) {
+
+    /**
+     * The number of buckets of the latency histogram.
+     */
+    public static final int HISTOGRAM_BUCKETS = 24;
+
+    /**
+     * The statistics of an operation that was never performed.
+     */
+    public static final OperationStatistics EMPTY =
+            new OperationStatistics(0, 0, Duration.ZERO, Collections.nCopies(HISTOGRAM_BUCKETS, 0L));
+
+    public OperationStatistics {
+        if (latencyHistogram.size() != HISTOGRAM_BUCKETS) {
+            throw new IllegalArgumentException("The latency histogram must have " + HISTOGRAM_BUCKETS + " buckets.");
+        }
+        latencyHistogram = List.copyOf(latencyHistogram);
+    }
+
+    /**
+     * Returns the exclusive upper bound of a latency bucket.
+     *
+     * @param bucket the index of a bucket
+     * @return the upper bound, which is {@link ChronoUnit#FOREVER} for the last bucket
+     */
+    public static Duration bucketUpperBound(int bucket) {
+        if (bucket < 0 || bucket >= HISTOGRAM_BUCKETS) {
+            throw new IndexOutOfBoundsException(bucket);
+        }
+        return bucket == HISTOGRAM_BUCKETS - 1 ? ChronoUnit.FOREVER.getDuration() : Duration.ofNanos(1000L << bucket);
+    }
+
+    /**
+     * Returns the average latency of the operation.
+     */
+    public Duration averageTime() {
+        return count == 0 ? Duration.ZERO : totalTime.dividedBy(count);
+    }
+
+    /**
+     * Returns an upper bound of a latency percentile, with the precision of the histogram buckets.
+     *
+     * @param quantile a number between {@code 0} and {@code 1}, e.g. {@code 0.99} for the 99th percentile
+     * @return the upper bound of the bucket containing the percentile
+     */
+    public Duration percentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+            seen += latencyHistogram.get(bucket);
+            if (seen >= rank) {
+                return bucketUpperBound(bucket);
+            }
+        }
+        return bucketUpperBound(HISTOGRAM_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+/**
+ * Specifies how the JSON files of the TEA layout are written.
+ */
+public enum OutputProfile {
+    /**
+     * Files are pretty-printed, which is convenient for human inspection and diffs.
+     */
+    PRETTY(true, false),
+    /**
+     * Files are minified and a precompressed {@code .gz} sibling is written next to each file.
+     * <p>
+     *     This profile is meant for repositories published through a static web server or a CDN, which can serve the
+     *     precompressed variant directly.
+     * </p>
+     */
+    PUBLICATION(false, true);
+
+    private final boolean indent;
+    private final boolean precompress;
+
+    OutputProfile(boolean indent, boolean precompress) {
+        this.indent = indent;
+        this.precompress = precompress;
+    }
+
+    /**
+     * Returns whether JSON files are indented.
+     *
+     * @return {@code true} if JSON files are pretty-printed
+     */
+    public boolean indent() {
+        return indent;
+    }
+
+    /**
+     * Returns whether a gzip-compressed copy of each file is written.
+     *
+     * @return {@code true} if a {@code .gz} sibling is written for each JSON file
+     */
+    public boolean precompress() {
+        return precompress;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+/**
+ * The kinds of operations performed by a {@link TeaRepositoryManager} on its storage.
+ * <p>
+ *     Operations can be nested: for example, {@link #UPDATE_AGGREGATE} includes the {@link #SAVE} of the aggregate
+ *     files and {@link #LOAD} includes the {@link #VALIDATE} of the loaded model.
+ * </p>
+ *
+ * @see TeaRepositoryManager#getOperationStatistics()
+ */
+public enum RepositoryOperation {
+    /**
+     * Reading and parsing a model.
+     */
+    LOAD,
+    /**
+     * Validating a model after reading it or before writing it.
+     */
+    VALIDATE,
+    /**
+     * Serializing and writing a model.
+     */
+    SAVE,
+    /**
+     * Listing the models of a certain kind.
+     */
+    FIND_ALL,
+    /**
+     * Regenerating an aggregate file, such as {@code products.json} or {@code releases.json}.
+     */
+    UPDATE_AGGREGATE
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import eu.copernik.tea.internal.DefaultTeaMirror;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Mirrors a remote TEA server into a TEA repository.
+ * <p>
+ *     The mirror crawls the TEA API from the {@code /products} pages down to the components of each product, their
+ *     releases and the collections of each release. Resources are fetched in parallel over pooled connections, using
+ *     conditional requests ({@code If-None-Match} and {@code If-Modified-Since}) for the resources that were already
+ *     mirrored. Collection versions are immutable: the versions already present in the TEA repository are never
+ *     fetched again.
+ * </p>
+ * <p>
+ *     The validators of the mirrored resources are kept in a state file, which is only updated after the aggregates
+ *     of the TEA repository were regenerated. An interrupted mirror can therefore be resumed by running it again with
+ *     the same state file: the resources that were already mirrored are answered with {@code 304 Not Modified}.
+ * </p>
+ */
+public interface TeaMirror {
+
+    /**
+     * Statistics of a mirror run.
+     *
+     * @param requests the number of HTTP requests sent
+     * @param notModified the number of requests answered with {@code 304 Not Modified}
+     * @param products the number of products saved
+     * @param components the number of components saved
+     * @param releases the number of releases saved
+     * @param collections the number of collection versions saved
+     * @param skipped the number of collection versions that were already present in the TEA repository
+     */
+    record Result(
+            long requests,
+            long notModified,
+            long products,
+            long components,
+            long releases,
+            long collections,
+            long skipped) {}
+
+    /**
+     * Creates a new mirror.
+     *
+     * @param repositoryManager the repository manager that receives the TEA objects
+     * @param stateFile the file that stores the state of the mirror, which must be used for a single remote server,
+     *                  e.g. a file in the {@code .index} folder of the TEA repository
+     * @param parallelism the maximum number of concurrent requests
+     * @return a new mirror
+     */
+    static TeaMirror newInstance(TeaRepositoryManager repositoryManager, Path stateFile, int parallelism) {
+        return new DefaultTeaMirror(repositoryManager, stateFile, parallelism);
+    }
+
+    /**
+     * Mirrors a remote TEA server.
+     *
+     * @param baseUri the base URI of the TEA API, e.g. {@code https://tea.example.com/tea/v1}
+     * @return the statistics of the run
+     */
+    Result mirror(URI baseUri) throws IOException;
+}
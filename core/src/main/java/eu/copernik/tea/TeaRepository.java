@@ -16,21 +16,78 @@
 package eu.copernik.tea;
 
 import java.nio.file.Path;
+import java.util.Objects;
 
 /**
  * This class represents a resource to store and manage TEA objects such as products, components, releases, and collections.
  */
 public final class TeaRepository {
 
+    /**
+     * Name of the default backend, which stores each TEA object in a separate JSON file, laid out as the TEA API.
+     */
+    public static final String DIRECTORY_BACKEND = "directory";
+
+    /**
+     * Name of the backend that stores all TEA objects in a single append-only file inside the base path.
+     * <p>
+     *     The file is only synchronized to the storage device when a batch is committed or closed and when the manager
+     *     is closed: the objects saved since the last synchronization are lost if the system crashes. This backend
+     *     supports neither a journal nor content-addressed artifacts.
+     * </p>
+     */
+    public static final String SINGLE_FILE_BACKEND = "single-file";
+
+    /**
+     * The file that records the number of products in each page of the product list of a repository.
+     * <p>
+     *     A manager opened with another {@linkplain Builder#productsPageSize(int) page size} rewrites the product list
+     *     and updates this file.
+     * </p>
+     */
+    public static final String PRODUCTS_PAGE_SIZE_FILE = ".index/products-page-size";
+
     private final Path basePath;
+    private final String backend;
+    private final ValidationPolicy validationPolicy;
+    private final int parallelism;
+    private final int cacheSize;
+    private final int productsPageSize;
+    private final OutputProfile outputProfile;
+    private final DirectoryLayout directoryLayout;
+    private final boolean journal;
+    private final boolean contentAddressedArtifacts;
 
     /**
-     * Constructs a new TeaRepository with the specified base path.
+     * Constructs a new TeaRepository with the specified base path and default settings.
      *
      * @param basePath the base path where TEA objects will be stored
      */
     public TeaRepository(Path basePath) {
-        this.basePath = basePath;
+        this(builder(basePath));
+    }
+
+    private TeaRepository(Builder builder) {
+        this.basePath = builder.basePath;
+        this.backend = builder.backend;
+        this.validationPolicy = builder.validationPolicy;
+        this.parallelism = builder.parallelism;
+        this.cacheSize = builder.cacheSize;
+        this.productsPageSize = builder.productsPageSize;
+        this.outputProfile = builder.outputProfile;
+        this.directoryLayout = builder.directoryLayout;
+        this.journal = builder.journal;
+        this.contentAddressedArtifacts = builder.contentAddressedArtifacts;
+    }
+
+    /**
+     * Creates a builder for a TeaRepository with non-default settings.
+     *
+     * @param basePath the base path where TEA objects will be stored
+     * @return a new builder
+     */
+    public static Builder builder(Path basePath) {
+        return new Builder(basePath);
     }
 
     /**
@@ -41,4 +98,279 @@ public final class TeaRepository {
     public Path getBasePath() {
         return basePath;
     }
+
+    /**
+     * Returns the name of the storage backend of this TeaRepository.
+     *
+     * @return the name of the backend, {@link #DIRECTORY_BACKEND} by default
+     * @see eu.copernik.tea.spi.TeaStorageBackend#getName()
+     */
+    public String getBackend() {
+        return backend;
+    }
+
+    /**
+     * Returns when TEA objects are validated.
+     *
+     * @return the validation policy, {@link ValidationPolicy#READ_WRITE} by default
+     */
+    public ValidationPolicy getValidationPolicy() {
+        return validationPolicy;
+    }
+
+    /**
+     * Returns the maximum number of files read concurrently when scanning a folder.
+     *
+     * @return the number of threads used to load models, {@code 1} by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the maximum number of parsed models kept in memory.
+     *
+     * @return the size of the model cache, {@code 0} (disabled) by default
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the number of products in each page of the product list.
+     *
+     * @return the page size, {@code 100} by default
+     */
+    public int getProductsPageSize() {
+        return productsPageSize;
+    }
+
+    /**
+     * Returns how the JSON files of the repository are written.
+     *
+     * @return the output profile, {@link OutputProfile#PRETTY} by default
+     */
+    public OutputProfile getOutputProfile() {
+        return outputProfile;
+    }
+
+    /**
+     * Returns the layout of the folders of a new repository.
+     * <p>
+     *     Existing repositories keep the layout recorded in their {@value DirectoryLayout#LAYOUT_FILE} file.
+     * </p>
+     *
+     * @return the directory layout, {@link DirectoryLayout#FLAT} by default
+     */
+    public DirectoryLayout getDirectoryLayout() {
+        return directoryLayout;
+    }
+
+    /**
+     * Returns whether mutations are recorded in a write-ahead journal before the JSON files are written.
+     * <p>
+     *     With a journal, the {@code save*} methods return as soon as the mutation is durably journaled and the JSON
+     *     files are written in the background. Concurrent saves share a single synchronization of the journal to the
+     *     storage device and the mutations that were not written yet are replayed when the repository is reopened
+     *     after a crash.
+     * </p>
+     *
+     * @return {@code true} if a journal is used, {@code false} by default
+     */
+    public boolean isJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns whether the artifacts of the collections of a new repository are stored once, content-addressed by hash.
+     * <p>
+     *     In such a repository, each collection version only references its artifacts and the aggregates
+     *     {@code collections.json} and {@code collection.json} are not stored: the collections are expanded when they
+     *     are read or exported. Saving a new collection version therefore only writes the artifacts that changed. Use
+     *     {@link TeaRepositoryManager#exportTo(TeaRepositoryManager)} to publish the static JSON layout of the TEA API,
+     *     or the TEA server, which expands the collections when they change.
+     * </p>
+     * <p>
+     *     Existing repositories keep the storage they were created with.
+     * </p>
+     *
+     * @return {@code true} if artifacts are content-addressed, {@code false} by default
+     */
+    public boolean isContentAddressedArtifacts() {
+        return contentAddressedArtifacts;
+    }
+
+    /**
+     * Builder for {@link TeaRepository} instances.
+     */
+    public static final class Builder {
+
+        private final Path basePath;
+        private String backend = DIRECTORY_BACKEND;
+        private ValidationPolicy validationPolicy = ValidationPolicy.READ_WRITE;
+        private int parallelism = 1;
+        private int cacheSize;
+        private int productsPageSize = 100;
+        private OutputProfile outputProfile = OutputProfile.PRETTY;
+        private DirectoryLayout directoryLayout = DirectoryLayout.FLAT;
+        private boolean journal;
+        private boolean contentAddressedArtifacts;
+
+        private Builder(Path basePath) {
+            this.basePath = Objects.requireNonNull(basePath, "Base path cannot be null");
+        }
+
+        /**
+         * Sets the storage backend of the repository.
+         *
+         * @param backend the name of a backend, such as {@link #DIRECTORY_BACKEND} or {@link #SINGLE_FILE_BACKEND}
+         * @return this builder
+         */
+        public Builder backend(String backend) {
+            this.backend = Objects.requireNonNull(backend, "Backend cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets when TEA objects are validated.
+         *
+         * @param validationPolicy the validation policy
+         * @return this builder
+         */
+        public Builder validationPolicy(ValidationPolicy validationPolicy) {
+            this.validationPolicy = Objects.requireNonNull(validationPolicy, "Validation policy cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of files read concurrently when scanning a folder.
+         * <p>
+         *     Values greater than {@code 1} are useful on network filesystems, where reading a file is dominated by
+         *     latency.
+         * </p>
+         *
+         * @param parallelism a positive number of threads
+         * @return this builder
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of parsed models kept in memory.
+         * <p>
+         *     Cached models are discarded if the modification time or size of their file changes, so that modifications
+         *     by other processes are visible.
+         * </p>
+         *
+         * @param cacheSize the number of models, or {@code 0} to disable the cache
+         * @return this builder
+         */
+        public Builder cacheSize(int cacheSize) {
+            if (cacheSize < 0) {
+                throw new IllegalArgumentException("Cache size cannot be negative: " + cacheSize);
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of products in each page of the product list.
+         * <p>
+         *     Page {@code n} of the product list is published as {@code products/page-n.json} and starts at offset
+         *     {@code n * productsPageSize}. The page size is recorded in the
+         *     {@value TeaRepository#PRODUCTS_PAGE_SIZE_FILE} file: if an existing repository uses another page size,
+         *     its product list is rewritten when it is opened.
+         * </p>
+         *
+         * @param productsPageSize a positive number of products
+         * @return this builder
+         */
+        public Builder productsPageSize(int productsPageSize) {
+            if (productsPageSize < 1) {
+                throw new IllegalArgumentException("Page size must be positive: " + productsPageSize);
+            }
+            this.productsPageSize = productsPageSize;
+            return this;
+        }
+
+        /**
+         * Sets how the JSON files of the repository are written.
+         *
+         * @param outputProfile the output profile
+         * @return this builder
+         */
+        public Builder outputProfile(OutputProfile outputProfile) {
+            this.outputProfile = Objects.requireNonNull(outputProfile, "Output profile cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the layout of the folders, if the repository does not exist yet.
+         * <p>
+         *     To change the layout of an existing repository, use {@link DirectoryLayout#migrate}.
+         * </p>
+         *
+         * @param directoryLayout the directory layout
+         * @return this builder
+         */
+        public Builder directoryLayout(DirectoryLayout directoryLayout) {
+            this.directoryLayout = Objects.requireNonNull(directoryLayout, "Directory layout cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets whether mutations are recorded in a write-ahead journal before the JSON files are written.
+         * <p>
+         *     Only the {@value TeaRepository#DIRECTORY_BACKEND} backend supports a journal: {@link #build()} fails for
+         *     the {@value TeaRepository#SINGLE_FILE_BACKEND} backend.
+         * </p>
+         *
+         * @param journal whether to use a journal
+         * @return this builder
+         */
+        public Builder journal(boolean journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Sets whether the artifacts of the collections are stored once, if the repository does not exist yet.
+         * <p>
+         *     Only the {@value TeaRepository#DIRECTORY_BACKEND} backend supports content-addressed artifacts:
+         *     {@link #build()} fails for the {@value TeaRepository#SINGLE_FILE_BACKEND} backend.
+         * </p>
+         *
+         * @param contentAddressedArtifacts whether to store artifacts by hash
+         * @return this builder
+         * @see TeaRepository#isContentAddressedArtifacts()
+         */
+        public Builder contentAddressedArtifacts(boolean contentAddressedArtifacts) {
+            this.contentAddressedArtifacts = contentAddressedArtifacts;
+            return this;
+        }
+
+        /**
+         * Creates a new TeaRepository.
+         *
+         * @return a new TeaRepository
+         * @throws IllegalArgumentException if the backend does not support one of the options
+         */
+        public TeaRepository build() {
+            if (SINGLE_FILE_BACKEND.equals(backend)) {
+                if (journal) {
+                    throw new IllegalArgumentException("The " + backend + " backend does not support a journal.");
+                }
+                if (contentAddressedArtifacts) {
+                    throw new IllegalArgumentException(
+                            "The " + backend + " backend does not support content-addressed artifacts.");
+                }
+            }
+            return new TeaRepository(this);
+        }
+    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A unit of work on a TEA repository.
+ * <p>
+ *     While a batch is open, the {@code save*} methods of {@link TeaRepositoryManager} only write the model files.
+ *     The aggregate files ({@code products.json}, {@code releases.json} and {@code collections.json}) that depend on
+ *     the saved models are regenerated once, when the batch is committed.
+ * </p>
+ * <p>
+ *     Batches can be nested: the aggregates are regenerated when the outermost batch is closed.
+ * </p>
+ */
+public interface TeaRepositoryBatch extends Closeable {
+
+    /**
+     * Regenerates the aggregate files modified since the last commit.
+     */
+    void commit() throws IOException;
+
+    /**
+     * Ends the batch, committing it if it is the outermost one.
+     */
+    @Override
+    void close() throws IOException;
+}
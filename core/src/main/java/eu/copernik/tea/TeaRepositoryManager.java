@@ -18,26 +18,60 @@ package eu.copernik.tea;
 import com.github.packageurl.PackageURL;
 import eu.copernik.tea.model.Collection;
 import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.IdentifierType;
 import eu.copernik.tea.model.Product;
 import eu.copernik.tea.model.Release;
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
 @NullMarked
-public interface TeaRepositoryManager {
+public interface TeaRepositoryManager extends Closeable {
 
     @Nullable
     Product getProduct(UUID id) throws IOException;
 
     void saveProduct(Product product) throws IOException;
 
-    Component getOrCreateComponentByPurl(PackageURL purl) throws IOException;
+    /**
+     * Finds the products that have the given identifier.
+     *
+     * @param idType the type of the identifier
+     * @param idValue the value of the identifier
+     * @return the matching products, sorted by UUID
+     */
+    List<Product> findProductsByIdentifier(IdentifierType idType, String idValue) throws IOException;
+
+    /**
+     * Returns the component with the given Package URL or a new one, which must be saved to be persisted.
+     *
+     * @param purl the Package URL of the component, without a version
+     * @return the component and whether it was created
+     */
+    Lookup<Component> lookupComponentByPurl(PackageURL purl) throws IOException;
+
+    default Component getOrCreateComponentByPurl(PackageURL purl) throws IOException {
+        return lookupComponentByPurl(purl).value();
+    }
 
     void saveComponent(Component component) throws IOException;
 
-    Release getOrCreateRelease(Component component, String version) throws IOException;
+    /**
+     * Returns the release of a component with the given version or a new one, which must be saved to be persisted.
+     *
+     * @param component the component of the release
+     * @param version the version of the release
+     * @return the release and whether it was created
+     */
+    Lookup<Release> lookupRelease(Component component, String version) throws IOException;
+
+    default Release getOrCreateRelease(Component component, String version) throws IOException {
+        return lookupRelease(component, version).value();
+    }
 
     void saveRelease(Component component, Release release) throws IOException;
 
@@ -48,4 +82,55 @@ public interface TeaRepositoryManager {
     Collection getLatestCollection(Release release) throws IOException;
 
     void saveCollection(Collection collection) throws IOException;
+
+    /**
+     * Starts a batch of modifications, which defers the regeneration of the aggregate files until the batch is closed.
+     *
+     * @return a new batch
+     */
+    TeaRepositoryBatch beginBatch();
+
+    /**
+     * Copies all the TEA objects of this repository to another repository.
+     * <p>
+     *     The objects are saved in a single batch of the target repository. Exporting to a repository using the
+     *     {@link TeaRepository#DIRECTORY_BACKEND} publishes the static JSON layout of the TEA API.
+     * </p>
+     *
+     * @param target the repository that receives the objects
+     */
+    void exportTo(TeaRepositoryManager target) throws IOException;
+
+    /**
+     * Returns the changes recorded after a cursor.
+     * <p>
+     *     Saving an object records a change only if the object was modified. Changes made inside a batch might only
+     *     be returned after the batch is committed or closed.
+     * </p>
+     *
+     * @param cursor the sequence number of the last change already processed, or {@code 0} to start from the first
+     *               change
+     * @param limit the maximum number of changes to return
+     * @return the changes, sorted by sequence number
+     */
+    List<Change> getChanges(long cursor, int limit) throws IOException;
+
+    /**
+     * Returns the counters of the model cache.
+     *
+     * @return a snapshot of the cache counters
+     * @see TeaRepository.Builder#cacheSize(int)
+     */
+    CacheStatistics getCacheStatistics();
+
+    /**
+     * Returns the counters of the storage operations performed by this manager.
+     * <p>
+     *     The same operations are also reported as JDK Flight Recorder events in the {@code eu.copernik.tea}
+     *     namespace.
+     * </p>
+     *
+     * @return a snapshot of the counters of each operation
+     */
+    Map<RepositoryOperation, OperationStatistics> getOperationStatistics();
 }
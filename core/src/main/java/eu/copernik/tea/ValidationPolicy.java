@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea;
+
+/**
+ * Specifies when TEA objects are checked against the Bean Validation constraints of the TEA model.
+ */
+public enum ValidationPolicy {
+    /**
+     * Objects are never validated, which is only appropriate for trusted repositories.
+     */
+    NONE(false, false),
+    /**
+     * Objects are validated before they are written.
+     */
+    WRITE(false, true),
+    /**
+     * Objects are validated both after they are read and before they are written.
+     */
+    READ_WRITE(true, true);
+
+    private final boolean validateOnRead;
+    private final boolean validateOnWrite;
+
+    ValidationPolicy(boolean validateOnRead, boolean validateOnWrite) {
+        this.validateOnRead = validateOnRead;
+        this.validateOnWrite = validateOnWrite;
+    }
+
+    /**
+     * Returns whether objects are validated after they are read.
+     *
+     * @return {@code true} if objects must be validated after they are read
+     */
+    public boolean validateOnRead() {
+        return validateOnRead;
+    }
+
+    /**
+     * Returns whether objects are validated before they are written.
+     *
+     * @return {@code true} if objects must be validated before they are written
+     */
+    public boolean validateOnWrite() {
+        return validateOnWrite;
+    }
+}
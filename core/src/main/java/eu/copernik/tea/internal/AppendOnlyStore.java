@@ -0,0 +1,512 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A key-value store kept in a single append-only file.
+ * <p>
+ *     Each value is appended to the file as a checksummed record and the latest record of each key wins. The offsets
+ *     of the live records are periodically written to the file as a checkpoint record, whose position is stored in the
+ *     file header. Opening the store loads the last checkpoint and only replays the records appended after it.
+ * </p>
+ * <p>
+ *     A new checkpoint is only written once the records appended after the last one are larger than it, so that
+ *     checkpoints never take more space than the data. When the overwritten records and old checkpoints take more
+ *     space than the live records, the live records are copied to a new file, which atomically replaces the store.
+ * </p>
+ * <p>
+ *     Records are read through a memory mapping of the file. A partial record at the end of the file, left by an
+ *     interrupted write, is discarded when the store is opened.
+ * </p>
+ * <p>
+ *     The file is locked exclusively while the store is open, since the appends of two writers would overwrite each
+ *     other.
+ * </p>
+ */
+@NullMarked
+final class AppendOnlyStore implements Closeable {
+
+    private static final int MAGIC = 0x54454153; // "TEAS"
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Magic number, format version and offset of the last checkpoint.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    private static final int CHECKPOINT_POSITION = 8;
+
+    private static final byte RECORD_DATA = 'D';
+    private static final byte RECORD_CHECKPOINT = 'C';
+    /**
+     * Record type, key length and value length.
+     */
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    private static final int RECORD_TRAILER_SIZE = 4;
+
+    /**
+     * Records beyond the mapped region are read with positional reads until the unmapped tail exceeds this size.
+     */
+    private static final long REMAP_THRESHOLD = 1 << 20;
+
+    /**
+     * Minimum size of the dead records before the store is compacted.
+     */
+    private static final long COMPACTION_THRESHOLD = 1 << 20;
+
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private record Entry(byte type, String key, ByteBuffer value, long end) {}
+
+    private final Path file;
+    private FileChannel channel;
+    private final NavigableMap<String, Long> offsets = new TreeMap<>();
+    private long size;
+    private long checkpointSize;
+    /**
+     * Size of the last checkpoint record.
+     */
+    private long checkpointRecordSize;
+    /**
+     * Total size of the live data records.
+     */
+    private long liveSize;
+    private @Nullable MappedByteBuffer mapping;
+
+    private AppendOnlyStore(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a store, creating the file if it does not exist.
+     *
+     * @param file the file containing the store
+     * @return the opened store
+     * @throws IOException if the file is not a valid store or is already opened by another store
+     */
+    static AppendOnlyStore open(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        FileChannel channel =
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (tryLock(channel) == null) {
+                throw new IOException("TEA store is already in use by another process: " + file);
+            }
+            AppendOnlyStore store = new AppendOnlyStore(file, channel);
+            store.load();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Locks the whole file, which is released when the channel is closed.
+     *
+     * @return the lock or {@code null} if another store holds it
+     */
+    private static @Nullable FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another store of this JVM
+            return null;
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        size = channel.size();
+        if (size == 0) {
+            write(channel, header(0), 0);
+            channel.force(true);
+            size = HEADER_SIZE;
+            checkpointSize = size;
+            return;
+        }
+        if (size < HEADER_SIZE) {
+            throw new IOException("Not a TEA store: " + file);
+        }
+        ByteBuffer header = view(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a TEA store or unsupported format version: " + file);
+        }
+        long position = HEADER_SIZE;
+        long checkpoint = header.getLong();
+        if (checkpoint > 0) {
+            Entry record = readRecord(checkpoint);
+            if (record == null || record.type() != RECORD_CHECKPOINT) {
+                throw new IOException("Corrupted checkpoint at offset " + checkpoint + " in TEA store: " + file);
+            }
+            loadCheckpoint(record.value());
+            position = record.end();
+            checkpointRecordSize = position - checkpoint;
+        }
+        checkpointSize = position;
+        // Replay the records appended after the last checkpoint
+        for (Entry record = readRecord(position); record != null; record = readRecord(position)) {
+            if (record.type() == RECORD_DATA) {
+                offsets.put(record.key(), position);
+            }
+            position = record.end();
+        }
+        if (position < size) {
+            // A previous append was interrupted: drop the partial record
+            mapping = null;
+            channel.truncate(position);
+            size = position;
+        }
+        for (long offset : offsets.values()) {
+            liveSize += recordLength(offset);
+        }
+    }
+
+    private static ByteBuffer header(long checkpoint) {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(checkpoint)
+                .flip();
+    }
+
+    private void loadCheckpoint(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            offsets.put(new String(key, StandardCharsets.UTF_8), buffer.getLong());
+        }
+    }
+
+    /**
+     * Returns the latest value associated with a key.
+     *
+     * @param key a key
+     * @return the value or {@code null} if the key is not present
+     */
+    synchronized byte @Nullable [] get(String key) throws IOException {
+        Long offset = offsets.get(key);
+        if (offset == null) {
+            return null;
+        }
+        Entry record = readRecord(offset);
+        if (record == null || !key.equals(record.key())) {
+            throw new IOException("Corrupted record at offset " + offset + " in TEA store: " + file);
+        }
+        ByteBuffer value = record.value();
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the keys starting with the given prefix, in lexicographic order.
+     *
+     * @param prefix a key prefix
+     */
+    synchronized SortedSet<String> keys(String prefix) {
+        return new TreeSet<>(
+                offsets.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+    }
+
+    /**
+     * Appends a new value for a key.
+     *
+     * @param key a key
+     * @param value the new value
+     */
+    synchronized void put(String key, byte[] value) throws IOException {
+        long offset = append(RECORD_DATA, key, value);
+        Long previous = offsets.put(key, offset);
+        if (previous != null) {
+            liveSize -= recordLength(previous);
+        }
+        liveSize += size - offset;
+    }
+
+    /**
+     * Synchronizes the appended records to the storage device and writes a checkpoint or compacts the store if needed.
+     * <p>
+     *     A checkpoint contains the offsets of the live records, so that the next opening does not need to replay
+     *     them. It is only written if the records appended since the last checkpoint are larger than it. The file is
+     *     synchronized to the storage device before and after the header is updated.
+     * </p>
+     */
+    synchronized void checkpoint() throws IOException {
+        if (size == checkpointSize) {
+            return;
+        }
+        long deadSize = size - HEADER_SIZE - liveSize - checkpointRecordSize;
+        if (deadSize > Math.max(liveSize, COMPACTION_THRESHOLD)) {
+            compact();
+            return;
+        }
+        if (size - checkpointSize < checkpointRecordSize) {
+            // Replaying the appended records costs less than reading a new checkpoint
+            channel.force(false);
+            return;
+        }
+        long offset = append(RECORD_CHECKPOINT, "", encodeCheckpoint(offsets));
+        channel.force(false);
+        write(channel, ByteBuffer.allocate(8).putLong(offset).flip(), CHECKPOINT_POSITION);
+        channel.force(false);
+        checkpointSize = size;
+        checkpointRecordSize = size - offset;
+    }
+
+    /**
+     * Copies the live records and a new checkpoint to a new file, which replaces the store.
+     * <p>
+     *     The new file is locked before it replaces the store, so that no other store can open it in the meantime.
+     * </p>
+     */
+    synchronized void compact() throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".compact");
+        FileChannel newChannel = FileChannel.open(
+                tempFile,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        NavigableMap<String, Long> newOffsets = new TreeMap<>();
+        long position = HEADER_SIZE;
+        long checkpoint;
+        try {
+            if (tryLock(newChannel) == null) {
+                throw new IOException("TEA store is already being compacted: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                Entry record = readRecord(entry.getValue());
+                if (record == null || !entry.getKey().equals(record.key())) {
+                    throw new IOException("Corrupted record at offset " + entry.getValue() + " in TEA store: " + file);
+                }
+                byte[] value = new byte[record.value().remaining()];
+                record.value().get(value);
+                byte[] content = encodeRecord(RECORD_DATA, record.key(), value);
+                bufferedWrite(newChannel, buffer, content, position);
+                newOffsets.put(record.key(), position);
+                position += content.length;
+            }
+            checkpoint = position;
+            byte[] content = encodeRecord(RECORD_CHECKPOINT, "", encodeCheckpoint(newOffsets));
+            bufferedWrite(newChannel, buffer, content, position);
+            position += content.length;
+            flush(newChannel, buffer, position);
+            write(newChannel, header(checkpoint), 0);
+            newChannel.force(true);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            newChannel.close();
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        syncDirectory();
+        FileChannel oldChannel = channel;
+        channel = newChannel;
+        mapping = null;
+        offsets.clear();
+        offsets.putAll(newOffsets);
+        size = position;
+        checkpointSize = position;
+        checkpointRecordSize = position - checkpoint;
+        oldChannel.close();
+    }
+
+    /**
+     * Synchronizes the folder of the store, so that replacing the file is durable.
+     */
+    private void syncDirectory() {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                directoryChannel.force(true);
+            } catch (IOException e) {
+                // Folders cannot be synchronized on all platforms
+            }
+        }
+    }
+
+    private static byte[] encodeCheckpoint(NavigableMap<String, Long> offsets) {
+        int length = 4;
+        for (String key : offsets.keySet()) {
+            length += 4 + key.getBytes(StandardCharsets.UTF_8).length + 8;
+        }
+        ByteBuffer value = ByteBuffer.allocate(length).putInt(offsets.size());
+        offsets.forEach((key, offset) -> {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            value.putInt(keyBytes.length).put(keyBytes).putLong(offset);
+        });
+        return value.array();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            mapping = null;
+            channel.close();
+        }
+    }
+
+    private synchronized long append(byte type, String key, byte[] value) throws IOException {
+        byte[] content = encodeRecord(type, key, value);
+        long offset = size;
+        write(channel, ByteBuffer.wrap(content), offset);
+        size += content.length;
+        return offset;
+    }
+
+    private static byte[] encodeRecord(byte type, String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer =
+                ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + value.length + RECORD_TRAILER_SIZE);
+        buffer.put(type)
+                .putInt(keyBytes.length)
+                .putInt(value.length)
+                .put(keyBytes)
+                .put(value);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Returns the length of the record at the given offset, which must be valid.
+     */
+    private long recordLength(long offset) throws IOException {
+        ByteBuffer header = view(offset, RECORD_HEADER_SIZE);
+        header.get();
+        return (long) RECORD_HEADER_SIZE + header.getInt() + header.getInt() + RECORD_TRAILER_SIZE;
+    }
+
+    /**
+     * Reads and verifies the record at the given offset.
+     *
+     * @return the record or {@code null} if there is no valid record at that offset
+     */
+    private @Nullable Entry readRecord(long offset) throws IOException {
+        if (offset + RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE > size) {
+            return null;
+        }
+        ByteBuffer header = view(offset, RECORD_HEADER_SIZE);
+        byte type = header.get();
+        int keyLength = header.getInt();
+        int valueLength = header.getInt();
+        long length = (long) RECORD_HEADER_SIZE + keyLength + valueLength + RECORD_TRAILER_SIZE;
+        if ((type != RECORD_DATA && type != RECORD_CHECKPOINT)
+                || keyLength < 0
+                || valueLength < 0
+                || length > Integer.MAX_VALUE
+                || offset + length > size) {
+            return null;
+        }
+        ByteBuffer buffer = view(offset, (int) length);
+        byte[] content = new byte[(int) length - RECORD_TRAILER_SIZE];
+        buffer.get(content);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (buffer.getInt() != (int) crc.getValue()) {
+            return null;
+        }
+        String key = new String(content, RECORD_HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+        ByteBuffer value = ByteBuffer.wrap(content, RECORD_HEADER_SIZE + keyLength, valueLength);
+        return new Entry(type, key, value, offset + length);
+    }
+
+    /**
+     * Returns a buffer containing a region of the file.
+     * <p>
+     *     The region is served from the memory mapping of the file, which is extended when enough data was appended.
+     * </p>
+     */
+    private ByteBuffer view(long offset, int length) throws IOException {
+        MappedByteBuffer current = mapping;
+        if ((current == null || (offset + length > current.capacity() && size - current.capacity() > REMAP_THRESHOLD))
+                && size <= Integer.MAX_VALUE) {
+            current = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapping = current;
+        }
+        if (current != null && offset + length <= current.capacity()) {
+            return current.slice((int) offset, length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of TEA store: " + file);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes some content at the given position of a channel, through a buffer of the content that precedes it.
+     */
+    private static void bufferedWrite(FileChannel channel, ByteBuffer buffer, byte[] content, long position)
+            throws IOException {
+        if (content.length > buffer.remaining()) {
+            flush(channel, buffer, position);
+            if (content.length > buffer.capacity()) {
+                write(channel, ByteBuffer.wrap(content), position);
+                return;
+            }
+        }
+        buffer.put(content);
+    }
+
+    /**
+     * Writes the content of a buffer that ends at the given position of a channel and clears the buffer.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, long end) throws IOException {
+        long start = end - buffer.position();
+        write(channel, buffer.flip(), start);
+        buffer.clear();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
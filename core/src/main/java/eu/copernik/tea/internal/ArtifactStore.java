@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.copernik.tea.model.Artifact;
+import eu.copernik.tea.model.Collection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Stores the artifacts of the collections once, content-addressed by the SHA-256 hash of their canonical JSON.
+ * <p>
+ *     The artifact with hash {@code h} is stored in {@code .store/artifact/<first two digits of h>/<h>.json}. Since the
+ *     content of an artifact file never changes, it is only written the first time the artifact is saved.
+ * </p>
+ * <p>
+ *     The collections are stored in {@code .store/release}, with the same layout as the {@code release} folder, but
+ *     the {@code artifacts} property of each collection is replaced by the array of the hashes of its artifacts.
+ * </p>
+ */
+final class ArtifactStore {
+
+    static final String STORE_FOLDER = ".store";
+
+    static final String ARTIFACT_FOLDER = STORE_FOLDER + "/artifact";
+
+    /**
+     * The folder containing the collections of each release.
+     */
+    static final String RELEASE_FOLDER = STORE_FOLDER + "/release";
+
+    /**
+     * Writes a new file of the store.
+     */
+    @FunctionalInterface
+    interface FileWriter {
+
+        void write(Path file, byte[] content) throws IOException;
+    }
+
+    /**
+     * Serializes the artifacts with sorted properties, so that equal artifacts have the same hash.
+     */
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final Path artifactFolder;
+    private final FileWriter writer;
+
+    ArtifactStore(Path basePath, FileWriter writer) {
+        this.artifactFolder = basePath.resolve(ARTIFACT_FOLDER);
+        this.writer = writer;
+    }
+
+    /**
+     * Stores the artifacts of a collection and replaces them with their hashes.
+     *
+     * @return the JSON tree of the collection, as stored on disk
+     */
+    ObjectNode compact(Collection collection) throws IOException {
+        ObjectNode node = objectMapper.valueToTree(collection);
+        ArrayNode hashes = node.putArray(Collection.JSON_PROPERTY_ARTIFACTS);
+        for (Artifact artifact : collection.getArtifacts()) {
+            hashes.add(put(artifact));
+        }
+        return node;
+    }
+
+    /**
+     * Replaces the hashes of a stored collection with the artifacts.
+     *
+     * @param node the JSON tree of the collection, as stored on disk
+     */
+    Collection expand(JsonNode node) throws IOException {
+        if (!(node instanceof ObjectNode collection)) {
+            throw new IOException("Invalid collection in artifact store: " + node);
+        }
+        ArrayNode artifacts = objectMapper.createArrayNode();
+        for (JsonNode hash : collection.path(Collection.JSON_PROPERTY_ARTIFACTS)) {
+            Path artifactFile = getArtifactFile(hash.asText());
+            if (!Files.exists(artifactFile)) {
+                throw new IOException("Missing artifact " + hash.asText() + " of collection: " + node);
+            }
+            artifacts.add(objectMapper.readTree(artifactFile.toFile()));
+        }
+        collection.set(Collection.JSON_PROPERTY_ARTIFACTS, artifacts);
+        return objectMapper.treeToValue(collection, Collection.class);
+    }
+
+    /**
+     * Stores an artifact, unless it is already present.
+     *
+     * @return the hash of the artifact
+     */
+    private String put(Artifact artifact) throws IOException {
+        byte[] content = objectMapper.writeValueAsBytes(artifact);
+        String hash = sha256Hex(content);
+        Path artifactFile = getArtifactFile(hash);
+        if (!Files.exists(artifactFile)) {
+            Files.createDirectories(artifactFolder.resolve(hash.substring(0, 2)));
+            writer.write(artifactFile, content);
+        }
+        return hash;
+    }
+
+    private Path getArtifactFile(String hash) throws IOException {
+        if (hash.length() != 64 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IOException("Invalid artifact hash: " + hash);
+        }
+        return artifactFolder.resolve(hash.substring(0, 2) + "/" + hash + ".json");
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 hash of some content, which is also used to name other files of the repository.
+     */
+    static String sha256Hex(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform.", e);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.copernik.tea.Change;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The change feed of a repository in the directory layout.
+ * <p>
+ *     The changes are published as static files: page {@code n} of the feed, {@code changes/page-n.json}, contains the
+ *     changes with sequence numbers from {@code n * PAGE_SIZE + 1} to {@code (n + 1) * PAGE_SIZE}, while
+ *     {@code changes.json} contains the sequence number of the last published change. Since sequence numbers are
+ *     never reused, full pages are immutable and can be cached by mirrors.
+ * </p>
+ * <p>
+ *     Changes are kept in memory until they are published. Sequence numbers are assigned at publication, under a
+ *     repository lock, so that they are unique across all the processes that update the repository.
+ * </p>
+ * <p>
+ *     The unpublished changes are also appended to a pending file, exclusively locked by its owner, so that they
+ *     survive a crash of the process. The pending files left behind by crashed owners are published by
+ *     {@link #recover()}: a change might be published twice, if the crash occurs during a publication.
+ * </p>
+ */
+final class ChangeFeed {
+
+    /**
+     * The number of changes in each page of the feed.
+     */
+    static final int PAGE_SIZE = 100;
+
+    static final String INDEX_FILE = "changes.json";
+
+    static final String PAGES_FOLDER = "changes";
+
+    /**
+     * The folder containing the pending files.
+     */
+    static final String PENDING_FOLDER = ".index/changes";
+
+    private static final String PENDING_EXTENSION = ".jsonl";
+
+    private static final String LOCK = "changes";
+
+    /**
+     * Writes a model to a file of the repository.
+     */
+    @FunctionalInterface
+    interface Writer {
+
+        void write(Object model, Path file) throws IOException;
+    }
+
+    /**
+     * The content of {@value #INDEX_FILE}.
+     *
+     * @param lastSequence the sequence number of the last published change
+     * @param pageSize the number of changes in each page
+     * @param timestamp the time of the last publication
+     */
+    record Index(long lastSequence, int pageSize, OffsetDateTime timestamp) {}
+
+    private final Path basePath;
+    private final ObjectMapper objectMapper;
+    private final RepositoryLocks locks;
+    private final Writer writer;
+
+    /**
+     * The changes without a sequence number, guarded by {@code this}.
+     */
+    private final List<Change> pending = new ArrayList<>();
+
+    private final Path pendingFile;
+    /**
+     * The pending file, created by the first change, guarded by {@code this}.
+     * <p>
+     *     A {@link RandomAccessFile} is used, since an interrupted {@link FileChannel} operation closes the channel
+     *     for all the threads.
+     * </p>
+     */
+    private @Nullable RandomAccessFile pendingOutput;
+
+    /**
+     * Serializes the publications of this feed, so that the pending file is only rewritten by one of them.
+     */
+    private final Object publishLock = new Object();
+
+    ChangeFeed(Path basePath, ObjectMapper objectMapper, RepositoryLocks locks, Writer writer) {
+        this.basePath = basePath;
+        this.objectMapper = objectMapper;
+        this.locks = locks;
+        this.writer = writer;
+        this.pendingFile = basePath.resolve(PENDING_FOLDER).resolve(UUID.randomUUID() + PENDING_EXTENSION);
+    }
+
+    /**
+     * Records a change, which will be published by the next call to {@link #publish()}.
+     *
+     * @return the number of unpublished changes
+     */
+    synchronized int record(Change.Type type, UUID uuid, @Nullable UUID componentUuid, @Nullable String version)
+            throws IOException {
+        Change change = new Change(0, type, uuid, componentUuid, version, OffsetDateTime.now(ZoneOffset.UTC));
+        appendPending(List.of(change));
+        pending.add(change);
+        return pending.size();
+    }
+
+    /**
+     * Assigns sequence numbers to the recorded changes and writes them to the feed.
+     */
+    void publish() throws IOException {
+        synchronized (publishLock) {
+            List<Change> changes;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                changes = List.copyOf(pending);
+                pending.clear();
+            }
+            try {
+                write(changes);
+            } catch (IOException | RuntimeException e) {
+                // Retry at the next publication: the changes are still in the pending file
+                synchronized (this) {
+                    pending.addAll(0, changes);
+                }
+                throw e;
+            }
+            synchronized (this) {
+                // Only keeps the changes recorded during the publication
+                RandomAccessFile output = pendingOutput;
+                if (output != null) {
+                    output.setLength(0);
+                    appendPending(pending);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the changes of the pending files left behind by crashed owners and deletes the files.
+     */
+    void recover() throws IOException {
+        Path folder = basePath.resolve(PENDING_FOLDER);
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(folder)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(PENDING_EXTENSION))
+                    .sorted(Comparator.comparing(ChangeFeed::lastModified))
+                    .toList();
+        }
+        for (Path file : files) {
+            List<Change> changes;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    // Owned by a feed of this JVM
+                    continue;
+                }
+                if (lock == null) {
+                    // Owned by another process
+                    continue;
+                }
+                changes = readPending(channel);
+            }
+            if (!changes.isEmpty()) {
+                synchronized (publishLock) {
+                    write(changes);
+                }
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Releases the pending file, which is deleted unless it contains unpublished changes.
+     */
+    synchronized void close() throws IOException {
+        RandomAccessFile output = pendingOutput;
+        if (output != null) {
+            pendingOutput = null;
+            output.close();
+            if (pending.isEmpty()) {
+                Files.deleteIfExists(pendingFile);
+            }
+        }
+    }
+
+    /**
+     * Appends changes to the pending file, one JSON document per line.
+     */
+    private void appendPending(List<Change> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        RandomAccessFile output = pendingOutput;
+        if (output == null) {
+            Files.createDirectories(basePath.resolve(PENDING_FOLDER));
+            output = new RandomAccessFile(pendingFile.toFile(), "rw");
+            try {
+                output.getChannel().lock();
+            } catch (IOException | RuntimeException e) {
+                output.close();
+                Files.deleteIfExists(pendingFile);
+                throw e;
+            }
+            pendingOutput = output;
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (Change change : changes) {
+            lines.write(objectMapper.writeValueAsBytes(change));
+            lines.write('\n');
+        }
+        output.write(lines.toByteArray());
+    }
+
+    private List<Change> readPending(FileChannel channel) throws IOException {
+        String content = new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8);
+        List<Change> changes = new ArrayList<>();
+        for (String line : (Iterable<String>) content.lines()::iterator) {
+            try {
+                changes.add(objectMapper.readValue(line, Change.class));
+            } catch (IOException e) {
+                // The last line might be truncated by the crash
+            }
+        }
+        return changes;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Assigns sequence numbers to changes and writes them to the feed, under the repository lock.
+     */
+    private void write(List<Change> changes) throws IOException {
+        RepositoryLocks.Handle lock = locks.lock(LOCK);
+        try {
+            Index index = readIndex();
+            long lastSequence = index != null ? index.lastSequence() : 0;
+            long page = lastSequence / PAGE_SIZE;
+            List<Change> pageChanges =
+                    lastSequence % PAGE_SIZE == 0 ? new ArrayList<>() : new ArrayList<>(readPage(page));
+            Files.createDirectories(basePath.resolve(PAGES_FOLDER));
+            for (Change change : changes) {
+                pageChanges.add(change.withSequence(++lastSequence));
+                if (pageChanges.size() == PAGE_SIZE) {
+                    writer.write(pageChanges, getPageFile(page++));
+                    pageChanges = new ArrayList<>();
+                }
+            }
+            if (!pageChanges.isEmpty()) {
+                writer.write(pageChanges, getPageFile(page));
+            }
+            // The index is written last, so that readers never see unpublished sequence numbers
+            writer.write(
+                    new Index(lastSequence, PAGE_SIZE, OffsetDateTime.now(ZoneOffset.UTC)),
+                    basePath.resolve(INDEX_FILE));
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Returns the published changes after a cursor.
+     *
+     * @param cursor the sequence number of the last change already processed
+     * @param limit the maximum number of changes to return
+     */
+    List<Change> read(long cursor, int limit) throws IOException {
+        if (cursor < 0 || limit < 0) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor + " or limit " + limit);
+        }
+        Index index = readIndex();
+        List<Change> changes = new ArrayList<>();
+        if (index == null) {
+            return changes;
+        }
+        long next = cursor + 1;
+        while (changes.size() < limit && next <= index.lastSequence()) {
+            long page = (next - 1) / PAGE_SIZE;
+            for (Change change : readPage(page)) {
+                if (change.sequence() >= next && change.sequence() <= index.lastSequence() && changes.size() < limit) {
+                    changes.add(change);
+                }
+            }
+            next = (page + 1) * PAGE_SIZE + 1;
+        }
+        return changes;
+    }
+
+    private @Nullable Index readIndex() throws IOException {
+        Path indexFile = basePath.resolve(INDEX_FILE);
+        return Files.exists(indexFile) ? objectMapper.readValue(indexFile.toFile(), Index.class) : null;
+    }
+
+    private List<Change> readPage(long page) throws IOException {
+        return objectMapper.readValue(getPageFile(page).toFile(), new TypeReference<List<Change>>() {});
+    }
+
+    private Path getPageFile(long page) {
+        return basePath.resolve(PAGES_FOLDER + "/page-" + page + ".json");
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.CacheStatistics;
+import eu.copernik.tea.ChecksumService;
+import eu.copernik.tea.model.ArtifactChecksum;
+import eu.copernik.tea.model.ArtifactChecksumType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Computes the checksums of files with all the requested {@link MessageDigest}s in a single pass.
+ * <p>
+ *     Large files are memory-mapped in chunks, while small files are read into a per-thread direct buffer. Each chunk
+ *     is fed to every digest before the next one is read.
+ * </p>
+ */
+@NullMarked
+public final class DefaultChecksumService implements ChecksumService {
+
+    /**
+     * Files larger than this are memory-mapped.
+     */
+    private static final long MAPPING_THRESHOLD = 1 << 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<ArtifactChecksumType> SUPPORTED_TYPES = findSupportedTypes();
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * The checksums of a file, indexed by algorithm.
+     */
+    private record Checksums(Map<ArtifactChecksumType, String> values) {}
+
+    private final ExecutorService executor;
+    private final ModelCache cache;
+    private final long chunkSize;
+
+    public DefaultChecksumService(int parallelism, int cacheSize) {
+        this(parallelism, cacheSize, 64L << 20);
+    }
+
+    // Package-private for tests
+    DefaultChecksumService(int parallelism, int cacheSize, long chunkSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative: " + cacheSize);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "tea-checksum-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = new ModelCache(cacheSize);
+        this.chunkSize = chunkSize;
+    }
+
+    public static Set<ArtifactChecksumType> getSupportedTypes() {
+        return Collections.unmodifiableSet(SUPPORTED_TYPES);
+    }
+
+    private static Set<ArtifactChecksumType> findSupportedTypes() {
+        Set<ArtifactChecksumType> types = EnumSet.noneOf(ArtifactChecksumType.class);
+        for (ArtifactChecksumType type : ArtifactChecksumType.values()) {
+            try {
+                MessageDigest.getInstance(algorithmName(type));
+                types.add(type);
+            } catch (NoSuchAlgorithmException e) {
+                // Not available in this runtime
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Returns the name of the {@link MessageDigest} algorithm of a checksum type.
+     * <p>
+     *     The names of the TEA checksum types are those of the JCA, except BLAKE3, which Bouncy Castle registers with
+     *     its output size.
+     * </p>
+     */
+    static String algorithmName(ArtifactChecksumType type) {
+        return type == ArtifactChecksumType.BLAKE3 ? "BLAKE3-256" : type.getValue();
+    }
+
+    @Override
+    public List<ArtifactChecksum> computeChecksums(Path file, Set<ArtifactChecksumType> types) throws IOException {
+        checkSupported(types);
+        Path key = file.toAbsolutePath().normalize();
+        FileStamp stamp = FileStamp.of(key);
+        Checksums cached = cache.get(key, stamp, Checksums.class);
+        Map<ArtifactChecksumType, String> values = new EnumMap<>(ArtifactChecksumType.class);
+        if (cached != null) {
+            values.putAll(cached.values());
+        }
+        Set<ArtifactChecksumType> missing = EnumSet.noneOf(ArtifactChecksumType.class);
+        for (ArtifactChecksumType type : types) {
+            if (!values.containsKey(type)) {
+                missing.add(type);
+            }
+        }
+        if (!missing.isEmpty()) {
+            values.putAll(digest(key, missing));
+            // Do not cache the result if the file was modified while it was read
+            if (stamp.equals(FileStamp.of(key))) {
+                cache.put(key, stamp, new Checksums(Collections.unmodifiableMap(new EnumMap<>(values))));
+            }
+        }
+        List<ArtifactChecksum> checksums = new ArrayList<>();
+        values.forEach((type, value) -> {
+            if (types.contains(type)) {
+                checksums.add(new ArtifactChecksum().algType(type).algValue(value));
+            }
+        });
+        return checksums;
+    }
+
+    @Override
+    public Map<Path, List<ArtifactChecksum>> computeChecksums(Collection<Path> files, Set<ArtifactChecksumType> types)
+            throws IOException {
+        checkSupported(types);
+        Map<Path, CompletableFuture<List<ArtifactChecksum>>> futures = new LinkedHashMap<>();
+        for (Path file : files) {
+            futures.put(file, CompletableFuture.supplyAsync(() -> computeChecksumsUnchecked(file, types), executor));
+        }
+        Map<Path, List<ArtifactChecksum>> result = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Path, CompletableFuture<List<ArtifactChecksum>>> entry : futures.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().join());
+            }
+        } catch (CompletionException e) {
+            futures.values().forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        return result;
+    }
+
+    private List<ArtifactChecksum> computeChecksumsUnchecked(Path file, Set<ArtifactChecksumType> types) {
+        try {
+            return computeChecksums(file, types);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void checkSupported(Set<ArtifactChecksumType> types) {
+        for (ArtifactChecksumType type : types) {
+            if (!SUPPORTED_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unsupported checksum algorithm: " + type);
+            }
+        }
+    }
+
+    /**
+     * Reads a file once and feeds its content to the digests of all the given types.
+     */
+    private Map<ArtifactChecksumType, String> digest(Path file, Set<ArtifactChecksumType> types) throws IOException {
+        Map<ArtifactChecksumType, MessageDigest> digests = new EnumMap<>(ArtifactChecksumType.class);
+        for (ArtifactChecksumType type : types) {
+            try {
+                digests.put(type, MessageDigest.getInstance(algorithmName(type)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Unsupported checksum algorithm: " + type, e);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAPPING_THRESHOLD) {
+                for (long position = 0; position < size; position += chunkSize) {
+                    MappedByteBuffer chunk =
+                            channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+                    update(digests.values(), chunk);
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    update(digests.values(), buffer.flip());
+                    buffer.clear();
+                }
+            }
+        }
+        Map<ArtifactChecksumType, String> values = new EnumMap<>(ArtifactChecksumType.class);
+        HexFormat hex = HexFormat.of();
+        digests.forEach((type, digest) -> values.put(type, hex.formatHex(digest.digest())));
+        return values;
+    }
+
+    private static void update(Collection<MessageDigest> digests, ByteBuffer buffer) {
+        for (MessageDigest digest : digests) {
+            // Each digest consumes its own view of the same bytes
+            digest.update(buffer.duplicate());
+        }
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        return cache.getStatistics();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.Lookup;
+import eu.copernik.tea.MavenRepositoryImporter;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.CollectionUpdateReason;
+import eu.copernik.tea.model.CollectionUpdateReasonType;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Imports a Maven repository through a two-stage pipeline.
+ * <p>
+ *     A producer walks the Maven repository and collects the versions of each artifact when it leaves the artifact
+ *     folder, so that all the versions of an artifact are handled by the same worker. The artifacts are sent to the
+ *     workers in chunks of {@code batchSize} through a bounded queue, which limits the memory used by the walk.
+ * </p>
+ */
+@NullMarked
+public final class DefaultMavenRepositoryImporter implements MavenRepositoryImporter {
+
+    private static final DateTimeFormatter LAST_UPDATED = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /**
+     * Marks the end of the stream of artifacts: the chunks sent by the producer are never empty.
+     */
+    private static final List<ArtifactVersions> END = List.of();
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    /**
+     * Paths of the elements of {@code maven-metadata.xml} that are read.
+     */
+    private static final Set<String> TEXT_ELEMENTS = Set.of(
+            "metadata/groupId",
+            "metadata/artifactId",
+            "metadata/versioning/lastUpdated",
+            "metadata/versioning/versions/version");
+
+    /**
+     * The versions of an artifact found in the Maven repository.
+     *
+     * @param versions the release date of each version or {@code null} if it is unknown
+     */
+    private record ArtifactVersions(
+            String groupId, String artifactId, Map<String, @Nullable OffsetDateTime> versions) {}
+
+    private final TeaRepositoryManager repositoryManager;
+    private final int parallelism;
+    private final int batchSize;
+
+    public DefaultMavenRepositoryImporter(TeaRepositoryManager repositoryManager, int parallelism, int batchSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.repositoryManager = repositoryManager;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Result importRepository(Path repository, Layout layout) throws IOException {
+        if (!Files.isDirectory(repository)) {
+            throw new IOException("Maven repository is not a directory: " + repository);
+        }
+        Counters counters = new Counters();
+        try (TeaRepositoryBatch batch = repositoryManager.beginBatch()) {
+            runPipeline(repository, layout, counters);
+            batch.commit();
+        }
+        return counters.toResult();
+    }
+
+    private void runPipeline(Path repository, Layout layout, Counters counters) throws IOException {
+        BlockingQueue<List<ArtifactVersions>> queue = new ArrayBlockingQueue<>(2 * parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism + 1, newThreadFactory());
+        try {
+            CompletionService<@Nullable Void> stages = new ExecutorCompletionService<>(executor);
+            stages.submit(() -> produce(repository, layout, queue, counters.invalid));
+            for (int i = 0; i < parallelism; i++) {
+                stages.submit(() -> consume(queue, counters));
+            }
+            for (int i = 0; i <= parallelism; i++) {
+                stages.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import of Maven repository interrupted: " + repository);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to import Maven repository: " + repository, cause);
+        } finally {
+            // If a stage failed, the other ones must stop before the batch is closed
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Import workers did not stop.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "tea-importer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Walks the Maven repository and sends the artifacts to the workers.
+     */
+    private @Nullable Void produce(
+            Path repository, Layout layout, BlockingQueue<List<ArtifactVersions>> queue, LongAdder invalid)
+            throws IOException, InterruptedException {
+        try {
+            RepositoryWalker walker = new RepositoryWalker(repository, layout, queue, invalid);
+            Files.walkFileTree(repository, walker);
+            walker.flush();
+        } finally {
+            for (int i = 0; i < parallelism; i++) {
+                queue.put(END);
+            }
+        }
+        return null;
+    }
+
+    private @Nullable Void consume(BlockingQueue<List<ArtifactVersions>> queue, Counters counters)
+            throws IOException, InterruptedException {
+        for (List<ArtifactVersions> chunk = queue.take(); !chunk.isEmpty(); chunk = queue.take()) {
+            for (ArtifactVersions artifact : chunk) {
+                importArtifact(artifact, counters);
+            }
+        }
+        return null;
+    }
+
+    private void importArtifact(ArtifactVersions artifact, Counters counters) throws IOException {
+        PackageURL componentPurl = mavenPurl(artifact, null);
+        if (componentPurl == null) {
+            counters.invalid.increment();
+            return;
+        }
+        Lookup<Component> componentLookup = repositoryManager.lookupComponentByPurl(componentPurl);
+        Component component = componentLookup.value();
+        if (componentLookup.created()) {
+            component.setName(artifact.artifactId());
+            repositoryManager.saveComponent(component);
+            counters.components.increment();
+        }
+        for (Map.Entry<String, @Nullable OffsetDateTime> entry :
+                artifact.versions().entrySet()) {
+            PackageURL releasePurl = mavenPurl(artifact, entry.getKey());
+            OffsetDateTime releaseDate = entry.getValue();
+            // The release date is required
+            if (releasePurl == null || releaseDate == null) {
+                counters.invalid.increment();
+                continue;
+            }
+            Lookup<Release> releaseLookup = repositoryManager.lookupRelease(component, entry.getKey());
+            if (!releaseLookup.created()) {
+                counters.skipped.increment();
+                continue;
+            }
+            Release release = releaseLookup.value();
+            release.setReleaseDate(releaseDate);
+            release.addIdentifiersItem(
+                    new Identifier().idType(IdentifierType.PURL).idValue(releasePurl.toString()));
+            repositoryManager.saveRelease(component, release);
+            counters.releases.increment();
+            repositoryManager.saveCollection(new Collection()
+                    .uuid(release.getUuid())
+                    .version(1)
+                    .date(releaseDate)
+                    .updateReason(new CollectionUpdateReason().type(CollectionUpdateReasonType.INITIAL_RELEASE)));
+            counters.collections.increment();
+        }
+    }
+
+    private static @Nullable PackageURL mavenPurl(ArtifactVersions artifact, @Nullable String version) {
+        try {
+            return new PackageURL("maven", artifact.groupId(), artifact.artifactId(), version, null, null);
+        } catch (MalformedPackageURLException e) {
+            return null;
+        }
+    }
+
+    private static final class Counters {
+
+        private final LongAdder components = new LongAdder();
+        private final LongAdder releases = new LongAdder();
+        private final LongAdder collections = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder invalid = new LongAdder();
+
+        Result toResult() {
+            return new Result(components.sum(), releases.sum(), collections.sum(), skipped.sum(), invalid.sum());
+        }
+    }
+
+    /**
+     * Collects the versions of the artifacts of a Maven repository.
+     * <p>
+     *     The versions are stored by artifact folder and sent to the workers when the walk leaves the folder. Only the
+     *     artifact folders on the current path are kept in memory.
+     * </p>
+     */
+    private final class RepositoryWalker extends SimpleFileVisitor<Path> {
+
+        private final Path repository;
+        private final Layout layout;
+        private final BlockingQueue<List<ArtifactVersions>> queue;
+        private final Map<Path, ArtifactVersions> pending = new HashMap<>();
+        private final LongAdder invalid;
+        private List<ArtifactVersions> chunk = new ArrayList<>();
+
+        RepositoryWalker(
+                Path repository, Layout layout, BlockingQueue<List<ArtifactVersions>> queue, LongAdder invalid) {
+            this.repository = repository;
+            this.layout = layout;
+            this.queue = queue;
+            this.invalid = invalid;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            // Skips internal folders, such as `.cache` or `.index`
+            return dir.equals(repository) || !String.valueOf(dir.getFileName()).startsWith(".")
+                    ? FileVisitResult.CONTINUE
+                    : FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            String fileName = String.valueOf(file.getFileName());
+            if (layout == Layout.POM_FILES && fileName.endsWith(".pom")) {
+                visitPom(file, fileName, attrs);
+            } else if (layout == Layout.METADATA
+                    && fileName.startsWith("maven-metadata")
+                    && fileName.endsWith(".xml")) {
+                visitMetadata(file, attrs);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void visitPom(Path file, String fileName, BasicFileAttributes attrs) {
+            Path versionFolder = file.getParent();
+            Path artifactFolder = versionFolder != null ? versionFolder.getParent() : null;
+            Path groupFolder = artifactFolder != null ? artifactFolder.getParent() : null;
+            if (groupFolder == null || !groupFolder.startsWith(repository) || groupFolder.equals(repository)) {
+                return;
+            }
+            String version = String.valueOf(versionFolder.getFileName());
+            String artifactId = String.valueOf(artifactFolder.getFileName());
+            // Remote repositories contain timestamped snapshots, e.g. `artifactId-1.0-20250101.120000-1.pom`
+            boolean matches = version.endsWith("-SNAPSHOT")
+                    ? fileName.startsWith(
+                            artifactId + "-" + version.substring(0, version.length() - "SNAPSHOT".length()))
+                    : fileName.equals(artifactId + "-" + version + ".pom");
+            if (matches) {
+                StringJoiner groupId = new StringJoiner(".");
+                repository.relativize(groupFolder).forEach(name -> groupId.add(name.toString()));
+                OffsetDateTime releaseDate =
+                        attrs.lastModifiedTime().toInstant().atOffset(ZoneOffset.UTC);
+                pending.computeIfAbsent(
+                                artifactFolder,
+                                ignored -> new ArtifactVersions(groupId.toString(), artifactId, new LinkedHashMap<>()))
+                        .versions()
+                        .putIfAbsent(version, releaseDate);
+            }
+        }
+
+        private void visitMetadata(Path file, BasicFileAttributes attrs) throws IOException {
+            Metadata metadata;
+            try (InputStream input = Files.newInputStream(file)) {
+                metadata = readMetadata(input);
+            } catch (XMLStreamException e) {
+                invalid.increment();
+                return;
+            }
+            if (metadata.groupId() == null
+                    || metadata.artifactId() == null
+                    || metadata.versions().isEmpty()) {
+                // Group or snapshot metadata
+                return;
+            }
+            Path artifactFolder = Objects.requireNonNull(file.getParent());
+            // Local repositories contain a metadata file for each remote repository
+            Map<String, @Nullable OffsetDateTime> versions = pending.computeIfAbsent(
+                            artifactFolder,
+                            ignored -> new ArtifactVersions(
+                                    metadata.groupId(), metadata.artifactId(), new LinkedHashMap<>()))
+                    .versions();
+            // The metadata was last updated when the latest version was added, after the other versions
+            OffsetDateTime lastUpdated = metadata.lastUpdated() != null
+                    ? metadata.lastUpdated()
+                    : attrs.lastModifiedTime().toInstant().atOffset(ZoneOffset.UTC);
+            for (String version : metadata.versions()) {
+                OffsetDateTime releaseDate = versionDate(artifactFolder, metadata.artifactId(), version);
+                // Each date is an upper bound of the release date
+                versions.merge(
+                        version,
+                        releaseDate != null ? releaseDate : lastUpdated,
+                        (first, second) -> first.isBefore(second) ? first : second);
+            }
+        }
+
+        /**
+         * Returns the modification time of the POM file or folder of a version, if present.
+         */
+        private @Nullable OffsetDateTime versionDate(Path artifactFolder, String artifactId, String version)
+                throws IOException {
+            if (version.isEmpty() || version.startsWith(".") || version.contains("/") || version.contains("\\")) {
+                return null;
+            }
+            Path versionFolder = artifactFolder.resolve(version);
+            Path pom = versionFolder.resolve(artifactId + "-" + version + ".pom");
+            Path dated = Files.isRegularFile(pom) ? pom : versionFolder;
+            return Files.exists(dated)
+                    ? Files.getLastModifiedTime(dated).toInstant().atOffset(ZoneOffset.UTC)
+                    : null;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, @Nullable IOException exc) throws IOException {
+            if (exc != null) {
+                throw exc;
+            }
+            ArtifactVersions artifact = pending.remove(dir);
+            if (artifact != null) {
+                chunk.add(artifact);
+                if (chunk.size() >= batchSize) {
+                    flush();
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        void flush() throws InterruptedIOException {
+            if (!chunk.isEmpty()) {
+                try {
+                    queue.put(chunk);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while walking: " + repository);
+                }
+                chunk = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * The content of a {@code maven-metadata.xml} file relevant to the import.
+     */
+    private record Metadata(
+            @Nullable String groupId,
+            @Nullable String artifactId,
+            List<String> versions,
+            @Nullable OffsetDateTime lastUpdated) {}
+
+    private static Metadata readMetadata(InputStream input) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        OffsetDateTime lastUpdated = null;
+        List<String> versions = new ArrayList<>();
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+        try {
+            List<String> path = new ArrayList<>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    path.add(reader.getLocalName());
+                    String element = String.join("/", path);
+                    if (TEXT_ELEMENTS.contains(element)) {
+                        String text = reader.getElementText().trim();
+                        // `getElementText` consumed the end element
+                        path.remove(path.size() - 1);
+                        switch (element) {
+                            case "metadata/groupId" -> groupId = text;
+                            case "metadata/artifactId" -> artifactId = text;
+                            case "metadata/versioning/lastUpdated" -> lastUpdated = parseLastUpdated(text);
+                            default -> versions.add(text);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    path.remove(path.size() - 1);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new Metadata(groupId, artifactId, versions, lastUpdated);
+    }
+
+    private static @Nullable OffsetDateTime parseLastUpdated(String value) {
+        try {
+            return LocalDateTime.parse(value, LAST_UPDATED).atOffset(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
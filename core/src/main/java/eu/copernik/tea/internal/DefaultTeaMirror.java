@@ -0,0 +1,481 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.copernik.tea.TeaMirror;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Mirrors a remote TEA server with the HTTP client of the JDK, which keeps a pool of connections to the server.
+ * <p>
+ *     Each resource of the TEA API is fetched by a task of a thread pool, which submits a task for each resource it
+ *     references. The validators and references of each mirrored resource are stored in an {@link AppendOnlyStore},
+ *     keyed by path, so that the references of a resource answered with {@code 304 Not Modified} can still be
+ *     followed.
+ * </p>
+ * <p>
+ *     The run is performed in a single {@link TeaRepositoryBatch}, which is committed every {@value #COMMIT_INTERVAL}
+ *     mirrored resources. The state of the resources is only written to the store after the commit, so that it never
+ *     refers to objects whose aggregates were not regenerated.
+ * </p>
+ */
+@NullMarked
+public final class DefaultTeaMirror implements TeaMirror {
+
+    private static final int COMMIT_INTERVAL = 1000;
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The state of a mirrored resource.
+     *
+     * @param etag the {@code ETag} header of the last response
+     * @param lastModified the {@code Last-Modified} header of the last response
+     * @param references the paths of the resources referenced by the resource
+     */
+    record ResourceState(@Nullable String etag, @Nullable String lastModified, List<String> references) {}
+
+    /**
+     * The resources of the TEA API that are mirrored.
+     */
+    private enum Resource {
+        PRODUCTS,
+        COMPONENT,
+        RELEASES,
+        LATEST_COLLECTION,
+        COLLECTION;
+
+        /**
+         * Returns the type of the resource with the given path, e.g. {@code /release/<uuid>/collection/2}.
+         */
+        static Resource of(String[] segments) throws IOException {
+            if ("products".equals(segments[1])) {
+                return PRODUCTS;
+            }
+            if ("component".equals(segments[1])) {
+                return segments.length == 3 ? COMPONENT : RELEASES;
+            }
+            if ("release".equals(segments[1])) {
+                return segments.length == 4 ? LATEST_COLLECTION : COLLECTION;
+            }
+            throw new IOException("Unsupported TEA resource: " + String.join("/", segments));
+        }
+    }
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            // Accept the extensions of other TEA servers
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final TeaRepositoryManager repositoryManager;
+    private final Path stateFile;
+    private final int parallelism;
+
+    public DefaultTeaMirror(TeaRepositoryManager repositoryManager, Path stateFile, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.repositoryManager = repositoryManager;
+        this.stateFile = stateFile;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public Result mirror(URI baseUri) throws IOException {
+        String base = baseUri.toString().replaceAll("/+$", "");
+        try (AppendOnlyStore state = AppendOnlyStore.open(stateFile);
+                TeaRepositoryBatch batch = repositoryManager.beginBatch()) {
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism, newThreadFactory());
+            try {
+                Run run = new Run(base, state, batch, executor);
+                run.visit("/products");
+                run.await();
+                run.commitAll();
+                return run.toResult();
+            } finally {
+                // If a task failed, the other ones must stop before the batch is closed
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Mirror workers did not stop.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "tea-mirror-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static byte[] body(HttpResponse<byte[]> response) throws IOException {
+        if (response.headers()
+                .firstValue("Content-Encoding")
+                .filter("gzip"::equalsIgnoreCase)
+                .isPresent()) {
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                return input.readAllBytes();
+            }
+        }
+        return response.body();
+    }
+
+    /**
+     * A single mirror run.
+     */
+    private final class Run {
+
+        private final String baseUri;
+        private final AppendOnlyStore state;
+        private final TeaRepositoryBatch batch;
+        private final ExecutorService executor;
+        private final HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        /**
+         * The paths visited by this run, since several products can reference the same component.
+         */
+        private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+        private final AtomicLong pendingTasks = new AtomicLong();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<@Nullable Exception> failure = new AtomicReference<>();
+
+        /**
+         * The state of the resources mirrored since the last commit.
+         */
+        private final Map<String, ResourceState> uncommitted = new HashMap<>();
+
+        private final Object commitLock = new Object();
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+        private final LongAdder products = new LongAdder();
+        private final LongAdder components = new LongAdder();
+        private final LongAdder releases = new LongAdder();
+        private final LongAdder collections = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+
+        Run(String baseUri, AppendOnlyStore state, TeaRepositoryBatch batch, ExecutorService executor) {
+            this.baseUri = baseUri;
+            this.state = state;
+            this.batch = batch;
+            this.executor = executor;
+        }
+
+        /**
+         * Submits a task that mirrors a resource, unless it was already visited.
+         */
+        void visit(String path) {
+            if (failure.get() != null || !visited.add(path)) {
+                return;
+            }
+            pendingTasks.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        mirror(path);
+                    } catch (Exception e) {
+                        fail(e);
+                    } finally {
+                        taskDone();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                taskDone();
+            }
+        }
+
+        private void taskDone() {
+            if (pendingTasks.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        private void fail(Exception e) {
+            if (failure.compareAndSet(null, e)) {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Waits until all the resources are mirrored or a task fails.
+         */
+        void await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Mirror of TEA server interrupted: " + baseUri);
+            }
+            Exception e = failure.get();
+            if (e instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e != null) {
+                throw new IOException("Failed to mirror TEA server: " + baseUri, e);
+            }
+        }
+
+        private void mirror(String path) throws IOException, InterruptedException {
+            String[] segments = path.split("[/?]", -1);
+            Resource resource = Resource.of(segments);
+            if (resource == Resource.COLLECTION) {
+                mirrorCollection(UUID.fromString(segments[2]), Integer.parseInt(segments[4]), path);
+                return;
+            }
+            byte[] storedState = state.get(path);
+            ResourceState previous =
+                    storedState != null ? objectMapper.readValue(storedState, ResourceState.class) : null;
+            HttpRequest.Builder request = newRequest(path);
+            if (previous != null && previous.etag() != null) {
+                request.header("If-None-Match", previous.etag());
+            }
+            if (previous != null && previous.lastModified() != null) {
+                request.header("If-Modified-Since", previous.lastModified());
+            }
+            HttpResponse<byte[]> response = send(request);
+            List<String> references;
+            switch (response.statusCode()) {
+                case 200 -> {
+                    references = save(resource, segments, body(response));
+                    record(
+                            path,
+                            new ResourceState(
+                                    response.headers().firstValue("ETag").orElse(null),
+                                    response.headers()
+                                            .firstValue("Last-Modified")
+                                            .orElse(null),
+                                    references));
+                }
+                case 304 -> {
+                    if (previous == null) {
+                        throw new IOException("Unexpected 304 response for resource: "
+                                + request.build().uri());
+                    }
+                    notModified.increment();
+                    references = previous.references();
+                }
+                // An empty list, e.g. a component without releases
+                case 404 -> references = List.of();
+                default ->
+                    throw new IOException(
+                            "Unexpected " + response.statusCode() + " response for resource: " + response.uri());
+            }
+            references.forEach(this::visit);
+        }
+
+        /**
+         * Saves the TEA objects of a resource.
+         *
+         * @return the paths of the referenced resources
+         */
+        private List<String> save(Resource resource, String[] segments, byte[] body) throws IOException {
+            List<String> references = new ArrayList<>();
+            switch (resource) {
+                case PRODUCTS -> {
+                    ProductPaginationDetails page = objectMapper.readValue(body, ProductPaginationDetails.class);
+                    for (Product product : page.getResults()) {
+                        repositoryManager.saveProduct(product);
+                        products.increment();
+                        for (UUID componentUuid : product.getComponents()) {
+                            references.add("/component/" + componentUuid);
+                        }
+                    }
+                    long next = page.getPageStartIndex() + page.getResults().size();
+                    if (!page.getResults().isEmpty() && next < page.getTotalResults()) {
+                        references.add("/products?pageOffset=" + next + "&pageSize=" + page.getPageSize());
+                    }
+                }
+                case COMPONENT -> {
+                    repositoryManager.saveComponent(objectMapper.readValue(body, Component.class));
+                    components.increment();
+                    references.add("/component/" + segments[2] + "/releases");
+                }
+                case RELEASES -> {
+                    Component component = new Component().uuid(UUID.fromString(segments[2]));
+                    for (Release release : objectMapper.readValue(body, Release[].class)) {
+                        repositoryManager.saveRelease(component, release);
+                        releases.increment();
+                        references.add("/release/" + release.getUuid() + "/collection");
+                    }
+                }
+                case LATEST_COLLECTION -> {
+                    Collection latest = objectMapper.readValue(body, Collection.class);
+                    Release release = new Release().uuid(UUID.fromString(segments[2]));
+                    saveCollection(release, latest);
+                    // Only the missing versions are fetched
+                    for (int version = latest.getVersion() - 1; version > 0; version--) {
+                        if (repositoryManager.getCollection(release, version) == null) {
+                            references.add("/release/" + segments[2] + "/collection/" + version);
+                        }
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unexpected resource: " + resource);
+            }
+            return references;
+        }
+
+        /**
+         * Mirrors a collection version, unless it is already present.
+         * <p>
+         *     Collection versions are immutable: no conditional request is needed.
+         * </p>
+         */
+        private void mirrorCollection(UUID releaseUuid, int version, String path)
+                throws IOException, InterruptedException {
+            Release release = new Release().uuid(releaseUuid);
+            if (repositoryManager.getCollection(release, version) != null) {
+                skipped.increment();
+                return;
+            }
+            HttpResponse<byte[]> response = send(newRequest(path));
+            if (response.statusCode() == 200) {
+                saveCollection(release, objectMapper.readValue(body(response), Collection.class));
+            } else if (response.statusCode() != 404) {
+                throw new IOException(
+                        "Unexpected " + response.statusCode() + " response for resource: " + response.uri());
+            }
+        }
+
+        private void saveCollection(Release release, Collection collection) throws IOException {
+            if (repositoryManager.getCollection(release, collection.getVersion()) != null) {
+                skipped.increment();
+            } else {
+                repositoryManager.saveCollection(collection);
+                collections.increment();
+            }
+        }
+
+        private HttpRequest.Builder newRequest(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUri + path))
+                    .timeout(TIMEOUT)
+                    .header("Accept", "application/json")
+                    .header("Accept-Encoding", "gzip");
+        }
+
+        private HttpResponse<byte[]> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+            requests.increment();
+            return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        }
+
+        /**
+         * Records the state of a mirrored resource and commits the batch every {@value #COMMIT_INTERVAL} resources.
+         */
+        private void record(String path, ResourceState resourceState) throws IOException {
+            Map<String, ResourceState> states = null;
+            synchronized (uncommitted) {
+                uncommitted.put(path, resourceState);
+                if (uncommitted.size() >= COMMIT_INTERVAL) {
+                    states = new HashMap<>(uncommitted);
+                    uncommitted.clear();
+                }
+            }
+            if (states != null) {
+                commit(states);
+            }
+        }
+
+        void commitAll() throws IOException {
+            Map<String, ResourceState> states;
+            synchronized (uncommitted) {
+                states = new HashMap<>(uncommitted);
+                uncommitted.clear();
+            }
+            commit(states);
+        }
+
+        /**
+         * Regenerates the aggregates of the objects saved so far and stores the state of their resources.
+         */
+        private void commit(Map<String, ResourceState> states) throws IOException {
+            synchronized (commitLock) {
+                batch.commit();
+                for (Map.Entry<String, ResourceState> entry : states.entrySet()) {
+                    state.put(entry.getKey(), objectMapper.writeValueAsBytes(entry.getValue()));
+                }
+                state.checkpoint();
+            }
+        }
+
+        Result toResult() {
+            return new Result(
+                    requests.sum(),
+                    notModified.sum(),
+                    products.sum(),
+                    components.sum(),
+                    releases.sum(),
+                    collections.sum(),
+                    skipped.sum());
+        }
+    }
+}
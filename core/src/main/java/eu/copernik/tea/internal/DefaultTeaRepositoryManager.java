@@ -15,207 +15,1447 @@
  */
 package eu.copernik.tea.internal;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.github.packageurl.PackageURL;
+import eu.copernik.tea.CacheStatistics;
+import eu.copernik.tea.Change;
+import eu.copernik.tea.DirectoryLayout;
+import eu.copernik.tea.Lookup;
+import eu.copernik.tea.OperationStatistics;
+import eu.copernik.tea.OutputProfile;
+import eu.copernik.tea.RepositoryOperation;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryBatch;
 import eu.copernik.tea.TeaRepositoryManager;
 import eu.copernik.tea.model.Collection;
 import eu.copernik.tea.model.Component;
 import eu.copernik.tea.model.Identifier;
 import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.PaginationDetails;
 import eu.copernik.tea.model.Product;
 import eu.copernik.tea.model.Release;
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.Validator;
-import jakarta.validation.ValidatorFactory;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
 @NullMarked
-public class DefaultTeaRepositoryManager implements TeaRepositoryManager {
+public final class DefaultTeaRepositoryManager implements TeaRepositoryManager {
 
-    private final ObjectMapper objectMapper = JsonMapper.builder()
-            .addModule(new JavaTimeModule())
-            .enable(SerializationFeature.INDENT_OUTPUT)
-            .build();
+    private final ObjectMapper objectMapper =
+            JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    /**
+     * Folder containing the internal indexes, which are not part of the TEA layout.
+     */
+    private static final String INDEX_FOLDER = ".index";
+
+    private static final String COMPONENT_INDEX_FILE = INDEX_FOLDER + "/component-identifiers.idx";
+
+    private static final String PRODUCT_INDEX_FILE = INDEX_FOLDER + "/product-identifiers.idx";
+
+    /**
+     * Folder containing the precomputed results of the product queries by identifier.
+     */
+    private static final String PRODUCT_IDENTIFIER_FOLDER = "products/identifier";
+
+    private static final int MAX_CACHED_RELEASE_INDEXES = 1024;
+
+    /**
+     * The lock key of the product pages.
+     */
+    private static final String PRODUCTS_LOCK = "products";
+
+    private static final byte PRODUCT_MUTATION = 'P';
+    private static final byte COMPONENT_MUTATION = 'C';
+    private static final byte RELEASE_MUTATION = 'R';
+    private static final byte COLLECTION_MUTATION = 'L';
 
     private final Path basePath;
+    private final DirectoryLayout layout;
+    private final ObjectWriter objectWriter;
+    private final boolean precompress;
+    private final OperationRecorder recorder = new OperationRecorder();
+    private final RepositoryLocks locks;
+    private final ModelValidator modelValidator;
+
+    /**
+     * Executor used to load models concurrently, if the parallelism is greater than one.
+     */
+    private final @Nullable ExecutorService executor;
+
+    private final @Nullable ModelCache modelCache;
+
+    /**
+     * Whether the models were validated before being journaled.
+     */
+    private final boolean journaled;
+
+    /**
+     * Journal of the mutations, if enabled.
+     * <p>
+     *     Set by {@link #open(TeaRepository)}, before the manager is returned.
+     * </p>
+     */
+    private @Nullable MutationJournal journal;
+
+    /**
+     * Files written since the last checkpoint of the journal.
+     */
+    private final Set<Path> unsyncedFiles = ConcurrentHashMap.newKeySet();
+
+    private final ChangeFeed changeFeed;
+
+    /**
+     * Store of the artifacts of the collections, if they are content-addressed.
+     */
+    private final @Nullable ArtifactStore artifactStore;
+
+    /**
+     * Folder containing the collections of each release.
+     */
+    private final String collectionRoot;
+
+    private @Nullable UuidIndex componentIndex;
+
+    private @Nullable UuidIndex productIndex;
+
+    private final int productsPageSize;
+
+    /**
+     * UUIDs of all the products, loaded on first use.
+     */
+    private @Nullable SortedSet<UUID> productUuids;
+
+    private FileStamp productFolderStamp = FileStamp.MISSING;
+
+    /**
+     * Number of open batches and aggregates to regenerate when the last one is closed.
+     */
+    private final AtomicInteger batchDepth = new AtomicInteger();
+
+    /**
+     * Number of calls to the {@code save*} methods, used to detect batches without modifications since their last
+     * commit.
+     */
+    private final AtomicLong saveCount = new AtomicLong();
+
+    private final AtomicBoolean productsDirty = new AtomicBoolean();
+    private final Set<UUID> dirtyComponents = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> dirtyReleases = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyProductIdentifiers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Release version indexes of the most recently used components.
+     */
+    private final Map<UUID, UuidIndex> releaseIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, UuidIndex> eldest) {
+            return size() > MAX_CACHED_RELEASE_INDEXES;
+        }
+    };
+
+    private DefaultTeaRepositoryManager(
+            TeaRepository repository, RepositoryLocks locks, DirectoryLayout layout, boolean contentAddressed) {
+        this.basePath = repository.getBasePath();
+        this.layout = layout;
+        this.locks = locks;
+        OutputProfile outputProfile = repository.getOutputProfile();
+        objectWriter = outputProfile.indent() ? objectMapper.writerWithDefaultPrettyPrinter() : objectMapper.writer();
+        precompress = outputProfile.precompress();
+        this.modelValidator = new ModelValidator(repository.getValidationPolicy(), recorder);
+        this.productsPageSize = repository.getProductsPageSize();
+        modelCache = repository.getCacheSize() > 0 ? new ModelCache(repository.getCacheSize()) : null;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = repository.getParallelism() > 1
+                ? Executors.newFixedThreadPool(repository.getParallelism(), runnable -> {
+                    Thread thread = new Thread(runnable, "tea-repository-loader-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+        changeFeed = new ChangeFeed(basePath, objectMapper, locks, this::saveModelOrThrow);
+        artifactStore = contentAddressed ? new ArtifactStore(basePath, this::writeInternalFile) : null;
+        collectionRoot = contentAddressed ? ArtifactStore.RELEASE_FOLDER : "release";
+        journaled = repository.isJournal();
+    }
+
+    /**
+     * Opens a repository.
+     * <p>
+     *     The layout of an existing repository is detected, while a new repository is initialized. The changes left
+     *     unpublished and the journals left behind by crashed managers are then recovered.
+     * </p>
+     *
+     * @param repository the configuration of the repository
+     * @return a new manager, which must be closed
+     * @throws UncheckedIOException if the repository cannot be opened
+     */
+    public static DefaultTeaRepositoryManager open(TeaRepository repository) {
+        Path basePath = repository.getBasePath();
+        RepositoryLocks locks;
+        try {
+            // Fails while the layout of the repository is migrated
+            locks = RepositoryLocks.open(basePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        DefaultTeaRepositoryManager manager;
+        try {
+            boolean contentAddressed = openArtifactStore(basePath, repository.isContentAddressedArtifacts());
+            DirectoryLayout layout = openLayout(basePath, repository.getDirectoryLayout());
+            manager = new DefaultTeaRepositoryManager(repository, locks, layout, contentAddressed);
+        } catch (RuntimeException e) {
+            try {
+                locks.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        try {
+            // Publishes the changes left unpublished by crashed managers
+            manager.changeFeed.recover();
+            manager.openProductPages();
+            if (manager.journaled) {
+                manager.journal = MutationJournal.open(basePath, manager.new JournalReplayer());
+            }
+            return manager;
+        } catch (IOException | RuntimeException e) {
+            // Stops the threads and releases the resources started by the constructor
+            try {
+                manager.close();
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e instanceof IOException ioException ? new UncheckedIOException(ioException) : (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Records the page size of the product list, rewriting the list if it was written with another page size.
+     */
+    private void openProductPages() throws IOException {
+        RepositoryLocks.Handle lock = locks.lock(PRODUCTS_LOCK);
+        try {
+            if (readProductsPageSize() == productsPageSize) {
+                return;
+            }
+            if (Files.exists(basePath.resolve("products.json"))) {
+                synchronized (this) {
+                    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+                    writeProductPages(getProductUuids(), productsPageSize, 0, Integer.MAX_VALUE, now);
+                }
+            }
+            // Recorded last, so that an interrupted rewrite is resumed by the next manager
+            Path pageSizeFile = basePath.resolve(TeaRepository.PRODUCTS_PAGE_SIZE_FILE);
+            Files.createDirectories(Objects.requireNonNull(pageSizeFile.getParent()));
+            writeInternalFile(pageSizeFile, (productsPageSize + "\n").getBytes(StandardCharsets.UTF_8));
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Returns the page size of the product list, which might have been changed by a manager opened later.
+     * <p>
+     *     The caller must hold the products lock.
+     * </p>
+     */
+    private int getProductsPageSize() throws IOException {
+        int pageSize = readProductsPageSize();
+        return pageSize > 0 ? pageSize : productsPageSize;
+    }
+
+    /**
+     * Reads the page size of the product list recorded in the repository.
+     *
+     * @return the page size or {@code 0} if none is recorded
+     */
+    private int readProductsPageSize() throws IOException {
+        Path pageSizeFile = basePath.resolve(TeaRepository.PRODUCTS_PAGE_SIZE_FILE);
+        try {
+            return Integer.parseInt(Files.readString(pageSizeFile, StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the layout of an existing repository or initializes the layout of a new one.
+     */
+    private static DirectoryLayout openLayout(Path basePath, DirectoryLayout newLayout) {
+        try {
+            if (Files.exists(basePath.resolve(DirectoryLayout.LAYOUT_FILE))
+                    || Files.exists(basePath.resolve("component"))
+                    || Files.exists(basePath.resolve("release"))) {
+                return DirectoryLayout.detect(basePath);
+            }
+            DirectoryLayoutMigrator.writeLayout(basePath, newLayout);
+            return newLayout;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-    protected DefaultTeaRepositoryManager(Path basePath) {
-        this.basePath = basePath;
+    /**
+     * Returns whether an existing repository has content-addressed artifacts or initializes the artifact store of a new
+     * one.
+     */
+    private static boolean openArtifactStore(Path basePath, boolean contentAddressed) {
+        Path artifactFolder = basePath.resolve(ArtifactStore.ARTIFACT_FOLDER);
+        if (Files.isDirectory(artifactFolder)) {
+            return true;
+        }
+        if (!contentAddressed
+                || Files.exists(basePath.resolve(DirectoryLayout.LAYOUT_FILE))
+                || Files.exists(basePath.resolve("release"))) {
+            return false;
+        }
+        try {
+            Files.createDirectories(artifactFolder);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
-    public @Nullable Product getProduct(UUID id) throws IOException {
-        Path productFile = basePath.resolve("product/" + id + ".json");
-        if (Files.exists(productFile)) {
-            return loadModelOrThrow(Product.class, productFile);
+    public void close() {
+        try {
+            try {
+                try {
+                    if (journal != null) {
+                        journal.close();
+                        syncWrittenFiles();
+                    }
+                } finally {
+                    changeFeed.close();
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+                modelValidator.close();
+                locks.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return null;
     }
 
-    private List<Product> findAllProducts() throws IOException {
-        Path productFolder = basePath.resolve("product");
-        return findAllModels(Product.class, productFolder);
+    @Override
+    public @Nullable Product getProduct(UUID id) throws IOException {
+        awaitJournal();
+        Path productFile = basePath.resolve("product/" + id + ".json");
+        return findModel(Product.class, productFile);
     }
 
     @Override
     public void saveProduct(Product product) throws IOException {
+        saveCount.incrementAndGet();
+        if (journal != null) {
+            journal.record(PRODUCT_MUTATION, journalPayload(product));
+        } else {
+            applyProduct(product);
+        }
+    }
+
+    private void applyProduct(Product product) throws IOException {
         Path productFile = basePath.resolve("product/" + product.getUuid() + ".json");
         Files.createDirectories(productFile.getParent());
-        saveModelOrThrow(product, productFile);
-        updateProductsJson(OffsetDateTime.now(ZoneOffset.UTC));
+        // The product pages are shared by all products
+        RepositoryLocks.Handle lock = locks.lock(PRODUCTS_LOCK);
+        boolean changed;
+        try {
+            boolean isNew = !Files.exists(productFile);
+            // Must be checked before the product file is replaced, which modifies the folder
+            boolean folderModified = isProductFolderModified();
+            changed = saveEntity(product, productFile);
+            UuidIndex index = getProductIndex();
+            Set<String> identifierKeys = new HashSet<>(index.keys(product.getUuid()));
+            Set<String> newKeys = identifierKeys(product.getIdentifiers());
+            index.put(product.getUuid(), newKeys);
+            identifierKeys.addAll(newKeys);
+            if (batchDepth.get() > 0) {
+                productsDirty.set(true);
+                dirtyProductIdentifiers.addAll(identifierKeys);
+            } else {
+                OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+                updateProductsJson(product.getUuid(), isNew, folderModified, now);
+                writeProductIdentifierPages(identifierKeys, now);
+            }
+        } finally {
+            lock.close();
+        }
+        if (changed) {
+            recordChange(Change.Type.PRODUCT, product.getUuid(), null, null);
+        }
+    }
+
+    @Override
+    public List<Product> findProductsByIdentifier(IdentifierType idType, String idValue) throws IOException {
+        awaitJournal();
+        return findIndexedProducts(idType, idValue);
+    }
+
+    /**
+     * Finds the products with the given identifier in the TEA layout, without waiting for the journal.
+     * <p>
+     *     Used while the journal is applied, which would otherwise wait for itself.
+     * </p>
+     */
+    private List<Product> findIndexedProducts(IdentifierType idType, String idValue) throws IOException {
+        String key = identifierKey(idType, idValue);
+        Set<UUID> candidates = getProductIndex().get(key);
+        List<Product> products = findProductsAmong(candidates, idType, idValue);
+        if (products.size() < candidates.size()) {
+            // The product files were modified behind our back
+            products = findProductsAmong(rebuildProductIndex().get(key), idType, idValue);
+        }
+        return products;
+    }
+
+    private List<Product> findProductsAmong(Set<UUID> uuids, IdentifierType idType, String idValue) throws IOException {
+        List<Product> products = new ArrayList<>();
+        for (UUID uuid : new TreeSet<>(uuids)) {
+            Product product = findModel(Product.class, basePath.resolve("product/" + uuid + ".json"));
+            if (product != null && hasIdentifier(product.getIdentifiers(), idType, idValue)) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    private static boolean hasIdentifier(List<Identifier> identifiers, IdentifierType idType, String idValue) {
+        return identifiers.stream().anyMatch(id -> idType.equals(id.getIdType()) && idValue.equals(id.getIdValue()));
+    }
+
+    /**
+     * Returns the index of product identifiers, loading it or rebuilding it if necessary.
+     * <p>
+     *     The index is rebuilt if it is missing, corrupted or if the set of indexed products does not match the
+     *     product files present in the repository.
+     * </p>
+     */
+    private synchronized UuidIndex getProductIndex() throws IOException {
+        UuidIndex index = productIndex;
+        if (index == null) {
+            index = UuidIndex.load(basePath.resolve(PRODUCT_INDEX_FILE));
+            productIndex = index != null && index.uuids().equals(findAllModelUuids(basePath.resolve("product")))
+                    ? index
+                    : rebuildProductIndex();
+        }
+        return productIndex;
+    }
+
+    private synchronized UuidIndex rebuildProductIndex() throws IOException {
+        Map<UUID, Set<String>> entries = new HashMap<>();
+        for (Product product : findAllModels(Product.class, basePath.resolve("product"))) {
+            entries.put(product.getUuid(), identifierKeys(product.getIdentifiers()));
+        }
+        UuidIndex index = UuidIndex.create(basePath.resolve(PRODUCT_INDEX_FILE), entries);
+        productIndex = index;
+        return index;
+    }
+
+    /**
+     * Writes the precomputed results of the product queries by identifier.
+     * <p>
+     *     The products with identifier {@code (idType, idValue)} are listed in
+     *     {@code products/identifier/<idType>/<sha256(idValue)>.json}, so that a static server can answer the
+     *     {@code /products?idType=...&idValue=...} queries. The SHA-256 hash of the UTF-8 encoded value is used,
+     *     since identifiers contain characters that are not allowed in file names.
+     * </p>
+     *
+     * @param identifierKeys the identifier keys whose results changed
+     */
+    @SuppressWarnings("try")
+    private void writeProductIdentifierPages(Set<String> identifierKeys, OffsetDateTime timestamp) throws IOException {
+        for (String key : identifierKeys) {
+            try (OperationRecorder.Span span = recorder.start(RepositoryOperation.UPDATE_AGGREGATE, key)) {
+                writeProductIdentifierPage(key, timestamp);
+            }
+        }
+    }
+
+    private void writeProductIdentifierPage(String key, OffsetDateTime timestamp) throws IOException {
+        int separator = key.indexOf(':');
+        IdentifierType idType = IdentifierType.fromValue(key.substring(0, separator));
+        String idValue = key.substring(separator + 1);
+        List<Product> products = findIndexedProducts(idType, idValue);
+        ProductPaginationDetails page = new ProductPaginationDetails().results(products);
+        page.timestamp(timestamp)
+                .pageStartIndex(0L)
+                .pageSize((long) Math.max(productsPageSize, products.size()))
+                .totalResults((long) products.size());
+        Path pageFolder = basePath.resolve(PRODUCT_IDENTIFIER_FOLDER + "/" + idType.getValue());
+        Files.createDirectories(pageFolder);
+        String pageName = ArtifactStore.sha256Hex(idValue.getBytes(StandardCharsets.UTF_8));
+        Path pageFile = pageFolder.resolve(pageName + ".json");
+        saveModelOrThrow(page, pageFile);
     }
 
     private List<Component> findAllComponents() throws IOException {
-        Path componentFolder = basePath.resolve("component");
-        return findAllModels(Component.class, componentFolder);
+        List<Component> components = new ArrayList<>();
+        for (Path componentFolder : layout.entryFolders(basePath.resolve("component"))) {
+            components.addAll(findAllModels(Component.class, componentFolder));
+        }
+        return components;
+    }
+
+    private Set<UUID> findAllComponentUuids() throws IOException {
+        Set<UUID> uuids = new HashSet<>();
+        for (Path componentFolder : layout.entryFolders(basePath.resolve("component"))) {
+            uuids.addAll(findAllModelUuids(componentFolder));
+        }
+        return uuids;
     }
 
     Optional<Component> findComponentByPurl(PackageURL purl) throws IOException {
-        return findAllComponents().stream()
-                .filter(component -> component.getIdentifiers().stream()
-                        .anyMatch(id -> IdentifierType.PURL.equals(id.getIdType())
-                                && purl.toString().equals(id.getIdValue())))
-                .findFirst();
+        return findComponentByIdentifier(IdentifierType.PURL, purl.toString());
+    }
+
+    // Package-private for tests
+    Optional<Component> findComponentByIdentifier(IdentifierType idType, String idValue) throws IOException {
+        String key = identifierKey(idType, idValue);
+        Set<UUID> candidates = getComponentIndex().get(key);
+        Optional<Component> component = findComponentAmong(candidates, idType, idValue);
+        if (component.isEmpty() && !candidates.isEmpty()) {
+            // The component files were modified behind our back
+            component = findComponentAmong(rebuildComponentIndex().get(key), idType, idValue);
+        }
+        return component;
+    }
+
+    private Optional<Component> findComponentAmong(Set<UUID> uuids, IdentifierType idType, String idValue)
+            throws IOException {
+        for (UUID uuid : uuids) {
+            Path componentFile = getComponentFile(uuid);
+            Component component = findModel(Component.class, componentFile);
+            if (component != null && hasIdentifier(component.getIdentifiers(), idType, idValue)) {
+                return Optional.of(component);
+            }
+        }
+        return Optional.empty();
     }
 
     @Override
-    public Component getOrCreateComponentByPurl(PackageURL purl) throws IOException {
-        return findComponentByPurl(purl).orElseGet(() -> {
+    public Lookup<Component> lookupComponentByPurl(PackageURL purl) throws IOException {
+        awaitJournal();
+        Optional<Component> existing = findComponentByPurl(purl);
+        if (existing.isPresent()) {
+            return new Lookup<>(existing.get(), false);
+        }
+        String reservation = componentReservation(identifierKey(IdentifierType.PURL, purl.toString()));
+        RepositoryLocks.Handle lock = locks.lock(reservation);
+        try {
+            // Another process might have created the component since the index was loaded
+            getComponentIndex().refresh();
+            existing = findComponentByPurl(purl);
+            if (existing.isPresent()) {
+                return new Lookup<>(existing.get(), false);
+            }
             Component newComponent = new Component();
-            newComponent.setUuid(UUID.randomUUID());
-            newComponent.addIdentifiersItem(
-                    new Identifier().idType(IdentifierType.PURL).idValue(purl.toString()));
-            return newComponent;
-        });
+            // Concurrent callers, in any process, must create the same component
+            newComponent.setUuid(locks.reserve(reservation));
+            newComponent.addIdentifiersItem(new Identifier().idType(IdentifierType.PURL).idValue(purl.toString()));
+            return new Lookup<>(newComponent, true);
+        } finally {
+            lock.close();
+        }
     }
 
     @Override
     public void saveComponent(Component component) throws IOException {
-        Path componentFile = basePath.resolve("component/" + component.getUuid() + ".json");
+        saveCount.incrementAndGet();
+        if (journal != null) {
+            journal.record(COMPONENT_MUTATION, journalPayload(component));
+        } else {
+            applyComponent(component);
+        }
+        for (Identifier identifier : component.getIdentifiers()) {
+            locks.release(
+                    componentReservation(identifierKey(identifier.getIdType(), identifier.getIdValue())),
+                    component.getUuid());
+        }
+    }
+
+    private void applyComponent(Component component) throws IOException {
+        Path componentFile = getComponentFile(component.getUuid());
         Files.createDirectories(componentFile.getParent());
-        saveModelOrThrow(component, componentFile);
+        RepositoryLocks.Handle lock = locks.lock(componentLock(component.getUuid()));
+        boolean changed;
+        try {
+            changed = saveEntity(component, componentFile);
+            getComponentIndex().put(component.getUuid(), identifierKeys(component.getIdentifiers()));
+        } finally {
+            lock.close();
+        }
+        if (changed) {
+            recordChange(Change.Type.COMPONENT, component.getUuid(), null, null);
+        }
+    }
+
+    private static String componentLock(UUID componentUuid) {
+        return "component/" + componentUuid;
+    }
+
+    private static String componentReservation(String identifierKey) {
+        return "component:" + identifierKey;
+    }
+
+    private Path getComponentFile(UUID componentUuid) {
+        return basePath.resolve(layout.entryPath("component", componentUuid) + ".json");
+    }
+
+    /**
+     * Returns the folder containing the releases of a component.
+     */
+    private Path getComponentFolder(UUID componentUuid) {
+        return basePath.resolve(layout.entryPath("component", componentUuid));
+    }
+
+    /**
+     * Returns the index of component identifiers, loading it or rebuilding it if necessary.
+     * <p>
+     *     The index is rebuilt if it is missing, corrupted or if the set of indexed components does not match the
+     *     component files present in the repository.
+     * </p>
+     */
+    private synchronized UuidIndex getComponentIndex() throws IOException {
+        UuidIndex index = componentIndex;
+        if (index == null) {
+            index = UuidIndex.load(basePath.resolve(COMPONENT_INDEX_FILE));
+            componentIndex =
+                    index != null && index.uuids().equals(findAllComponentUuids()) ? index : rebuildComponentIndex();
+        }
+        return componentIndex;
+    }
+
+    private synchronized UuidIndex rebuildComponentIndex() throws IOException {
+        Map<UUID, Set<String>> entries = new HashMap<>();
+        for (Component component : findAllComponents()) {
+            entries.put(component.getUuid(), identifierKeys(component.getIdentifiers()));
+        }
+        UuidIndex index = UuidIndex.create(basePath.resolve(COMPONENT_INDEX_FILE), entries);
+        componentIndex = index;
+        return index;
+    }
+
+    static Set<String> identifierKeys(List<Identifier> identifiers) {
+        return identifiers.stream()
+                .map(id -> identifierKey(id.getIdType(), id.getIdValue()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    static String identifierKey(IdentifierType idType, String idValue) {
+        return idType.getValue() + ':' + idValue;
     }
 
     private List<Release> findAllReleases(UUID componentUuid) throws IOException {
-        Path releaseFolder = basePath.resolve("component/" + componentUuid + "/release");
+        Path releaseFolder = getComponentFolder(componentUuid).resolve("release");
         return findAllModels(Release.class, releaseFolder);
     }
 
     private Optional<Release> findReleaseByUuidAndVersion(UUID componentUuid, String version) throws IOException {
+        UuidIndex index = getReleaseIndex(componentUuid);
+        Set<UUID> candidates = index.get(version);
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        Path releaseFile = getReleaseFile(componentUuid, version);
+        Release indexed = findModel(Release.class, releaseFile);
+        if (indexed != null && version.equals(indexed.getVersion()) && candidates.contains(indexed.getUuid())) {
+            return Optional.of(indexed);
+        }
+        // The release files were modified behind our back
+        rebuildReleaseIndex(componentUuid);
         return findAllReleases(componentUuid).stream()
                 .filter(release -> version.equals(release.getVersion()))
                 .findFirst();
     }
 
     @Override
-    public Release getOrCreateRelease(Component component, String version) throws IOException {
-        return findReleaseByUuidAndVersion(component.getUuid(), version)
-                .orElseGet(() -> new Release().uuid(UUID.randomUUID()).version(version));
+    public Lookup<Release> lookupRelease(Component component, String version) throws IOException {
+        awaitJournal();
+        Optional<Release> existing = findReleaseByUuidAndVersion(component.getUuid(), version);
+        if (existing.isPresent()) {
+            return new Lookup<>(existing.get(), false);
+        }
+        String reservation = releaseReservation(component.getUuid(), version);
+        RepositoryLocks.Handle lock = locks.lock(reservation);
+        try {
+            // Another process might have created the release since the index was loaded
+            getReleaseIndex(component.getUuid()).refresh();
+            existing = findReleaseByUuidAndVersion(component.getUuid(), version);
+            if (existing.isPresent()) {
+                return new Lookup<>(existing.get(), false);
+            }
+            return new Lookup<>(new Release().uuid(locks.reserve(reservation)).version(version), true);
+        } finally {
+            lock.close();
+        }
     }
 
+    @Override
     public void saveRelease(Component component, Release release) throws IOException {
-        Path releaseFile =
-                basePath.resolve("component/" + component.getUuid() + "/release/" + release.getVersion() + ".json");
+        saveCount.incrementAndGet();
+        UUID componentUuid = component.getUuid();
+        if (journal != null) {
+            byte[] json = journalPayload(release);
+            byte[] payload = ByteBuffer.allocate(2 * Long.BYTES + json.length)
+                    .putLong(componentUuid.getMostSignificantBits())
+                    .putLong(componentUuid.getLeastSignificantBits())
+                    .put(json)
+                    .array();
+            journal.record(RELEASE_MUTATION, payload);
+        } else {
+            applyRelease(componentUuid, release);
+        }
+        locks.release(releaseReservation(componentUuid, release.getVersion()), release.getUuid());
+    }
+
+    private void applyRelease(UUID componentUuid, Release release) throws IOException {
+        Path releaseFile = getReleaseFile(componentUuid, release.getVersion());
         Files.createDirectories(releaseFile.getParent());
-        saveModelOrThrow(release, releaseFile);
-        updateReleasesJson(component.getUuid());
+        // The release index and releases.json are shared by all the releases of the component
+        RepositoryLocks.Handle lock = locks.lock(componentLock(componentUuid));
+        boolean changed;
+        try {
+            changed = saveEntity(release, releaseFile);
+            getReleaseIndex(componentUuid).put(release.getUuid(), Set.of(release.getVersion()));
+            if (batchDepth.get() > 0) {
+                dirtyComponents.add(componentUuid);
+            } else {
+                updateReleasesJson(componentUuid, release);
+            }
+        } finally {
+            lock.close();
+        }
+        if (changed) {
+            recordChange(Change.Type.RELEASE, release.getUuid(), componentUuid, release.getVersion());
+        }
     }
 
-    private List<Collection> findAllCollections(UUID releaseUuid) throws IOException {
-        Path collectionFolder = basePath.resolve("release/" + releaseUuid + "/collection");
-        return findAllModels(Collection.class, collectionFolder);
+    private static String releaseReservation(UUID componentUuid, String version) {
+        return "release:" + componentUuid + ':' + version;
+    }
+
+    private Path getReleaseFile(UUID componentUuid, String version) {
+        return getComponentFolder(componentUuid).resolve("release/" + version + ".json");
+    }
+
+    /**
+     * Returns the index of release versions of a component, loading it or rebuilding it if necessary.
+     * <p>
+     *     The index is rebuilt if it is missing, corrupted or if the indexed versions do not match the release files
+     *     present in the repository.
+     * </p>
+     */
+    private UuidIndex getReleaseIndex(UUID componentUuid) throws IOException {
+        synchronized (releaseIndexes) {
+            UuidIndex index = releaseIndexes.get(componentUuid);
+            if (index == null) {
+                index = UuidIndex.load(getReleaseIndexFile(componentUuid));
+                Path releaseFolder = getComponentFolder(componentUuid).resolve("release");
+                if (index == null || !index.keys().equals(findAllModelNames(releaseFolder))) {
+                    index = rebuildReleaseIndex(componentUuid);
+                }
+                releaseIndexes.put(componentUuid, index);
+            }
+            return index;
+        }
+    }
+
+    private UuidIndex rebuildReleaseIndex(UUID componentUuid) throws IOException {
+        Map<UUID, Set<String>> entries = new HashMap<>();
+        for (Release release : findAllReleases(componentUuid)) {
+            entries.put(release.getUuid(), Set.of(release.getVersion()));
+        }
+        UuidIndex index = UuidIndex.create(getReleaseIndexFile(componentUuid), entries);
+        synchronized (releaseIndexes) {
+            releaseIndexes.put(componentUuid, index);
+        }
+        return index;
+    }
+
+    private Path getReleaseIndexFile(UUID componentUuid) {
+        return basePath.resolve(layout.entryPath(INDEX_FOLDER + "/component-releases", componentUuid) + ".idx");
+    }
+
+    /**
+     * Returns the folder containing the collections of a release.
+     */
+    private Path getReleaseFolder(UUID releaseUuid) {
+        return basePath.resolve(layout.entryPath(collectionRoot, releaseUuid));
+    }
+
+    // Package-private for tests
+    List<Collection> findAllCollections(UUID releaseUuid) throws IOException {
+        Path collectionFolder = getReleaseFolder(releaseUuid).resolve("collection");
+        if (artifactStore == null) {
+            return findAllModels(Collection.class, collectionFolder);
+        }
+        List<Collection> collections = new ArrayList<>();
+        for (int version : findCollectionVersions(collectionFolder)) {
+            Collection collection = findCompactCollection(artifactStore, collectionFolder.resolve(version + ".json"));
+            if (collection != null) {
+                collections.add(collection);
+            }
+        }
+        return collections;
+    }
+
+    private SortedSet<Integer> findCollectionVersions(Path collectionFolder) throws IOException {
+        SortedSet<Integer> versions = new TreeSet<>();
+        for (String name : findAllModelNames(collectionFolder)) {
+            try {
+                versions.add(Integer.parseInt(name));
+            } catch (NumberFormatException e) {
+                // Not a collection version
+            }
+        }
+        return versions;
     }
 
     @Override
     public @Nullable Collection getCollection(Release release, int version) throws IOException {
-        Path collectionPath = basePath.resolve("release/" + release.getUuid() + "/collection/" + version + ".json");
-        return Files.exists(collectionPath) ? loadModelOrThrow(Collection.class, collectionPath) : null;
+        awaitJournal();
+        Path collectionPath = getReleaseFolder(release.getUuid()).resolve("collection/" + version + ".json");
+        return artifactStore != null
+                ? findCompactCollection(artifactStore, collectionPath)
+                : findModel(Collection.class, collectionPath);
     }
 
     @Override
     public @Nullable Collection getLatestCollection(Release release) throws IOException {
-        Path collectionPath = basePath.resolve("release/" + release.getUuid() + "/collection.json");
-        return Files.exists(collectionPath) ? loadModelOrThrow(Collection.class, collectionPath) : null;
+        awaitJournal();
+        if (artifactStore != null) {
+            // The latest collection is not stored
+            Path collectionFolder = getReleaseFolder(release.getUuid()).resolve("collection");
+            SortedSet<Integer> versions = findCollectionVersions(collectionFolder);
+            return versions.isEmpty()
+                    ? null
+                    : findCompactCollection(artifactStore, collectionFolder.resolve(versions.last() + ".json"));
+        }
+        Path collectionPath = getReleaseFolder(release.getUuid()).resolve("collection.json");
+        return findModel(Collection.class, collectionPath);
     }
 
     @Override
     public void saveCollection(Collection collection) throws IOException {
-        Path collectionPath = basePath.resolve(
-                "release/" + collection.getUuid() + "/collection/" + collection.getVersion() + ".json");
+        saveCount.incrementAndGet();
+        if (journal != null) {
+            journal.record(COLLECTION_MUTATION, journalPayload(collection));
+        } else {
+            applyCollection(collection);
+        }
+    }
+
+    private void applyCollection(Collection collection) throws IOException {
+        Path collectionPath =
+                getReleaseFolder(collection.getUuid()).resolve("collection/" + collection.getVersion() + ".json");
         Files.createDirectories(collectionPath.getParent());
-        saveModel(collection, collectionPath);
-        updateCollectionsJson(collection.getUuid());
+        RepositoryLocks.Handle lock = locks.lock(releaseLock(collection.getUuid()));
+        boolean changed;
+        try {
+            if (artifactStore != null) {
+                // The aggregates are only expanded when the repository is exported or served
+                changed = saveCompactCollection(artifactStore, collection, collectionPath);
+            } else {
+                changed = saveEntity(collection, collectionPath);
+                if (batchDepth.get() > 0) {
+                    dirtyReleases.add(collection.getUuid());
+                } else {
+                    updateCollectionsJson(collection.getUuid(), collection);
+                }
+            }
+        } finally {
+            lock.close();
+        }
+        if (changed) {
+            recordChange(Change.Type.COLLECTION, collection.getUuid(), null, String.valueOf(collection.getVersion()));
+        }
     }
 
-    private void updateProductsJson(OffsetDateTime timestamp) throws IOException {
-        Set<Product> products = new TreeSet<>(Comparator.comparing(Product::getUuid));
-        products.addAll(findAllProducts());
-        ProductPaginationDetails paginationDetails =
-                new ProductPaginationDetails().results(products.stream().toList());
-        paginationDetails
-                .pageStartIndex(0L)
-                .pageSize(Long.MAX_VALUE)
-                .timestamp(timestamp)
-                .setTotalResults((long) products.size());
+    /**
+     * Records a change in the change feed and publishes it, unless a batch is open.
+     * <p>
+     *     Inside a batch, the changes are published whenever they fill a page of the feed, so that large imports do not
+     *     accumulate changes in memory.
+     * </p>
+     */
+    private void recordChange(Change.Type type, UUID uuid, @Nullable UUID componentUuid, @Nullable String version)
+            throws IOException {
+        int pendingChanges = changeFeed.record(type, uuid, componentUuid, version);
+        if (batchDepth.get() == 0 || pendingChanges >= ChangeFeed.PAGE_SIZE) {
+            changeFeed.publish();
+        }
+    }
 
-        Path productsFile = basePath.resolve("products.json");
-        saveModel(paginationDetails, productsFile);
+    private static String releaseLock(UUID releaseUuid) {
+        return "release/" + releaseUuid;
     }
 
-    private void updateReleasesJson(UUID componentUuid) throws IOException {
-        Set<Release> releases = new TreeSet<>(Comparator.comparing(Release::getReleaseDate));
-        releases.addAll(findAllReleases(componentUuid));
+    @Override
+    public void exportTo(TeaRepositoryManager target) throws IOException {
+        awaitJournal();
+        try (TeaRepositoryBatch batch = target.beginBatch()) {
+            for (Product product : findAllModels(Product.class, basePath.resolve("product"))) {
+                target.saveProduct(product);
+            }
+            for (Component component : findAllComponents()) {
+                target.saveComponent(component);
+                for (Release release : findAllReleases(component.getUuid())) {
+                    target.saveRelease(component, release);
+                }
+            }
+            for (UUID releaseUuid : findAllReleaseFolders()) {
+                for (Collection collection : findAllCollections(releaseUuid)) {
+                    target.saveCollection(collection);
+                }
+            }
+            batch.commit();
+        }
+    }
 
-        Path releasesFile = basePath.resolve("component/" + componentUuid + "/releases.json");
-        Files.createDirectories(releasesFile.getParent());
-        saveModelOrThrow(releases.stream().toList(), releasesFile);
+    private SortedSet<UUID> findAllReleaseFolders() throws IOException {
+        SortedSet<UUID> uuids = new TreeSet<>();
+        for (Path releaseFolder : layout.entryFolders(basePath.resolve(collectionRoot))) {
+            try (Stream<Path> folders = Files.list(releaseFolder)) {
+                for (Path folder : (Iterable<Path>) folders.filter(Files::isDirectory)::iterator) {
+                    try {
+                        uuids.add(
+                                UUID.fromString(releaseFolder.relativize(folder).toString()));
+                    } catch (IllegalArgumentException e) {
+                        // Not a release folder
+                    }
+                }
+            }
+        }
+        return uuids;
     }
 
-    private void updateCollectionsJson(UUID releaseUuid) throws IOException {
-        SortedSet<Collection> collections = new TreeSet<>(Comparator.comparing(Collection::getVersion));
-        collections.addAll(findAllCollections(releaseUuid));
+    @Override
+    public List<Change> getChanges(long cursor, int limit) throws IOException {
+        awaitJournal();
+        return changeFeed.read(cursor, limit);
+    }
 
-        Path collectionsFile = basePath.resolve("release/" + releaseUuid + "/collections.json");
-        Files.createDirectories(collectionsFile.getParent());
-        saveModelOrThrow(collections.stream().toList(), collectionsFile);
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        return modelCache != null ? modelCache.getStatistics() : new CacheStatistics(0, 0, 0);
+    }
 
-        Path lastCollectionFile = basePath.resolve("release/" + releaseUuid + "/collection.json");
-        saveModelOrThrow(collections.last(), lastCollectionFile);
+    @Override
+    public Map<RepositoryOperation, OperationStatistics> getOperationStatistics() {
+        return recorder.snapshot();
     }
 
-    private void saveModelOrThrow(Object object, Path filePath) throws IOException {
+    @Override
+    public TeaRepositoryBatch beginBatch() {
+        batchDepth.incrementAndGet();
+        return new Batch();
+    }
+
+    /**
+     * Regenerates all the aggregates that were marked dirty during a batch.
+     */
+    private void commitBatch() throws IOException {
+        RepositoryLocks.Handle lock = locks.lock(PRODUCTS_LOCK);
+        try {
+            if (productsDirty.getAndSet(false)) {
+                synchronized (this) {
+                    productUuids = null;
+                    writeProductPages(
+                            getProductUuids(),
+                            getProductsPageSize(),
+                            0,
+                            Integer.MAX_VALUE,
+                            OffsetDateTime.now(ZoneOffset.UTC));
+                }
+            }
+            if (!dirtyProductIdentifiers.isEmpty()) {
+                Set<String> identifierKeys = new HashSet<>(dirtyProductIdentifiers);
+                dirtyProductIdentifiers.removeAll(identifierKeys);
+                writeProductIdentifierPages(identifierKeys, OffsetDateTime.now(ZoneOffset.UTC));
+            }
+        } finally {
+            lock.close();
+        }
+        for (UUID componentUuid : List.copyOf(dirtyComponents)) {
+            dirtyComponents.remove(componentUuid);
+            lock = locks.lock(componentLock(componentUuid));
+            try {
+                writeReleasesJson(componentUuid, findAllReleases(componentUuid));
+            } finally {
+                lock.close();
+            }
+        }
+        for (UUID releaseUuid : List.copyOf(dirtyReleases)) {
+            dirtyReleases.remove(releaseUuid);
+            lock = locks.lock(releaseLock(releaseUuid));
+            try {
+                SortedMap<Integer, Collection> collections = new TreeMap<>();
+                for (Collection collection : findAllCollections(releaseUuid)) {
+                    collections.put(collection.getVersion(), collection);
+                }
+                writeCollectionsJson(releaseUuid, collections);
+            } finally {
+                lock.close();
+            }
+        }
+        changeFeed.publish();
+    }
+
+    private final class Batch implements TeaRepositoryBatch {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /**
+         * The value of {@link #saveCount} at the last commit of this batch.
+         */
+        private volatile long committedSaveCount = -1;
+
+        @Override
+        public void commit() throws IOException {
+            if (closed.get()) {
+                throw new IllegalStateException("Batch already closed.");
+            }
+            long currentSaveCount = saveCount.get();
+            awaitJournal();
+            commitBatch();
+            committedSaveCount = currentSaveCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.getAndSet(true)) {
+                return;
+            }
+            try {
+                // Apply the journaled mutations as part of the batch
+                awaitJournal();
+            } catch (IOException e) {
+                try {
+                    endBatch();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            // Nothing to regenerate if nothing was saved since the last commit
+            if (endBatch() && saveCount.get() != committedSaveCount) {
+                commitBatch();
+            }
+        }
+
+        /**
+         * Decrements the batch depth.
+         *
+         * @return whether this was the outermost batch
+         * @throws IOException if the reservations of the batch cannot be released
+         */
+        private boolean endBatch() throws IOException {
+            if (batchDepth.decrementAndGet() > 0) {
+                return false;
+            }
+            // The entities looked up, but not saved, during the batch are abandoned
+            locks.releaseAll();
+            return true;
+        }
+    }
+
+    /**
+     * Waits until the journaled mutations are visible in the TEA layout.
+     */
+    private void awaitJournal() throws IOException {
+        if (journal != null) {
+            journal.awaitApplied();
+        }
+    }
+
+    /**
+     * Validates a TEA object and serializes it for the journal.
+     */
+    private byte[] journalPayload(Object object) throws IOException {
         try {
-            saveModel(object, filePath);
+            modelValidator.validateOnWrite(object);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Failed to save object " + object, e);
+        }
+        return objectMapper.writeValueAsBytes(object);
+    }
+
+    /**
+     * Synchronizes the files written since the last call, and their folders, to the storage device.
+     */
+    private void syncWrittenFiles() throws IOException {
+        Set<Path> folders = new HashSet<>();
+        for (Path file : List.copyOf(unsyncedFiles)) {
+            unsyncedFiles.remove(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (NoSuchFileException e) {
+                // Deleted in the meantime
+            }
+            folders.add(Objects.requireNonNull(file.getParent()));
+        }
+        for (Path folder : folders) {
+            try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // Folders cannot be synchronized on all platforms
+            }
+        }
+    }
+
+    /**
+     * Applies the mutations of the journal to the TEA layout.
+     */
+    private final class JournalReplayer implements MutationJournal.Replayer {
+
+        @Override
+        public void apply(byte type, byte[] payload) throws IOException {
+            switch (type) {
+                case PRODUCT_MUTATION -> applyProduct(objectMapper.readValue(payload, Product.class));
+                case COMPONENT_MUTATION -> applyComponent(objectMapper.readValue(payload, Component.class));
+                case RELEASE_MUTATION -> {
+                    ByteBuffer buffer = ByteBuffer.wrap(payload);
+                    UUID componentUuid = new UUID(buffer.getLong(), buffer.getLong());
+                    applyRelease(
+                            componentUuid,
+                            objectMapper.readValue(payload, buffer.position(), buffer.remaining(), Release.class));
+                }
+                case COLLECTION_MUTATION -> applyCollection(objectMapper.readValue(payload, Collection.class));
+                default -> throw new IOException("Unknown mutation type in journal: " + type);
+            }
+        }
+
+        @Override
+        public void sync() throws IOException {
+            syncWrittenFiles();
+        }
+    }
+
+    /**
+     * Returns whether the product folder was modified since the UUIDs of the products were listed or updated.
+     */
+    private synchronized boolean isProductFolderModified() throws IOException {
+        return productUuids == null
+                || !FileStamp.of(basePath.resolve("product")).equals(productFolderStamp);
+    }
+
+    /**
+     * Updates the product pages after a product was saved.
+     * <p>
+     *     If the product was replaced, only the page containing it is rewritten. If the product was added, the pages
+     *     from the insertion point onward are rewritten, since their products shift by one, together with the first
+     *     page, which carries the total number of results read by clients.
+     * </p>
+     * <p>
+     *     Replacing the product file modifies the product folder: its new stamp is recorded, so that the next update
+     *     only lists the folder again if it was modified by someone else.
+     * </p>
+     *
+     * @param folderModified whether the product folder was modified by someone else before the product was saved
+     */
+    private synchronized void updateProductsJson(
+            UUID productUuid, boolean isNew, boolean folderModified, OffsetDateTime timestamp) throws IOException {
+        SortedSet<UUID> uuids = productUuids;
+        if (uuids == null || folderModified) {
+            productUuids = null;
+            uuids = getProductUuids();
+        }
+        uuids.add(productUuid);
+        int pageSize = getProductsPageSize();
+        int page = uuids.headSet(productUuid).size() / pageSize;
+        if (folderModified) {
+            writeProductPages(uuids, pageSize, 0, Integer.MAX_VALUE, timestamp);
+        } else if (isNew) {
+            if (page > 0) {
+                writeProductPages(uuids, pageSize, 0, 1, timestamp);
+            }
+            writeProductPages(uuids, pageSize, page, Integer.MAX_VALUE, timestamp);
+        } else {
+            writeProductPages(uuids, pageSize, page, page + 1, timestamp);
+        }
+        productFolderStamp = FileStamp.of(basePath.resolve("product"));
+    }
+
+    /**
+     * Returns the sorted UUIDs of all the products, listing the product folder if it was modified by another process.
+     */
+    private SortedSet<UUID> getProductUuids() throws IOException {
+        Path productFolder = basePath.resolve("product");
+        FileStamp stamp = FileStamp.of(productFolder);
+        SortedSet<UUID> result = productUuids;
+        if (result == null || !stamp.equals(productFolderStamp)) {
+            result = new TreeSet<>(findAllModelUuids(productFolder));
+            productUuids = result;
+            productFolderStamp = stamp;
+        }
+        return result;
+    }
+
+    /**
+     * Writes a range of pages of the product list.
+     * <p>
+     *     Page {@code n} is written to {@code products/page-n.json}, while {@code products.json} contains a copy of the
+     *     first page. The pages are streamed: only the products of the current page are read from disk.
+     * </p>
+     *
+     * @param uuids the sorted UUIDs of all the products
+     * @param pageSize the number of products in each page
+     * @param firstPage the index of the first page to write
+     * @param lastPage the index of the page after the last page to write
+     */
+    private void writeProductPages(
+            SortedSet<UUID> uuids, int pageSize, int firstPage, int lastPage, OffsetDateTime timestamp)
+            throws IOException {
+        int pageCount = Math.max(1, (uuids.size() + pageSize - 1) / pageSize);
+        Path pagesFolder = basePath.resolve("products");
+        Files.createDirectories(pagesFolder);
+        try (OperationRecorder.Span span =
+                recorder.start(RepositoryOperation.UPDATE_AGGREGATE, pagesFolder.toString())) {
+            Iterator<UUID> iterator = uuids.iterator();
+            for (long skip = (long) firstPage * pageSize; skip > 0 && iterator.hasNext(); skip--) {
+                iterator.next();
+            }
+            for (int page = firstPage; page < Math.min(lastPage, pageCount); page++) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                try (JsonGenerator generator = objectWriter.createGenerator(content, JsonEncoding.UTF8)) {
+                    generator.writeStartObject();
+                    generator.writePOJOField(PaginationDetails.JSON_PROPERTY_TIMESTAMP, timestamp);
+                    generator.writeNumberField(
+                            PaginationDetails.JSON_PROPERTY_PAGE_START_INDEX, (long) page * pageSize);
+                    generator.writeNumberField(PaginationDetails.JSON_PROPERTY_PAGE_SIZE, (long) pageSize);
+                    generator.writeNumberField(PaginationDetails.JSON_PROPERTY_TOTAL_RESULTS, (long) uuids.size());
+                    generator.writeArrayFieldStart(ProductPaginationDetails.JSON_PROPERTY_RESULTS);
+                    for (int i = 0; i < pageSize && iterator.hasNext(); i++) {
+                        Path productFile = basePath.resolve("product/" + iterator.next() + ".json");
+                        try (JsonParser parser = objectMapper.createParser(productFile.toFile())) {
+                            parser.nextToken();
+                            generator.copyCurrentStructure(parser);
+                        }
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                writeFile(pagesFolder.resolve("page-" + page + ".json"), content.toByteArray());
+                span.bytes(content.size());
+                if (page == 0) {
+                    writeFile(basePath.resolve("products.json"), content.toByteArray());
+                    span.bytes(content.size());
+                }
+            }
+        }
+        // Remove the pages beyond the end of the list
+        for (int page = pageCount; Files.deleteIfExists(pagesFolder.resolve("page-" + page + ".json")); page++) {
+            Files.deleteIfExists(pagesFolder.resolve("page-" + page + ".json.gz"));
+        }
+    }
+
+    /**
+     * Inserts or replaces a single release in {@code releases.json}.
+     * <p>
+     *     If the existing file does not contain exactly the indexed releases, it is rebuilt from the release files.
+     * </p>
+     */
+    private void updateReleasesJson(UUID componentUuid, Release release) throws IOException {
+        Path releasesFile = getComponentFolder(componentUuid).resolve("releases.json");
+        Map<UUID, Release> releases = new HashMap<>();
+        if (Files.exists(releasesFile)) {
+            for (Release existing : loadModelList(new TypeReference<List<Release>>() {}, releasesFile)) {
+                releases.put(existing.getUuid(), existing);
+            }
+        }
+        releases.put(release.getUuid(), release);
+        if (!releases.keySet().equals(getReleaseIndex(componentUuid).uuids())) {
+            releases.clear();
+            for (Release existing : findAllReleases(componentUuid)) {
+                releases.put(existing.getUuid(), existing);
+            }
+        }
+        writeReleasesJson(componentUuid, releases.values());
+    }
+
+    @SuppressWarnings("try")
+    private void writeReleasesJson(UUID componentUuid, java.util.Collection<Release> releases) throws IOException {
+        List<Release> sortedReleases = releases.stream()
+                .sorted(Comparator.comparing(Release::getReleaseDate).thenComparing(Release::getUuid))
+                .toList();
+
+        Path releasesFile = getComponentFolder(componentUuid).resolve("releases.json");
+        try (OperationRecorder.Span span =
+                recorder.start(RepositoryOperation.UPDATE_AGGREGATE, releasesFile.toString())) {
+            Files.createDirectories(releasesFile.getParent());
+            saveModelOrThrow(sortedReleases, releasesFile);
+        }
+    }
+
+    /**
+     * Inserts or replaces a single collection version in {@code collections.json} and updates {@code collection.json}.
+     * <p>
+     *     If the existing file does not contain exactly the versions present on disk, it is rebuilt from the collection
+     *     files.
+     * </p>
+     */
+    private void updateCollectionsJson(UUID releaseUuid, Collection collection) throws IOException {
+        Path collectionsFile = getReleaseFolder(releaseUuid).resolve("collections.json");
+        SortedMap<Integer, Collection> collections = new TreeMap<>();
+        if (Files.exists(collectionsFile)) {
+            for (Collection existing : loadModelList(new TypeReference<List<Collection>>() {}, collectionsFile)) {
+                collections.put(existing.getVersion(), existing);
+            }
+        }
+        collections.put(collection.getVersion(), collection);
+        Set<String> versions =
+                collections.keySet().stream().map(String::valueOf).collect(Collectors.toSet());
+        if (!versions.equals(findAllModelNames(getReleaseFolder(releaseUuid).resolve("collection")))) {
+            collections.clear();
+            for (Collection existing : findAllCollections(releaseUuid)) {
+                collections.put(existing.getVersion(), existing);
+            }
+        }
+        writeCollectionsJson(releaseUuid, collections);
+    }
+
+    @SuppressWarnings("try")
+    private void writeCollectionsJson(UUID releaseUuid, SortedMap<Integer, Collection> collections) throws IOException {
+        Path collectionsFile = getReleaseFolder(releaseUuid).resolve("collections.json");
+        try (OperationRecorder.Span span =
+                recorder.start(RepositoryOperation.UPDATE_AGGREGATE, collectionsFile.toString())) {
+            Files.createDirectories(collectionsFile.getParent());
+            saveModelOrThrow(List.copyOf(collections.values()), collectionsFile);
+
+            Path lastCollectionFile = getReleaseFolder(releaseUuid).resolve("collection.json");
+            saveModelOrThrow(collections.get(collections.lastKey()), lastCollectionFile);
+        }
+    }
+
+    /**
+     * Saves the file of a TEA object, which was already validated if it was journaled.
+     *
+     * @return {@code true} if the content of the file changed
+     */
+    private boolean saveEntity(Object object, Path filePath) throws IOException {
+        try {
+            return saveModel(object, filePath, !journaled);
         } catch (UncheckedIOException e) {
             throw e.getCause();
         }
     }
 
-    private void saveModel(Object object, Path filePath) throws UncheckedIOException {
+    /**
+     * Saves a collection whose artifacts are replaced by references to the artifact store.
+     *
+     * @return {@code true} if the content of the file changed
+     */
+    private boolean saveCompactCollection(ArtifactStore store, Collection collection, Path filePath)
+            throws IOException {
+        if (!journaled) {
+            try {
+                modelValidator.validateOnWrite(collection);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Failed to save object " + collection, e);
+            }
+        }
         try {
-            validateModel(object);
-            objectMapper.writeValue(filePath.toFile(), object);
+            return saveModel(store.compact(collection), filePath, false);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Loads a collection from the artifact store.
+     *
+     * @return the collection with its artifacts or {@code null} if the file does not exist
+     */
+    private @Nullable Collection findCompactCollection(ArtifactStore store, Path filePath) throws IOException {
+        if (!Files.exists(filePath)) {
+            return null;
+        }
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.LOAD, filePath.toString())) {
+            byte[] content = Files.readAllBytes(filePath);
+            span.bytes(content.length);
+            return modelValidator.validateOnRead(store.expand(objectMapper.readTree(content)));
+        }
+    }
+
+    private void saveModelOrThrow(Object object, Path filePath) throws IOException {
+        try {
+            saveModel(object, filePath, true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean saveModel(Object object, Path filePath, boolean validate) throws UncheckedIOException {
+        if (modelCache != null) {
+            modelCache.invalidate(filePath);
+        }
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.SAVE, filePath.toString())) {
+            if (validate) {
+                modelValidator.validateOnWrite(object);
+            }
+            byte[] content = objectWriter.writeValueAsBytes(object);
+            span.bytes(content.length);
+            return writeFile(filePath, content);
         } catch (Exception e) {
             throw new UncheckedIOException(
                     e instanceof IOException
@@ -224,6 +1464,103 @@ public class DefaultTeaRepositoryManager implements TeaRepositoryManager {
         }
     }
 
+    /**
+     * Writes a file of the TEA layout, unless it already has the given content.
+     * <p>
+     *     If the output profile requires it, a gzip-compressed sibling is written in the same pass. The content is only
+     *     compressed if it changed or the compressed file is missing.
+     * </p>
+     * <p>
+     *     Both files are replaced atomically, so that concurrent readers never see a partially written file.
+     * </p>
+     *
+     * @return {@code true} if the content of the file changed
+     */
+    private boolean writeFile(Path file, byte[] content) throws IOException {
+        Path compressedFile = file.resolveSibling(file.getFileName() + ".gz");
+        boolean unchanged = Files.isRegularFile(file)
+                && Files.size(file) == content.length
+                && Arrays.equals(Files.readAllBytes(file), content);
+        if (!unchanged) {
+            replaceFile(file, content);
+            if (journaled) {
+                unsyncedFiles.add(file);
+            }
+        }
+        if (precompress) {
+            if (!unchanged || !Files.exists(compressedFile)) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+                try (OutputStream output = new GZIPOutputStream(compressed)) {
+                    output.write(content);
+                }
+                replaceFile(compressedFile, compressed.toByteArray());
+                if (journaled) {
+                    unsyncedFiles.add(compressedFile);
+                }
+            }
+        } else if (!unchanged) {
+            // Do not leave a stale compressed copy from a previous publication
+            Files.deleteIfExists(compressedFile);
+        }
+        return !unchanged;
+    }
+
+    /**
+     * Writes an internal file, which is neither compressed nor compared with its previous content.
+     */
+    private void writeInternalFile(Path file, byte[] content) throws IOException {
+        replaceFile(file, content);
+        if (journaled) {
+            unsyncedFiles.add(file);
+        }
+    }
+
+    /**
+     * Writes the content to a temporary sibling of the file and moves it in place.
+     * <p>
+     *     The temporary file does not have a {@code .json} extension, so it is ignored when listing the models of a
+     *     folder.
+     * </p>
+     */
+    private static void replaceFile(Path file, byte[] content) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            Files.write(tempFile, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Loads a model file through the model cache.
+     *
+     * @return the model or {@code null} if the file does not exist
+     */
+    private <T> @Nullable T findModel(Class<T> type, Path filePath) throws IOException {
+        if (modelCache == null) {
+            return Files.exists(filePath) ? loadModelOrThrow(type, filePath) : null;
+        }
+        FileStamp stamp = FileStamp.of(filePath);
+        if (stamp.equals(FileStamp.MISSING)) {
+            modelCache.invalidate(filePath);
+            return null;
+        }
+        T model = modelCache.get(filePath, stamp, type);
+        if (model == null) {
+            model = loadModelOrThrow(type, filePath);
+            modelCache.put(filePath, stamp, copyModel(model, type));
+            return model;
+        }
+        // Models are mutable: never hand out the cached instance
+        return copyModel(model, type);
+    }
+
+    private <T> T copyModel(T object, Class<T> type) {
+        return objectMapper.convertValue(object, type);
+    }
+
     // Package-private for tests
     <T> T loadModelOrThrow(Class<T> type, Path filePath) throws IOException {
         try {
@@ -234,8 +1571,10 @@ public class DefaultTeaRepositoryManager implements TeaRepositoryManager {
     }
 
     private <T> T loadModel(Class<T> type, Path filePath) throws UncheckedIOException {
-        try {
-            return validateModel(objectMapper.readValue(filePath.toFile(), type));
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.LOAD, filePath.toString())) {
+            byte[] content = Files.readAllBytes(filePath);
+            span.bytes(content.length);
+            return modelValidator.validateOnRead(objectMapper.readValue(content, type));
         } catch (Exception e) {
             throw new UncheckedIOException(
                     e instanceof IOException
@@ -246,35 +1585,78 @@ public class DefaultTeaRepositoryManager implements TeaRepositoryManager {
 
     // Package-private for tests
     <T> List<T> loadModelList(TypeReference<List<T>> typeRef, Path filePath) throws IOException {
-        return validateModel(objectMapper.readValue(filePath.toFile(), typeRef));
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.LOAD, filePath.toString())) {
+            byte[] content = Files.readAllBytes(filePath);
+            span.bytes(content.length);
+            return modelValidator.validateOnRead(objectMapper.readValue(content, typeRef));
+        }
     }
 
+    /**
+     * Loads all the models in a folder, sorted by file name.
+     * <p>
+     *     If the repository is configured with a parallelism greater than one, the files are loaded concurrently.
+     * </p>
+     */
+    @SuppressWarnings("try")
     private <T> List<T> findAllModels(Class<T> type, Path folder) throws IOException {
         if (!Files.exists(folder)) {
             return Collections.emptyList();
         }
-        try (Stream<Path> files = Files.list(folder)) {
-            return files.filter(Files::isRegularFile)
-                    .map(file -> loadModel(type, file))
-                    .collect(Collectors.toList());
-        } catch (UncheckedIOException e) {
-            throw e.getCause();
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.FIND_ALL, folder.toString())) {
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(folder)) {
+                files = stream.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().endsWith(".json"))
+                        .sorted()
+                        .toList();
+            }
+            try {
+                if (executor == null || files.size() < 2) {
+                    return files.stream().map(file -> loadModel(type, file)).collect(Collectors.toList());
+                }
+                List<CompletableFuture<T>> futures = files.stream()
+                        .map(file -> CompletableFuture.supplyAsync(() -> loadModel(type, file), executor))
+                        .toList();
+                try {
+                    return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+                } catch (CompletionException e) {
+                    futures.forEach(future -> future.cancel(false));
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
         }
     }
 
-    private <T> T validateModel(T object) {
-        try (ValidatorFactory factory = jakarta.validation.Validation.buildDefaultValidatorFactory()) {
-            Validator validator = factory.getValidator();
-            Set<ConstraintViolation<T>> violations = validator.validate(object);
-            if (!violations.isEmpty()) {
-                StringBuilder sb = new StringBuilder("Validation error:\n");
-                violations.forEach(v -> sb.append(v.getPropertyPath())
-                        .append(": ")
-                        .append(v.getMessage())
-                        .append("\n"));
-                throw new IllegalArgumentException(sb.toString());
+    private Set<UUID> findAllModelUuids(Path folder) throws IOException {
+        Set<UUID> uuids = new HashSet<>();
+        for (String name : findAllModelNames(folder)) {
+            try {
+                uuids.add(UUID.fromString(name));
+            } catch (IllegalArgumentException e) {
+                // Not a model file
             }
         }
-        return object;
+        return uuids;
+    }
+
+    /**
+     * Returns the names of the model files in a folder, without the {@code .json} extension.
+     */
+    @SuppressWarnings("try")
+    private Set<String> findAllModelNames(Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return Collections.emptySet();
+        }
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.FIND_ALL, folder.toString());
+                Stream<Path> files = Files.list(folder)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.endsWith(".json"))
+                    .map(fileName -> fileName.substring(0, fileName.length() - ".json".length()))
+                    .collect(Collectors.toSet());
+        }
     }
 }
@@ -16,20 +16,46 @@
 package eu.copernik.tea.internal;
 
 import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
 import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import eu.copernik.tea.spi.TeaStorageBackend;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+/**
+ * Creates repository managers using the storage backend configured in each {@link TeaRepository}.
+ */
 @Named
 @Singleton
 public class DefaultTeaRepositoryManagerFactory implements TeaRepositoryManagerFactory {
 
-    public static final TeaRepositoryManagerFactory INSTANCE = new DefaultTeaRepositoryManagerFactory();
+    public static final TeaRepositoryManagerFactory INSTANCE = new DefaultTeaRepositoryManagerFactory(
+            ServiceLoader.load(TeaStorageBackend.class, DefaultTeaRepositoryManagerFactory.class.getClassLoader())
+                    .stream()
+                    .map(ServiceLoader.Provider::get)
+                    .toList());
+
+    private final Map<String, TeaStorageBackend> backends = new TreeMap<>();
+
+    @Inject
+    public DefaultTeaRepositoryManagerFactory(List<TeaStorageBackend> backends) {
+        backends.forEach(backend -> this.backends.putIfAbsent(backend.getName(), backend));
+    }
 
     @Override
-    public DefaultTeaRepositoryManager newInstance(TeaRepository repository) {
+    public TeaRepositoryManager newInstance(TeaRepository repository) {
         Objects.requireNonNull(repository, "Repository cannot be null");
-        return new DefaultTeaRepositoryManager(repository.getBasePath());
+        TeaStorageBackend backend = backends.get(repository.getBackend());
+        if (backend == null) {
+            throw new IllegalArgumentException("Unknown storage backend '" + repository.getBackend()
+                    + "', available backends: " + backends.keySet());
+        }
+        return backend.newInstance(repository);
     }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.DirectoryLayout;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Moves the entries of a repository from one {@link DirectoryLayout} to another.
+ * <p>
+ *     Each entry, i.e. a JSON file, its compressed sibling or the folder of a TEA object, is renamed to its location in
+ *     the target layout. The layout file is only updated at the end, so that an interrupted migration can be resumed:
+ *     the entries that were already moved are not visible in the source layout.
+ * </p>
+ * <p>
+ *     The repository is locked exclusively during the migration, which fails if a manager has the repository open or
+ *     if a crashed manager left a journal whose mutations are not yet in the source layout.
+ * </p>
+ */
+@NullMarked
+public final class DirectoryLayoutMigrator {
+
+    /**
+     * The folders whose entries are named after the UUID of a TEA object.
+     */
+    static final List<String> UUID_FOLDERS =
+            List.of("component", "release", ".index/component-releases", ArtifactStore.RELEASE_FOLDER);
+
+    private static final int UUID_LENGTH = 36;
+
+    /**
+     * Number of entries moved by each task.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private DirectoryLayoutMigrator() {}
+
+    /**
+     * Converts a repository to a layout.
+     *
+     * @param basePath the base path of the repository
+     * @param target the new layout
+     * @param parallelism the number of entries moved concurrently
+     * @throws IOException if the repository is in use, has pending journals or cannot be migrated
+     */
+    public static void migrate(Path basePath, DirectoryLayout target, int parallelism) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        RepositoryLocks.Handle lock = RepositoryLocks.lockRepository(basePath);
+        try {
+            DirectoryLayout source = DirectoryLayout.detect(basePath);
+            if (source == target) {
+                return;
+            }
+            if (MutationJournal.isPending(basePath)) {
+                // The journal replay would write into the source layout
+                throw new IOException("TEA repository has unapplied journals, open it to replay them: " + basePath);
+            }
+            migrate(basePath, source, target, parallelism);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private static void migrate(Path basePath, DirectoryLayout source, DirectoryLayout target, int parallelism)
+            throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "tea-migration-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (String folder : UUID_FOLDERS) {
+                migrateFolder(basePath, folder, source, target, executor);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        writeLayout(basePath, target);
+    }
+
+    private static void migrateFolder(
+            Path basePath, String folder, DirectoryLayout source, DirectoryLayout target, ExecutorService executor)
+            throws IOException {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Path entryFolder : source.entryFolders(basePath.resolve(folder))) {
+            List<Path> entries;
+            try (Stream<Path> children = Files.list(entryFolder)) {
+                // Skips the shards of the other layout
+                entries = children.filter(child -> entryUuid(child) != null).toList();
+            }
+            for (int start = 0; start < entries.size(); start += CHUNK_SIZE) {
+                List<Path> chunk = entries.subList(start, Math.min(start + CHUNK_SIZE, entries.size()));
+                futures.add(CompletableFuture.runAsync(
+                        () -> chunk.forEach(entry -> moveEntry(basePath, folder, target, entry)), executor));
+            }
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .join();
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw e;
+        }
+        if (source == DirectoryLayout.SHARDED) {
+            for (Path shard : source.entryFolders(basePath.resolve(folder))) {
+                deleteIfEmpty(shard);
+                deleteIfEmpty(Objects.requireNonNull(shard.getParent()));
+            }
+        }
+    }
+
+    private static void moveEntry(Path basePath, String folder, DirectoryLayout target, Path entry) {
+        String name = String.valueOf(entry.getFileName());
+        UUID uuid = Objects.requireNonNull(entryUuid(entry));
+        Path targetEntry = basePath.resolve(target.entryPath(folder, uuid) + name.substring(UUID_LENGTH));
+        try {
+            Files.createDirectories(Objects.requireNonNull(targetEntry.getParent()));
+            Files.move(entry, targetEntry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the UUID of the TEA object of an entry, e.g. {@code {uuid}.json.gz}.
+     *
+     * @return the UUID or {@code null} if the entry is not named after a UUID
+     */
+    private static @Nullable UUID entryUuid(Path entry) {
+        String name = String.valueOf(entry.getFileName());
+        if (name.length() < UUID_LENGTH) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(name.substring(0, UUID_LENGTH));
+            return uuid.toString().equals(name.substring(0, UUID_LENGTH)) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void deleteIfEmpty(Path folder) throws IOException {
+        try {
+            Files.deleteIfExists(folder);
+        } catch (DirectoryNotEmptyException e) {
+            // Still used
+        }
+    }
+
+    /**
+     * Records the layout of a repository.
+     */
+    static void writeLayout(Path basePath, DirectoryLayout layout) throws IOException {
+        Path layoutFile = basePath.resolve(DirectoryLayout.LAYOUT_FILE);
+        if (layout == DirectoryLayout.FLAT) {
+            Files.deleteIfExists(layoutFile);
+        } else {
+            Files.createDirectories(Objects.requireNonNull(layoutFile.getParent()));
+            Files.writeString(layoutFile, layout.name() + "\n", StandardCharsets.UTF_8);
+        }
+    }
+}
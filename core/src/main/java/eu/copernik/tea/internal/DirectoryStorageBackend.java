@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.spi.TeaStorageBackend;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Stores each TEA object in a separate JSON file, laid out as the TEA API.
+ */
+@Named(TeaRepository.DIRECTORY_BACKEND)
+@Singleton
+public class DirectoryStorageBackend implements TeaStorageBackend {
+
+    @Override
+    public String getName() {
+        return TeaRepository.DIRECTORY_BACKEND;
+    }
+
+    @Override
+    public DefaultTeaRepositoryManager newInstance(TeaRepository repository) {
+        return DefaultTeaRepositoryManager.open(repository);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.CacheStatistics;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A bounded LRU cache of parsed models, or other values computed from a file, keyed by file path.
+ * <p>
+ *     Each entry remembers the {@link FileStamp} of the file it was computed from and is only returned if the file
+ *     still has the same stamp.
+ * </p>
+ */
+@NullMarked
+final class ModelCache {
+
+    private record Entry(FileStamp stamp, Object model) {}
+
+    private final int maxSize;
+    private final Map<Path, Entry> entries;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    ModelCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                return size() > ModelCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached model for a file, if it is still up-to-date.
+     *
+     * @param file the file containing the model
+     * @param stamp the current stamp of the file
+     * @param type the expected type of the model
+     */
+    <T> @Nullable T get(Path file, FileStamp stamp, Class<T> type) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(file);
+        }
+        if (entry != null && entry.stamp().equals(stamp) && type.isInstance(entry.model())) {
+            hitCount.increment();
+            return type.cast(entry.model());
+        }
+        missCount.increment();
+        return null;
+    }
+
+    void put(Path file, FileStamp stamp, Object model) {
+        if (maxSize > 0) {
+            synchronized (entries) {
+                entries.put(file, new Entry(stamp, model));
+            }
+        }
+    }
+
+    void invalidate(Path file) {
+        synchronized (entries) {
+            entries.remove(file);
+        }
+    }
+
+    CacheStatistics getStatistics() {
+        synchronized (entries) {
+            return new CacheStatistics(hitCount.sum(), missCount.sum(), entries.size());
+        }
+    }
+}
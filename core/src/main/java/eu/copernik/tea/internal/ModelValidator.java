@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.RepositoryOperation;
+import eu.copernik.tea.ValidationPolicy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import java.io.Closeable;
+import java.util.Set;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Applies a {@link ValidationPolicy} to the models read and written by a repository manager.
+ * <p>
+ *     Bootstrapping Bean Validation is expensive: the factory is created once and shared by all operations.
+ * </p>
+ */
+@NullMarked
+final class ModelValidator implements Closeable {
+
+    private final ValidationPolicy validationPolicy;
+    private final OperationRecorder recorder;
+    private final @Nullable ValidatorFactory validatorFactory;
+    private final @Nullable Validator validator;
+
+    ModelValidator(ValidationPolicy validationPolicy, OperationRecorder recorder) {
+        this.validationPolicy = validationPolicy;
+        this.recorder = recorder;
+        if (validationPolicy == ValidationPolicy.NONE) {
+            validatorFactory = null;
+            validator = null;
+        } else {
+            validatorFactory = Validation.buildDefaultValidatorFactory();
+            validator = validatorFactory.getValidator();
+        }
+    }
+
+    /**
+     * Validates a model that was just read, if required by the policy.
+     *
+     * @throws IllegalArgumentException if the model is not valid
+     */
+    <T> T validateOnRead(T object) {
+        return validationPolicy.validateOnRead() ? validate(object) : object;
+    }
+
+    /**
+     * Validates a model that is about to be written, if required by the policy.
+     *
+     * @throws IllegalArgumentException if the model is not valid
+     */
+    <T> T validateOnWrite(T object) {
+        return validationPolicy.validateOnWrite() ? validate(object) : object;
+    }
+
+    @SuppressWarnings("try")
+    private <T> T validate(T object) {
+        if (validator != null) {
+            Set<ConstraintViolation<T>> violations;
+            try (OperationRecorder.Span span = recorder.start(
+                    RepositoryOperation.VALIDATE, object.getClass().getSimpleName())) {
+                violations = validator.validate(object);
+            }
+            if (!violations.isEmpty()) {
+                StringBuilder sb = new StringBuilder("Validation error:\n");
+                violations.forEach(v -> sb.append(v.getPropertyPath())
+                        .append(": ")
+                        .append(v.getMessage())
+                        .append("\n"));
+                throw new IllegalArgumentException(sb.toString());
+            }
+        }
+        return object;
+    }
+
+    @Override
+    public void close() {
+        if (validatorFactory != null) {
+            validatorFactory.close();
+        }
+    }
+}
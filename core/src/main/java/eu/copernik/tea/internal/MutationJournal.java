@@ -0,0 +1,493 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A write-ahead journal of the mutations of a repository, applied in the background.
+ * <p>
+ *     Each mutation is appended to the journal file as a checksummed record. {@link #record} returns once the record
+ *     is synchronized to the storage device: concurrent callers share a single synchronization (group commit).
+ *     A background thread then applies the records in order through a {@link Replayer}.
+ * </p>
+ * <p>
+ *     The records are periodically checkpointed: the applied files are synchronized and the end of the applied
+ *     records is stored in the file header. Once all the records are checkpointed, the journal is truncated.
+ * </p>
+ * <p>
+ *     Each journal file is exclusively locked by its owner. When a journal is opened, the journal files left behind by
+ *     crashed owners are replayed from their last checkpoint and deleted.
+ * </p>
+ */
+final class MutationJournal implements Closeable {
+
+    /**
+     * The folder containing the journal files.
+     */
+    static final String JOURNAL_FOLDER = ".index/journal";
+
+    private static final String EXTENSION = ".wal";
+
+    private static final int MAGIC = 0x5445414A; // "TEAJ"
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Magic number, format version and end of the checkpointed records.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    private static final int CHECKPOINT_POSITION = 8;
+    /**
+     * Record type and payload length.
+     */
+    private static final int RECORD_HEADER_SIZE = 5;
+
+    private static final int RECORD_TRAILER_SIZE = 4;
+
+    /**
+     * The maximum number of records applied between two checkpoints.
+     */
+    private static final int CHECKPOINT_INTERVAL = 1024;
+
+    /**
+     * Applies the mutations of a journal.
+     */
+    interface Replayer {
+
+        /**
+         * Applies a mutation.
+         *
+         * @param type the type of the mutation
+         * @param payload the content of the mutation
+         */
+        void apply(byte type, byte[] payload) throws IOException;
+
+        /**
+         * Synchronizes the changes made by the applied mutations to the storage device.
+         */
+        void sync() throws IOException;
+    }
+
+    /**
+     * A journaled mutation waiting to be applied.
+     */
+    private static final class Mutation {
+
+        private final byte type;
+        private final byte[] payload;
+        /**
+         * The end of the record in the journal, or {@code -1} to stop the applier.
+         */
+        private final long end;
+
+        private Mutation(byte type, byte[] payload, long end) {
+            this.type = type;
+            this.payload = payload;
+            this.end = end;
+        }
+    }
+
+    private static final Mutation STOP = new Mutation((byte) 0, new byte[0], -1);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Replayer replayer;
+    private final BlockingQueue<Mutation> queue = new LinkedBlockingQueue<>();
+    private final Thread applier;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * The size of the file, guarded by {@code this}.
+     */
+    private long size = HEADER_SIZE;
+    /**
+     * The position of the first byte of the file in the sequence of all the records ever appended, guarded by
+     * {@code this}.
+     * <p>
+     *     The positions returned to the callers remain monotonic when the file is truncated.
+     * </p>
+     */
+    private long origin;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+    private boolean syncing;
+    private long syncedEnd = HEADER_SIZE;
+
+    private final ReentrantLock appliedLock = new ReentrantLock();
+    private final Condition appliedChanged = appliedLock.newCondition();
+    private long appliedEnd = HEADER_SIZE;
+    private volatile @Nullable Exception failure;
+
+    private MutationJournal(Path file, FileChannel channel, Replayer replayer) {
+        this.file = file;
+        this.channel = channel;
+        this.replayer = replayer;
+        this.applier = new Thread(this::applyMutations, "tea-journal-applier");
+        applier.setDaemon(true);
+    }
+
+    /**
+     * Replays the journals left behind by crashed managers and starts a new journal.
+     *
+     * @param basePath the base path of the repository
+     * @param replayer applies the mutations of the journals
+     * @return a new journal
+     * @throws IOException if a journal cannot be replayed or created
+     */
+    static MutationJournal open(Path basePath, Replayer replayer) throws IOException {
+        Path folder = basePath.resolve(JOURNAL_FOLDER);
+        recover(folder, replayer);
+        Files.createDirectories(folder);
+        Path file = folder.resolve(UUID.randomUUID() + EXTENSION);
+        FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+            write(
+                    channel,
+                    ByteBuffer.allocate(HEADER_SIZE)
+                            .putInt(MAGIC)
+                            .putInt(FORMAT_VERSION)
+                            .putLong(HEADER_SIZE)
+                            .flip(),
+                    0);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        MutationJournal journal = new MutationJournal(file, channel, replayer);
+        journal.applier.start();
+        return journal;
+    }
+
+    /**
+     * Checks whether a repository has journal files, i.e. mutations that are not yet in the TEA layout.
+     *
+     * @param basePath the base path of the repository
+     * @return whether the repository has journal files
+     * @throws IOException if the journal folder cannot be listed
+     */
+    static boolean isPending(Path basePath) throws IOException {
+        Path folder = basePath.resolve(JOURNAL_FOLDER);
+        if (!Files.isDirectory(folder)) {
+            return false;
+        }
+        try (Stream<Path> stream = Files.list(folder)) {
+            return stream.anyMatch(path -> String.valueOf(path.getFileName()).endsWith(EXTENSION));
+        }
+    }
+
+    /**
+     * Replays and deletes the journal files that are not locked by a running manager.
+     */
+    private static void recover(Path folder, Replayer replayer) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(folder)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(MutationJournal::lastModified))
+                    .toList();
+        }
+        for (Path journalFile : files) {
+            try (FileChannel channel =
+                    FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    // Owned by a manager of this JVM
+                    continue;
+                }
+                if (lock == null) {
+                    // Owned by another process
+                    continue;
+                }
+                replay(journalFile, channel, replayer);
+            }
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void replay(Path journalFile, FileChannel channel, Replayer replayer) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            // The creation of the journal was interrupted
+            return;
+        }
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a TEA journal or unsupported format version: " + journalFile);
+        }
+        long position = header.getLong();
+        while (position + RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE <= fileSize) {
+            ByteBuffer recordHeader = read(channel, position, RECORD_HEADER_SIZE);
+            byte type = recordHeader.get();
+            int length = recordHeader.getInt();
+            long end = position + RECORD_HEADER_SIZE + length + RECORD_TRAILER_SIZE;
+            if (length < 0 || end > fileSize) {
+                break;
+            }
+            ByteBuffer content = read(channel, position, RECORD_HEADER_SIZE + length);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if (read(channel, end - RECORD_TRAILER_SIZE, RECORD_TRAILER_SIZE).getInt() != (int) crc.getValue()) {
+                // A partial record left by an interrupted append
+                break;
+            }
+            byte[] payload = new byte[length];
+            content.position(RECORD_HEADER_SIZE).get(payload);
+            replayer.apply(type, payload);
+            position = end;
+        }
+        replayer.sync();
+    }
+
+    /**
+     * Appends a mutation to the journal and waits until it is synchronized to the storage device.
+     *
+     * @param type the type of the mutation
+     * @param payload the content of the mutation
+     * @throws IOException if the mutation cannot be journaled or a previous mutation could not be applied
+     */
+    void record(byte type, byte[] payload) throws IOException {
+        checkFailure();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length + RECORD_TRAILER_SIZE);
+        buffer.put(type).putInt(payload.length).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        long end;
+        synchronized (this) {
+            write(channel, buffer.flip(), size);
+            size += buffer.capacity();
+            end = origin + size;
+            // Enqueued in the order of the journal
+            queue.add(new Mutation(type, payload, end));
+        }
+        sync(end);
+    }
+
+    /**
+     * Waits until all the mutations recorded so far have been applied.
+     *
+     * @throws IOException if a mutation could not be applied
+     */
+    void awaitApplied() throws IOException {
+        long end;
+        synchronized (this) {
+            end = origin + size;
+        }
+        appliedLock.lock();
+        try {
+            while (appliedEnd < end && failure == null) {
+                appliedChanged.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal: " + file);
+        } finally {
+            appliedLock.unlock();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Waits until all the mutations are applied and checkpointed, stops the applier and deletes the journal.
+     * <p>
+     *     If a mutation could not be applied, the journal is kept and will be replayed by the next manager.
+     * </p>
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        try {
+            awaitApplied();
+        } finally {
+            queue.add(STOP);
+            try {
+                applier.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            boolean checkpointed;
+            synchronized (this) {
+                checkpointed = size == HEADER_SIZE;
+            }
+            channel.close();
+            if (checkpointed && failure == null) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Synchronizes the journal to the storage device, at least up to the given position.
+     * <p>
+     *     A single caller synchronizes the file, while the others wait for it to finish and only synchronize the file
+     *     again if their record was appended after the synchronization started.
+     * </p>
+     */
+    private void sync(long end) throws IOException {
+        syncLock.lock();
+        try {
+            while (syncedEnd < end) {
+                if (syncing) {
+                    syncDone.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target;
+                synchronized (this) {
+                    target = origin + size;
+                }
+                boolean synced = false;
+                syncLock.unlock();
+                try {
+                    channel.force(false);
+                    synced = true;
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    if (synced) {
+                        syncedEnd = Math.max(syncedEnd, target);
+                    }
+                    syncDone.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void applyMutations() {
+        int uncheckpointed = 0;
+        long end = -1;
+        try {
+            for (Mutation mutation = queue.take(); mutation.end >= 0; mutation = queue.take()) {
+                end = mutation.end;
+                sync(end);
+                replayer.apply(mutation.type, mutation.payload);
+                appliedLock.lock();
+                try {
+                    appliedEnd = end;
+                    appliedChanged.signalAll();
+                } finally {
+                    appliedLock.unlock();
+                }
+                if (++uncheckpointed >= CHECKPOINT_INTERVAL || queue.isEmpty()) {
+                    checkpoint(end);
+                    uncheckpointed = 0;
+                }
+            }
+            if (uncheckpointed > 0) {
+                checkpoint(end);
+            }
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Journal applier interrupted: " + file));
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Makes the applied mutations durable and records the end of the applied records.
+     */
+    private void checkpoint(long end) throws IOException {
+        replayer.sync();
+        synchronized (this) {
+            long position = end - origin;
+            if (position == size) {
+                // Everything was applied: restart from an empty journal
+                write(channel, ByteBuffer.allocate(8).putLong(HEADER_SIZE).flip(), CHECKPOINT_POSITION);
+                channel.truncate(HEADER_SIZE);
+                origin = end - HEADER_SIZE;
+                size = HEADER_SIZE;
+            } else {
+                write(channel, ByteBuffer.allocate(8).putLong(position).flip(), CHECKPOINT_POSITION);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void fail(Exception e) {
+        appliedLock.lock();
+        try {
+            failure = e;
+            appliedChanged.signalAll();
+        } finally {
+            appliedLock.unlock();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Exception cause = failure;
+        if (cause != null) {
+            throw new IOException("Failed to apply the mutations of journal: " + file, cause);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of TEA journal");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.OperationStatistics;
+import eu.copernik.tea.RepositoryOperation;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Collects the statistics of the operations of a repository manager and emits the corresponding JFR events.
+ * <p>
+ *     Each operation is timed by a {@link Span}, which must be closed when the operation ends, whether it succeeds or
+ *     not:
+ * </p>
+ * <pre>{@code
+ * try (OperationRecorder.Span span = recorder.start(RepositoryOperation.LOAD, file.toString())) {
+ *     byte[] content = Files.readAllBytes(file);
+ *     span.bytes(content.length);
+ *     ...
+ * }
+ * }</pre>
+ */
+@NullMarked
+final class OperationRecorder {
+
+    private final Map<RepositoryOperation, Counters> counters = new EnumMap<>(RepositoryOperation.class);
+
+    OperationRecorder() {
+        for (RepositoryOperation operation : RepositoryOperation.values()) {
+            counters.put(operation, new Counters());
+        }
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @param operation the kind of operation
+     * @param path the file or store key the operation applies to
+     */
+    Span start(RepositoryOperation operation, String path) {
+        return new Span(counters.get(operation), RepositoryEvents.create(operation, path));
+    }
+
+    /**
+     * Returns a snapshot of the statistics of all the operations.
+     */
+    Map<RepositoryOperation, OperationStatistics> snapshot() {
+        Map<RepositoryOperation, OperationStatistics> result = new EnumMap<>(RepositoryOperation.class);
+        counters.forEach((operation, value) -> result.put(operation, value.snapshot()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the index of the histogram bucket of a latency.
+     */
+    static int bucket(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, nanos) / 1000);
+        return Math.min(bucket, OperationStatistics.HISTOGRAM_BUCKETS - 1);
+    }
+
+    private static final class Counters {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[OperationStatistics.HISTOGRAM_BUCKETS];
+
+        Counters() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long elapsed, long size) {
+            count.increment();
+            bytes.add(size);
+            nanos.add(elapsed);
+            histogram[bucket(elapsed)].increment();
+        }
+
+        OperationStatistics snapshot() {
+            List<Long> buckets = new ArrayList<>(histogram.length);
+            for (LongAdder bucket : histogram) {
+                buckets.add(bucket.sum());
+            }
+            return new OperationStatistics(count.sum(), bytes.sum(), Duration.ofNanos(nanos.sum()), buckets);
+        }
+    }
+
+    /**
+     * Times a single operation.
+     */
+    static final class Span implements AutoCloseable {
+
+        private final Counters counters;
+        private final RepositoryEvents.RepositoryEvent event;
+        private final long start;
+        private long bytes;
+
+        private Span(Counters counters, RepositoryEvents.RepositoryEvent event) {
+            this.counters = counters;
+            this.event = event;
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Adds to the number of bytes read or written by the operation.
+         */
+        void bytes(long count) {
+            bytes += count;
+        }
+
+        @Override
+        public void close() {
+            counters.record(System.nanoTime() - start, bytes);
+            if (event.shouldCommit()) {
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.RepositoryOperation;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The JDK Flight Recorder events emitted by the repository managers, one for each {@link RepositoryOperation}.
+ * <p>
+ *     By default, only the operations that take longer than 1 ms are recorded. The threshold can be changed with a
+ *     custom JFR configuration, e.g.:
+ * </p>
+ * <pre>{@code
+ * <event name="eu.copernik.tea.Load">
+ *   <setting name="enabled">true</setting>
+ *   <setting name="threshold">0 ms</setting>
+ * </event>
+ * }</pre>
+ */
+@NullMarked
+final class RepositoryEvents {
+
+    private static final String CATEGORY = "TEA Generator";
+
+    private RepositoryEvents() {}
+
+    static RepositoryEvent create(RepositoryOperation operation, String path) {
+        RepositoryEvent event =
+                switch (operation) {
+                    case LOAD -> new LoadEvent();
+                    case VALIDATE -> new ValidateEvent();
+                    case SAVE -> new SaveEvent();
+                    case FIND_ALL -> new FindAllEvent();
+                    case UPDATE_AGGREGATE -> new UpdateAggregateEvent();
+                };
+        event.path = path;
+        return event;
+    }
+
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("1 ms")
+    abstract static class RepositoryEvent extends Event {
+
+        @Label("Path")
+        @Description("File or store key of the object")
+        @Nullable
+        String path;
+
+        @Label("Bytes")
+        @Description("Number of bytes read or written")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("eu.copernik.tea.Load")
+    @Label("TEA Load")
+    @Description("Reads and parses a TEA object")
+    static final class LoadEvent extends RepositoryEvent {}
+
+    @Name("eu.copernik.tea.Validate")
+    @Label("TEA Validate")
+    @Description("Validates a TEA object")
+    static final class ValidateEvent extends RepositoryEvent {}
+
+    @Name("eu.copernik.tea.Save")
+    @Label("TEA Save")
+    @Description("Serializes and writes a TEA object")
+    static final class SaveEvent extends RepositoryEvent {}
+
+    @Name("eu.copernik.tea.FindAll")
+    @Label("TEA Find All")
+    @Description("Lists the TEA objects in a folder")
+    static final class FindAllEvent extends RepositoryEvent {}
+
+    @Name("eu.copernik.tea.UpdateAggregate")
+    @Label("TEA Update Aggregate")
+    @Description("Regenerates an aggregate file, such as releases.json")
+    static final class UpdateAggregateEvent extends RepositoryEvent {}
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Striped locks that serialize the updates of a TEA repository, within a JVM and across processes.
+ * <p>
+ *     Each key, e.g. the UUID of a component, is mapped to one of {@value #STRIPES} stripes. A stripe is guarded by a
+ *     {@link ReentrantLock} shared by all the managers of the JVM and by an advisory {@link FileLock} on the
+ *     {@code .index/locks/{stripe}.lock} file, which excludes other processes. Updates of unrelated keys can therefore
+ *     proceed in parallel, while updates of the same key are serialized.
+ * </p>
+ * <p>
+ *     The locks are reentrant: the file lock is only acquired by the outermost lock of a thread.
+ * </p>
+ * <p>
+ *     While a repository is open, the JVM also holds a shared lock on the {@code .index/locks/repository.lock} file,
+ *     so that the operations that rewrite the whole repository, like a layout migration, can
+ *     {@linkplain #lockRepository lock it exclusively}.
+ * </p>
+ * <p>
+ *     This class also hands out the UUIDs of new entities. Each reservation is stored in the
+ *     {@code .index/reservations} folder, under the lock of its key, so that all the managers of a repository, in any
+ *     process, assign the same UUID to the same entity until it is saved. Each reservation belongs to the instance
+ *     that made it and is dropped by {@link #releaseAll()}, even if the entity is never saved.
+ * </p>
+ */
+final class RepositoryLocks implements Closeable {
+
+    /**
+     * The number of stripes of each repository.
+     */
+    static final int STRIPES = 256;
+
+    private static final String LOCK_FOLDER = ".index/locks";
+    private static final String RESERVATION_FOLDER = ".index/reservations";
+    private static final String REPOSITORY_LOCK_FILE = "repository.lock";
+
+    /**
+     * The stripes of the repositories opened in this JVM, keyed by lock folder.
+     * <p>
+     *     Since the JVM holds the file locks on behalf of all its threads, the stripes must be shared between all the
+     *     managers of the same repository. They are removed when the last instance of a repository is closed.
+     * </p>
+     */
+    private static final Map<Path, Stripes> STRIPES_BY_FOLDER = new HashMap<>();
+
+    /**
+     * The lock folders of the repositories locked exclusively by this JVM, guarded by {@link #STRIPES_BY_FOLDER}.
+     */
+    private static final Set<Path> EXCLUSIVE_FOLDERS = new HashSet<>();
+
+    private final Path lockFolder;
+    private final Path reservationFolder;
+    private final Stripes stripes;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * The UUIDs reserved by this instance, keyed by entity key.
+     */
+    private final ConcurrentMap<String, UUID> reservations = new ConcurrentHashMap<>();
+
+    private RepositoryLocks(Path lockFolder, Path reservationFolder, Stripes stripes) {
+        this.lockFolder = lockFolder;
+        this.reservationFolder = reservationFolder;
+        this.stripes = stripes;
+    }
+
+    /**
+     * Opens the locks of a repository.
+     *
+     * @param basePath the base path of the repository
+     * @return the locks of the repository, which must be closed
+     * @throws IOException if the repository is locked exclusively
+     */
+    static RepositoryLocks open(Path basePath) throws IOException {
+        Path absoluteBasePath = basePath.toAbsolutePath().normalize();
+        Path lockFolder = absoluteBasePath.resolve(LOCK_FOLDER);
+        Stripes stripes;
+        synchronized (STRIPES_BY_FOLDER) {
+            stripes = STRIPES_BY_FOLDER.get(lockFolder);
+            if (stripes == null) {
+                if (EXCLUSIVE_FOLDERS.contains(lockFolder)) {
+                    throw new IOException("TEA repository is locked exclusively: " + basePath);
+                }
+                stripes = new Stripes(lockFolder, lockRepositoryFile(basePath, lockFolder, true));
+                STRIPES_BY_FOLDER.put(lockFolder, stripes);
+            }
+            stripes.references++;
+        }
+        return new RepositoryLocks(lockFolder, absoluteBasePath.resolve(RESERVATION_FOLDER), stripes);
+    }
+
+    /**
+     * Locks a repository exclusively, e.g. to migrate its layout.
+     *
+     * @param basePath the base path of the repository
+     * @return a handle that releases the lock when closed
+     * @throws IOException if the repository is open, in this or in another process
+     */
+    static Handle lockRepository(Path basePath) throws IOException {
+        Path lockFolder = basePath.toAbsolutePath().normalize().resolve(LOCK_FOLDER);
+        FileChannel channel;
+        synchronized (STRIPES_BY_FOLDER) {
+            if (STRIPES_BY_FOLDER.containsKey(lockFolder) || EXCLUSIVE_FOLDERS.contains(lockFolder)) {
+                throw new IOException("TEA repository is in use: " + basePath);
+            }
+            channel = lockRepositoryFile(basePath, lockFolder, false);
+            EXCLUSIVE_FOLDERS.add(lockFolder);
+        }
+        return () -> {
+            try {
+                channel.close();
+            } finally {
+                synchronized (STRIPES_BY_FOLDER) {
+                    EXCLUSIVE_FOLDERS.remove(lockFolder);
+                }
+            }
+        };
+    }
+
+    /**
+     * Locks the repository lock file without waiting.
+     *
+     * @return the channel holding the lock
+     * @throws IOException if the file is already locked by another process
+     */
+    private static FileChannel lockRepositoryFile(Path basePath, Path lockFolder, boolean shared) throws IOException {
+        Files.createDirectories(lockFolder);
+        FileChannel channel = FileChannel.open(
+                lockFolder.resolve(REPOSITORY_LOCK_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock(0, Long.MAX_VALUE, shared) != null) {
+                return channel;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        throw new IOException(
+                (shared ? "TEA repository is locked exclusively: " : "TEA repository is in use: ") + basePath);
+    }
+
+    /**
+     * Acquires the lock of a key, waiting if necessary.
+     *
+     * @param key a key, e.g. {@code component/{uuid}}
+     * @return a handle that releases the lock when closed
+     * @throws IOException if the lock file cannot be locked
+     */
+    Handle lock(String key) throws IOException {
+        Stripe stripe = stripes.stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        stripe.lock();
+        return stripe::unlock;
+    }
+
+    /**
+     * Returns the UUID reserved for a new entity, reserving a random one if necessary.
+     * <p>
+     *     The caller must hold the lock of the key.
+     * </p>
+     *
+     * @param key a key that identifies the entity, e.g. its PURL
+     * @return the reserved UUID
+     * @throws IOException if the reservation cannot be read or stored
+     */
+    UUID reserve(String key) throws IOException {
+        Path reservationFile = getReservationFile(key);
+        UUID uuid = readReservation(reservationFile);
+        if (uuid == null) {
+            uuid = UUID.randomUUID();
+            Files.createDirectories(reservationFolder);
+            Path tempFile = Files.createTempFile(reservationFolder, null, ".tmp");
+            try {
+                Files.writeString(tempFile, uuid.toString());
+                Files.move(tempFile, reservationFile, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        reservations.put(key, uuid);
+        return uuid;
+    }
+
+    /**
+     * Releases a reservation, once the entity has been saved.
+     *
+     * @param key the key of the entity
+     * @param uuid the UUID of the saved entity
+     * @throws IOException if the reservation cannot be removed
+     */
+    void release(String key, UUID uuid) throws IOException {
+        // Only the reservations looked up by this instance need to be removed
+        if (reservations.remove(key, uuid)) {
+            delete(key, uuid);
+        }
+    }
+
+    /**
+     * Releases all the reservations made by this instance, e.g. at the end of a batch or when the manager is closed.
+     *
+     * @throws IOException if a reservation cannot be removed
+     */
+    void releaseAll() throws IOException {
+        for (Map.Entry<String, UUID> reservation : reservations.entrySet()) {
+            if (reservations.remove(reservation.getKey(), reservation.getValue())) {
+                delete(reservation.getKey(), reservation.getValue());
+            }
+        }
+    }
+
+    /**
+     * Releases the reservations of this instance and the stripes of the repository, if no other instance uses them.
+     *
+     * @throws IOException if a reservation cannot be removed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        try {
+            releaseAll();
+        } finally {
+            synchronized (STRIPES_BY_FOLDER) {
+                if (--stripes.references == 0) {
+                    STRIPES_BY_FOLDER.remove(lockFolder);
+                    // Releases the shared lock of the repository
+                    stripes.repositoryChannel.close();
+                }
+            }
+        }
+    }
+
+    private void delete(String key, UUID uuid) throws IOException {
+        Handle lock = lock(key);
+        try {
+            Path reservationFile = getReservationFile(key);
+            // Another instance might have replaced a released reservation
+            if (uuid.equals(readReservation(reservationFile))) {
+                Files.deleteIfExists(reservationFile);
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    private Path getReservationFile(String key) {
+        return reservationFolder.resolve(ArtifactStore.sha256Hex(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static @Nullable UUID readReservation(Path reservationFile) throws IOException {
+        try {
+            return UUID.fromString(Files.readString(reservationFile).trim());
+        } catch (NoSuchFileException | IllegalArgumentException e) {
+            // A missing or corrupted reservation is replaced
+            return null;
+        }
+    }
+
+    /**
+     * A held lock.
+     */
+    @FunctionalInterface
+    interface Handle extends AutoCloseable {
+
+        /**
+         * Releases the lock.
+         */
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final class Stripes {
+
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        /**
+         * The channel holding the shared lock of the repository.
+         */
+        private final FileChannel repositoryChannel;
+
+        /**
+         * The number of open instances using these stripes, guarded by {@link #STRIPES_BY_FOLDER}.
+         */
+        private int references;
+
+        private Stripes(Path lockFolder, FileChannel repositoryChannel) {
+            this.repositoryChannel = repositoryChannel;
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(lockFolder.resolve(String.format(Locale.ROOT, "%02x.lock", i)));
+            }
+        }
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Path lockFile;
+
+        /**
+         * The channel holding the file lock, guarded by {@link #lock}.
+         */
+        private @Nullable FileChannel channel;
+
+        private Stripe(Path lockFile) {
+            this.lockFile = lockFile;
+        }
+
+        private void lock() throws IOException {
+            lock.lock();
+            if (lock.getHoldCount() > 1) {
+                return;
+            }
+            try {
+                Files.createDirectories(Objects.requireNonNull(lockFile.getParent()));
+                FileChannel newChannel =
+                        FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                try {
+                    newChannel.lock();
+                } catch (IOException | RuntimeException e) {
+                    newChannel.close();
+                    throw e;
+                }
+                channel = newChannel;
+            } catch (IOException | RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+        }
+
+        private void unlock() throws IOException {
+            try {
+                FileChannel heldChannel = channel;
+                if (lock.getHoldCount() == 1 && heldChannel != null) {
+                    channel = null;
+                    // Closing the channel releases the file lock
+                    heldChannel.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
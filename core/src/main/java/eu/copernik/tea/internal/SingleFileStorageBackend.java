@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.spi.TeaStorageBackend;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Stores all the TEA objects in a single append-only file.
+ */
+@Named(TeaRepository.SINGLE_FILE_BACKEND)
+@Singleton
+public class SingleFileStorageBackend implements TeaStorageBackend {
+
+    @Override
+    public String getName() {
+        return TeaRepository.SINGLE_FILE_BACKEND;
+    }
+
+    @Override
+    public SingleFileTeaRepositoryManager newInstance(TeaRepository repository) {
+        try {
+            return new SingleFileTeaRepositoryManager(repository);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
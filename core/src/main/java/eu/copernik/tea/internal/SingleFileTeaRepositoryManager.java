@@ -0,0 +1,428 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.CacheStatistics;
+import eu.copernik.tea.Change;
+import eu.copernik.tea.Lookup;
+import eu.copernik.tea.OperationStatistics;
+import eu.copernik.tea.RepositoryOperation;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A repository manager that stores all the TEA objects in a single {@link AppendOnlyStore}.
+ * <p>
+ *     Objects are stored as compact JSON, under keys that mirror the paths of the directory layout, e.g.
+ *     {@code component/<uuid>/release/<version>}. Aggregates, such as the list of releases of a component, are not
+ *     stored: use {@link #exportTo(TeaRepositoryManager)} to publish the repository in the directory layout.
+ * </p>
+ * <p>
+ *     The change feed is stored under the {@code change/<sequence>} keys, where the sequence number is zero-padded, so
+ *     that the keys sort in sequence order.
+ * </p>
+ * <p>
+ *     The store is only synchronized to the storage device by {@link AppendOnlyStore#checkpoint()}, when a batch is
+ *     committed or closed, and when the manager is closed. Saves outside a batch are therefore not durable until the
+ *     manager is closed.
+ * </p>
+ */
+@NullMarked
+public final class SingleFileTeaRepositoryManager implements TeaRepositoryManager {
+
+    /**
+     * Name of the store file in the base path of the repository.
+     */
+    static final String STORE_FILE = "repository.tea";
+
+    private static final String PRODUCT_PREFIX = "product/";
+    private static final String COMPONENT_PREFIX = "component/";
+    private static final String RELEASE_PREFIX = "release/";
+    private static final String CHANGE_PREFIX = "change/";
+
+    private final ObjectMapper objectMapper =
+            JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    private final AppendOnlyStore store;
+    private final OperationRecorder recorder = new OperationRecorder();
+    private final ModelValidator modelValidator;
+    private final AtomicInteger batchDepth = new AtomicInteger();
+
+    /**
+     * Identifier indexes, built on first use.
+     */
+    private @Nullable IdentifierIndex componentIndex;
+
+    private @Nullable IdentifierIndex productIndex;
+
+    /**
+     * The sequence number of the last change, loaded on first use.
+     */
+    private long lastSequence = -1;
+
+    SingleFileTeaRepositoryManager(TeaRepository repository) throws IOException {
+        this.store = AppendOnlyStore.open(repository.getBasePath().resolve(STORE_FILE));
+        this.modelValidator = new ModelValidator(repository.getValidationPolicy(), recorder);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            store.close();
+        } finally {
+            modelValidator.close();
+        }
+    }
+
+    @Override
+    public @Nullable Product getProduct(UUID id) throws IOException {
+        return find(Product.class, PRODUCT_PREFIX + id);
+    }
+
+    @Override
+    public void saveProduct(Product product) throws IOException {
+        if (save(PRODUCT_PREFIX + product.getUuid(), product)) {
+            recordChange(Change.Type.PRODUCT, product.getUuid(), null, null);
+        }
+        synchronized (this) {
+            if (productIndex != null) {
+                productIndex.put(product.getUuid(), product.getIdentifiers());
+            }
+        }
+    }
+
+    @Override
+    public List<Product> findProductsByIdentifier(IdentifierType idType, String idValue) throws IOException {
+        Set<UUID> candidates;
+        synchronized (this) {
+            if (productIndex == null) {
+                IdentifierIndex index = new IdentifierIndex();
+                for (String key : store.keys(PRODUCT_PREFIX)) {
+                    Product product = load(Product.class, key);
+                    index.put(product.getUuid(), product.getIdentifiers());
+                }
+                productIndex = index;
+            }
+            candidates = new TreeSet<>(productIndex.get(idType, idValue));
+        }
+        List<Product> products = new ArrayList<>();
+        for (UUID uuid : candidates) {
+            products.add(load(Product.class, PRODUCT_PREFIX + uuid));
+        }
+        return products;
+    }
+
+    @Override
+    public Lookup<Component> lookupComponentByPurl(PackageURL purl) throws IOException {
+        String purlValue = purl.toString();
+        Set<UUID> candidates;
+        synchronized (this) {
+            if (componentIndex == null) {
+                IdentifierIndex index = new IdentifierIndex();
+                for (String key : store.keys(COMPONENT_PREFIX)) {
+                    if (key.indexOf('/', COMPONENT_PREFIX.length()) < 0) {
+                        Component component = load(Component.class, key);
+                        index.put(component.getUuid(), component.getIdentifiers());
+                    }
+                }
+                componentIndex = index;
+            }
+            candidates = componentIndex.get(IdentifierType.PURL, purlValue);
+        }
+        for (UUID uuid : candidates) {
+            Component component = find(Component.class, COMPONENT_PREFIX + uuid);
+            if (component != null) {
+                return new Lookup<>(component, false);
+            }
+        }
+        Component newComponent = new Component();
+        newComponent.setUuid(UUID.randomUUID());
+        newComponent.addIdentifiersItem(
+                new Identifier().idType(IdentifierType.PURL).idValue(purlValue));
+        return new Lookup<>(newComponent, true);
+    }
+
+    @Override
+    public void saveComponent(Component component) throws IOException {
+        if (save(COMPONENT_PREFIX + component.getUuid(), component)) {
+            recordChange(Change.Type.COMPONENT, component.getUuid(), null, null);
+        }
+        synchronized (this) {
+            if (componentIndex != null) {
+                componentIndex.put(component.getUuid(), component.getIdentifiers());
+            }
+        }
+    }
+
+    /**
+     * An in-memory inverted index from identifiers to entity UUIDs.
+     */
+    private static final class IdentifierIndex {
+
+        private final Map<String, Set<UUID>> uuidsByKey = new HashMap<>();
+        private final Map<UUID, Set<String>> keysByUuid = new HashMap<>();
+
+        Set<UUID> get(IdentifierType idType, String idValue) {
+            return Set.copyOf(
+                    uuidsByKey.getOrDefault(DefaultTeaRepositoryManager.identifierKey(idType, idValue), Set.of()));
+        }
+
+        void put(UUID uuid, List<Identifier> identifiers) {
+            Set<String> newKeys = DefaultTeaRepositoryManager.identifierKeys(identifiers);
+            for (String key : keysByUuid.getOrDefault(uuid, Set.of())) {
+                Set<UUID> uuids = uuidsByKey.get(key);
+                if (uuids != null && uuids.remove(uuid) && uuids.isEmpty()) {
+                    uuidsByKey.remove(key);
+                }
+            }
+            for (String key : newKeys) {
+                uuidsByKey
+                        .computeIfAbsent(key, ignored -> new LinkedHashSet<>())
+                        .add(uuid);
+            }
+            keysByUuid.put(uuid, newKeys);
+        }
+    }
+
+    @Override
+    public Lookup<Release> lookupRelease(Component component, String version) throws IOException {
+        Release release = find(Release.class, getReleaseKey(component.getUuid(), version));
+        return release != null
+                ? new Lookup<>(release, false)
+                : new Lookup<>(new Release().uuid(UUID.randomUUID()).version(version), true);
+    }
+
+    @Override
+    public void saveRelease(Component component, Release release) throws IOException {
+        if (save(getReleaseKey(component.getUuid(), release.getVersion()), release)) {
+            recordChange(Change.Type.RELEASE, release.getUuid(), component.getUuid(), release.getVersion());
+        }
+    }
+
+    private static String getReleaseKey(UUID componentUuid, String version) {
+        return COMPONENT_PREFIX + componentUuid + "/release/" + version;
+    }
+
+    @Override
+    public @Nullable Collection getCollection(Release release, int version) throws IOException {
+        return find(Collection.class, getCollectionPrefix(release.getUuid()) + version);
+    }
+
+    @Override
+    public @Nullable Collection getLatestCollection(Release release) throws IOException {
+        String prefix = getCollectionPrefix(release.getUuid());
+        int latest = -1;
+        for (String key : store.keys(prefix)) {
+            try {
+                latest = Math.max(latest, Integer.parseInt(key.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // Not a collection version
+            }
+        }
+        return latest >= 0 ? find(Collection.class, prefix + latest) : null;
+    }
+
+    @Override
+    public void saveCollection(Collection collection) throws IOException {
+        if (save(getCollectionPrefix(collection.getUuid()) + collection.getVersion(), collection)) {
+            recordChange(Change.Type.COLLECTION, collection.getUuid(), null, String.valueOf(collection.getVersion()));
+        }
+    }
+
+    private static String getCollectionPrefix(UUID releaseUuid) {
+        return RELEASE_PREFIX + releaseUuid + "/collection/";
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     *     This backend does not store aggregates: a batch only defers the checkpoint of the store index until it is
+     *     closed.
+     * </p>
+     */
+    @Override
+    public TeaRepositoryBatch beginBatch() {
+        batchDepth.incrementAndGet();
+        return new Batch();
+    }
+
+    private synchronized void recordChange(
+            Change.Type type, UUID uuid, @Nullable UUID componentUuid, @Nullable String version) throws IOException {
+        long sequence = getLastSequence() + 1;
+        Change change = new Change(sequence, type, uuid, componentUuid, version, OffsetDateTime.now(ZoneOffset.UTC));
+        store.put(getChangeKey(sequence), objectMapper.writeValueAsBytes(change));
+        lastSequence = sequence;
+    }
+
+    private synchronized long getLastSequence() {
+        if (lastSequence < 0) {
+            SortedSet<String> keys = store.keys(CHANGE_PREFIX);
+            lastSequence = keys.isEmpty() ? 0 : Long.parseLong(keys.last().substring(CHANGE_PREFIX.length()));
+        }
+        return lastSequence;
+    }
+
+    private static String getChangeKey(long sequence) {
+        return CHANGE_PREFIX + String.format(Locale.ROOT, "%019d", sequence);
+    }
+
+    @Override
+    public List<Change> getChanges(long cursor, int limit) throws IOException {
+        if (cursor < 0 || limit < 0) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor + " or limit " + limit);
+        }
+        List<Change> changes = new ArrayList<>();
+        long last = Math.min(getLastSequence(), cursor + limit);
+        for (long sequence = cursor + 1; sequence <= last; sequence++) {
+            changes.add(load(Change.class, getChangeKey(sequence)));
+        }
+        return changes;
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(0, 0, 0);
+    }
+
+    @Override
+    public Map<RepositoryOperation, OperationStatistics> getOperationStatistics() {
+        return recorder.snapshot();
+    }
+
+    @Override
+    public void exportTo(TeaRepositoryManager target) throws IOException {
+        try (TeaRepositoryBatch batch = target.beginBatch()) {
+            for (String key : store.keys(PRODUCT_PREFIX)) {
+                target.saveProduct(load(Product.class, key));
+            }
+            for (String key : store.keys(COMPONENT_PREFIX)) {
+                if (key.indexOf('/', COMPONENT_PREFIX.length()) < 0) {
+                    Component component = load(Component.class, key);
+                    target.saveComponent(component);
+                    for (String releaseKey : store.keys(key + "/release/")) {
+                        target.saveRelease(component, load(Release.class, releaseKey));
+                    }
+                }
+            }
+            // The keys sort version 10 before version 2: group the versions of each release by number
+            Map<String, SortedMap<Integer, String>> collectionKeys = new LinkedHashMap<>();
+            for (String key : store.keys(RELEASE_PREFIX)) {
+                int separator = key.lastIndexOf('/');
+                try {
+                    collectionKeys
+                            .computeIfAbsent(key.substring(0, separator), ignored -> new TreeMap<>())
+                            .put(Integer.parseInt(key.substring(separator + 1)), key);
+                } catch (NumberFormatException e) {
+                    // Not a collection version
+                }
+            }
+            for (SortedMap<Integer, String> versions : collectionKeys.values()) {
+                for (String key : versions.values()) {
+                    target.saveCollection(load(Collection.class, key));
+                }
+            }
+            batch.commit();
+        }
+    }
+
+    private final class Batch implements TeaRepositoryBatch {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public void commit() throws IOException {
+            if (closed.get()) {
+                throw new IllegalStateException("Batch already closed.");
+            }
+            store.checkpoint();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed.getAndSet(true) && batchDepth.decrementAndGet() == 0) {
+                store.checkpoint();
+            }
+        }
+    }
+
+    /**
+     * Saves a model, unless the store already contains the same value.
+     *
+     * @return {@code true} if the stored value changed
+     */
+    private boolean save(String key, Object model) throws IOException {
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.SAVE, key)) {
+            byte[] value = objectMapper.writeValueAsBytes(modelValidator.validateOnWrite(model));
+            span.bytes(value.length);
+            if (Arrays.equals(store.get(key), value)) {
+                return false;
+            }
+            store.put(key, value);
+            return true;
+        }
+    }
+
+    private <T> @Nullable T find(Class<T> type, String key) throws IOException {
+        try (OperationRecorder.Span span = recorder.start(RepositoryOperation.LOAD, key)) {
+            byte[] value = store.get(key);
+            if (value == null) {
+                return null;
+            }
+            span.bytes(value.length);
+            return modelValidator.validateOnRead(objectMapper.readValue(value, type));
+        }
+    }
+
+    private <T> T load(Class<T> type, String key) throws IOException {
+        T model = find(type, key);
+        if (model == null) {
+            throw new IOException("Missing object in TEA store: " + key);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An on-disk multimap from string keys to entity UUIDs.
+ * <p>
+ *     The index is stored as an append-only log of binary records, so that updating the entry of a single entity
+ *     costs a single small write. The whole log is memory-mapped and replayed into a hash map when the index is
+ *     opened; afterward all lookups are served from memory. When the log contains many more records than live entries,
+ *     it is compacted as it is loaded.
+ * </p>
+ * <p>
+ *     Records appended by other processes are only seen after a call to {@link #refresh()}.
+ * </p>
+ * <p>
+ *     The index is only a hint: callers must verify that the entity returned by a lookup still matches the key.
+ * </p>
+ */
+@NullMarked
+final class UuidIndex {
+
+    private static final int MAGIC = 0x54454149; // "TEAI"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte OP_ADD = 'A';
+    private static final byte OP_REMOVE = 'R';
+    /** Records the presence of an entity without keys. */
+    private static final byte OP_ENTITY = 'E';
+
+    /**
+     * The minimum number of obsolete records that triggers a compaction.
+     */
+    private static final int MIN_OBSOLETE_RECORDS = 1024;
+
+    private final Path indexFile;
+    private final Map<String, Set<UUID>> uuidsByKey = new HashMap<>();
+    private final Map<UUID, Set<String>> keysByUuid = new HashMap<>();
+
+    /**
+     * The length of the part of the index file that was replayed.
+     */
+    private long replayedLength;
+
+    /**
+     * The number of records that were replayed.
+     */
+    private long replayedRecords;
+
+    /**
+     * The key of the replayed index file, if supported by the file system.
+     */
+    private @Nullable Object fileKey;
+
+    private UuidIndex(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Loads an existing index.
+     *
+     * @param indexFile the file containing the index
+     * @return the index or {@code null} if the file does not exist or is not a valid index
+     */
+    static @Nullable UuidIndex load(Path indexFile) throws IOException {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        UuidIndex index = new UuidIndex(indexFile);
+        Object fileKey = readFileKey(indexFile);
+        long validLength;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            validLength = index.replay(buffer);
+            if (validLength < size) {
+                // A previous append was interrupted: drop the partial record
+                try (FileChannel writeChannel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                    writeChannel.truncate(validLength);
+                }
+            }
+        }
+        index.replayed(validLength, fileKey);
+        index.compactIfNeeded();
+        return index;
+    }
+
+    /**
+     * Rewrites the index file if most of its records were superseded by later ones.
+     */
+    private synchronized void compactIfNeeded() throws IOException {
+        long liveRecords = liveRecords();
+        if (replayedRecords - liveRecords >= Math.max(MIN_OBSOLETE_RECORDS, liveRecords)) {
+            rewrite();
+        }
+    }
+
+    private static @Nullable Object readFileKey(Path indexFile) throws IOException {
+        return Files.readAttributes(indexFile, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Creates a new index file, replacing any existing one.
+     *
+     * @param indexFile the file that will contain the index
+     * @param entries the keys of each entity
+     * @return the new index
+     */
+    static UuidIndex create(Path indexFile, Map<UUID, ? extends Set<String>> entries) throws IOException {
+        UuidIndex index = new UuidIndex(indexFile);
+        synchronized (index) {
+            entries.forEach(index::update);
+        }
+        index.rewrite();
+        return index;
+    }
+
+    /**
+     * Writes the live entries to a new index file, which replaces the current one.
+     * <p>
+     *     The records of each key are written in insertion order, so that {@link #get(String)} returns the same order.
+     * </p>
+     */
+    private synchronized void rewrite() throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        records.writeBytes(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).array());
+        uuidsByKey.forEach((key, uuids) -> uuids.forEach(uuid -> records.writeBytes(record(OP_ADD, key, uuid))));
+        keysByUuid.forEach((uuid, keys) -> {
+            if (keys.isEmpty()) {
+                records.writeBytes(record(OP_ENTITY, "", uuid));
+            }
+        });
+        Path directory = Objects.requireNonNull(indexFile.toAbsolutePath().getParent());
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, indexFile.getFileName() + ".", ".tmp");
+        try {
+            Files.write(tempFile, records.toByteArray());
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        replayedRecords = liveRecords();
+        replayed(records.size(), readFileKey(indexFile));
+    }
+
+    /**
+     * Returns the number of records needed to describe the live entries.
+     */
+    private synchronized long liveRecords() {
+        long count = 0;
+        for (Set<String> keys : keysByUuid.values()) {
+            count += Math.max(1, keys.size());
+        }
+        return count;
+    }
+
+    private synchronized void replayed(long length, @Nullable Object key) {
+        replayedLength = length;
+        fileKey = key;
+    }
+
+    /**
+     * Replays the records appended to the index file since it was last read, e.g. by another process.
+     * <p>
+     *     The caller should hold a lock that excludes the writers of the keys it is interested in. If the index file
+     *     was replaced or truncated in the meantime, the whole file is replayed again.
+     * </p>
+     */
+    synchronized void refresh() throws IOException {
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        Object currentKey = readFileKey(indexFile);
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return;
+            }
+            if (size < replayedLength || !Objects.equals(currentKey, fileKey)) {
+                uuidsByKey.clear();
+                keysByUuid.clear();
+                replayedLength = HEADER_SIZE;
+                replayedRecords = 0;
+                fileKey = currentKey;
+            }
+            if (size > replayedLength) {
+                // Our own appends are replayed too: the records are idempotent if applied in file order
+                MappedByteBuffer buffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY, replayedLength, size - replayedLength);
+                replayedLength += replay(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the UUIDs of the entities associated with a key, in insertion order.
+     *
+     * @param key a key
+     */
+    synchronized Set<UUID> get(String key) {
+        Set<UUID> uuids = uuidsByKey.get(key);
+        return uuids != null ? Collections.unmodifiableSet(new LinkedHashSet<>(uuids)) : Set.of();
+    }
+
+    /**
+     * Returns the UUIDs of all the indexed entities.
+     */
+    synchronized Set<UUID> uuids() {
+        return Set.copyOf(keysByUuid.keySet());
+    }
+
+    /**
+     * Returns all the indexed keys.
+     */
+    synchronized Set<String> keys() {
+        return Set.copyOf(uuidsByKey.keySet());
+    }
+
+    /**
+     * Returns the keys associated with an entity.
+     *
+     * @param uuid the UUID of the entity
+     */
+    synchronized Set<String> keys(UUID uuid) {
+        Set<String> keys = keysByUuid.get(uuid);
+        return keys != null ? Set.copyOf(keys) : Set.of();
+    }
+
+    /**
+     * Replaces the keys associated with an entity and persists the change.
+     *
+     * @param uuid the UUID of the entity
+     * @param keys the new keys of the entity
+     */
+    synchronized void put(UUID uuid, Set<String> keys) throws IOException {
+        byte[] records = update(uuid, keys);
+        if (records.length > 0) {
+            try (FileChannel channel =
+                    FileChannel.open(indexFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(records);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the in-memory state and returns the records describing the change.
+     */
+    private byte[] update(UUID uuid, Set<String> keys) {
+        Set<String> oldKeys = keysByUuid.getOrDefault(uuid, Collections.emptySet());
+        boolean known = keysByUuid.containsKey(uuid);
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (String key : oldKeys) {
+            if (!keys.contains(key)) {
+                records.writeBytes(record(OP_REMOVE, key, uuid));
+            }
+        }
+        for (String key : keys) {
+            if (!oldKeys.contains(key)) {
+                records.writeBytes(record(OP_ADD, key, uuid));
+            }
+        }
+        if (!known && keys.isEmpty()) {
+            records.writeBytes(record(OP_ENTITY, "", uuid));
+        }
+        for (String key : Set.copyOf(oldKeys)) {
+            if (!keys.contains(key)) {
+                apply(OP_REMOVE, key, uuid);
+            }
+        }
+        apply(OP_ENTITY, "", uuid);
+        keys.forEach(key -> apply(OP_ADD, key, uuid));
+        return records.toByteArray();
+    }
+
+    /**
+     * Replays the records in the buffer.
+     *
+     * @return the position after the last complete record
+     */
+    private long replay(ByteBuffer buffer) {
+        int position = buffer.position();
+        try {
+            while (buffer.hasRemaining()) {
+                byte op = buffer.get();
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    // Truncated or corrupted record: the length cannot be trusted
+                    break;
+                }
+                byte[] key = new byte[length];
+                buffer.get(key);
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                if (op != OP_ADD && op != OP_REMOVE && op != OP_ENTITY) {
+                    break;
+                }
+                apply(op, new String(key, StandardCharsets.UTF_8), uuid);
+                replayedRecords++;
+                position = buffer.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // Truncated record
+        }
+        return position;
+    }
+
+    private void apply(byte op, String key, UUID uuid) {
+        Set<String> keys = keysByUuid.computeIfAbsent(uuid, ignored -> new LinkedHashSet<>());
+        switch (op) {
+            case OP_ADD -> {
+                keys.add(key);
+                uuidsByKey
+                        .computeIfAbsent(key, ignored -> new LinkedHashSet<>())
+                        .add(uuid);
+            }
+            case OP_REMOVE -> {
+                keys.remove(key);
+                Set<UUID> uuids = uuidsByKey.get(key);
+                if (uuids != null && uuids.remove(uuid) && uuids.isEmpty()) {
+                    uuidsByKey.remove(key);
+                }
+            }
+            default -> {
+                // OP_ENTITY: only registers the entity
+            }
+        }
+    }
+
+    private static byte[] record(byte op, String key, UUID uuid) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 4 + keyBytes.length + 16)
+                .put(op)
+                .putInt(keyBytes.length)
+                .put(keyBytes)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -23,6 +23,10 @@ public interface TeaRepositoryManagerFactory {
 
     /**
      * Returns a default instance of TeaRepositoryManagerFactory.
+     * <p>
+     *     The default instance selects among the {@link TeaStorageBackend}s available through
+     *     {@link java.util.ServiceLoader}.
+     * </p>
      *
      * @return a default instance of TeaRepositoryManagerFactory
      */
@@ -33,7 +37,9 @@ public interface TeaRepositoryManagerFactory {
     /**
      * Creates a new instance of TeaRepositoryManager.
      *
+     * @param repository the repository configuration
      * @return a new TeaRepositoryManager instance
+     * @throws IllegalArgumentException if the backend of the repository is not available
      */
     TeaRepositoryManager newInstance(TeaRepository repository) throws IllegalArgumentException;
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.spi;
+
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
+
+/**
+ * A storage backend for TEA objects.
+ * <p>
+ *     Backends are discovered with {@link java.util.ServiceLoader} or, in a Sisu container, as named components. The
+ *     {@link TeaRepositoryManagerFactory} selects the backend whose name matches {@link TeaRepository#getBackend()}.
+ * </p>
+ */
+public interface TeaStorageBackend {
+
+    /**
+     * Returns the name of this backend.
+     *
+     * @return the name used to select this backend in a {@link TeaRepository}
+     */
+    String getName();
+
+    /**
+     * Creates a new instance of TeaRepositoryManager that stores its objects in this backend.
+     *
+     * @param repository the repository configuration
+     * @return a new TeaRepositoryManager instance
+     * @throws IllegalArgumentException if the repository cannot be opened by this backend
+     */
+    TeaRepositoryManager newInstance(TeaRepository repository) throws IllegalArgumentException;
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import eu.copernik.tea.CacheStatistics;
+import eu.copernik.tea.model.ArtifactChecksum;
+import eu.copernik.tea.model.ArtifactChecksumType;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DefaultChecksumServiceTest {
+
+    private static final Set<ArtifactChecksumType> JDK_TYPES =
+            EnumSet.range(ArtifactChecksumType.MD5, ArtifactChecksumType.SHA3_512);
+
+    @TempDir
+    private Path tempDir;
+
+    private static List<ArtifactChecksum> expectedChecksums(byte[] content) throws Exception {
+        List<ArtifactChecksum> checksums = new ArrayList<>();
+        for (ArtifactChecksumType type : JDK_TYPES) {
+            byte[] digest = MessageDigest.getInstance(type.getValue()).digest(content);
+            checksums.add(
+                    new ArtifactChecksum().algType(type).algValue(HexFormat.of().formatHex(digest)));
+        }
+        return checksums;
+    }
+
+    @Test
+    void computeChecksums_knownValues() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("abc.txt"), "abc");
+        try (DefaultChecksumService service = new DefaultChecksumService(1, 0)) {
+            assertThat(service.computeChecksums(
+                            file, EnumSet.of(ArtifactChecksumType.SHA_256, ArtifactChecksumType.MD5)))
+                    .containsExactly(
+                            new ArtifactChecksum()
+                                    .algType(ArtifactChecksumType.MD5)
+                                    .algValue("900150983cd24fb0d6963f7d28e17f72"),
+                            new ArtifactChecksum()
+                                    .algType(ArtifactChecksumType.SHA_256)
+                                    .algValue("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+        }
+    }
+
+    @Test
+    void algorithmName_matchesSecurityProviders() {
+        for (ArtifactChecksumType type : JDK_TYPES) {
+            assertThat(DefaultChecksumService.algorithmName(type)).isEqualTo(type.getValue());
+        }
+        // Names used by Bouncy Castle
+        assertThat(DefaultChecksumService.algorithmName(ArtifactChecksumType.BLAKE2B_256))
+                .isEqualToIgnoringCase("BLAKE2B-256");
+        assertThat(DefaultChecksumService.algorithmName(ArtifactChecksumType.BLAKE3))
+                .isEqualTo("BLAKE3-256");
+    }
+
+    @Test
+    void computeChecksums_mapsLargeFilesInChunks() throws Exception {
+        // Not a multiple of the chunk size
+        byte[] content = new byte[(3 << 20) + 12345];
+        new Random(42).nextBytes(content);
+        Path file = Files.write(tempDir.resolve("large.bin"), content);
+        try (DefaultChecksumService service = new DefaultChecksumService(1, 0, 1 << 20)) {
+            assertThat(service.computeChecksums(file, JDK_TYPES)).containsExactlyElementsOf(expectedChecksums(content));
+        }
+    }
+
+    @Test
+    void computeChecksums_processesFilesConcurrently() throws Exception {
+        Map<Path, List<ArtifactChecksum>> expected = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            byte[] content = new byte[random.nextInt(200_000)];
+            random.nextBytes(content);
+            expected.put(Files.write(tempDir.resolve("file-" + i + ".bin"), content), expectedChecksums(content));
+        }
+        try (DefaultChecksumService service = new DefaultChecksumService(4, 0)) {
+            assertThat(service.computeChecksums(expected.keySet(), JDK_TYPES)).containsExactlyEntriesOf(expected);
+            List<Path> files = new ArrayList<>(expected.keySet());
+            files.add(tempDir.resolve("missing.bin"));
+            assertThatThrownBy(() -> service.computeChecksums(files, JDK_TYPES))
+                    .isInstanceOf(NoSuchFileException.class);
+        }
+    }
+
+    @Test
+    void computeChecksums_cachesUntilFileIsModified() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("cached.txt"), "abc");
+        try (DefaultChecksumService service = new DefaultChecksumService(1, 10)) {
+            Set<ArtifactChecksumType> sha256 = EnumSet.of(ArtifactChecksumType.SHA_256);
+            List<ArtifactChecksum> first = service.computeChecksums(file, sha256);
+            assertThat(service.computeChecksums(file, sha256)).isEqualTo(first);
+            assertThat(service.getCacheStatistics()).isEqualTo(new CacheStatistics(1, 1, 1));
+
+            Files.writeString(file, "abd");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+            assertThat(service.computeChecksums(file, sha256)).isNotEqualTo(first);
+            assertThat(service.getCacheStatistics()).isEqualTo(new CacheStatistics(1, 2, 1));
+        }
+    }
+
+    @Test
+    void computeChecksums_rejectsUnsupportedAlgorithms() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("abc.txt"), "abc");
+        assertThat(DefaultChecksumService.getSupportedTypes()).containsAll(JDK_TYPES);
+        try (DefaultChecksumService service = new DefaultChecksumService(1, 0)) {
+            for (ArtifactChecksumType type :
+                    EnumSet.complementOf(EnumSet.copyOf(DefaultChecksumService.getSupportedTypes()))) {
+                assertThatThrownBy(() -> service.computeChecksums(file, EnumSet.of(type)))
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessageContaining(type.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.MavenRepositoryImporter;
+import eu.copernik.tea.MavenRepositoryImporter.Layout;
+import eu.copernik.tea.MavenRepositoryImporter.Result;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.CollectionUpdateReasonType;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DefaultMavenRepositoryImporterTest {
+
+    private static final Instant MODIFIED = Instant.parse("2025-01-02T03:04:05Z");
+
+    @TempDir
+    private Path tempDir;
+
+    private Path mavenRepository;
+
+    private DefaultTeaRepositoryManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mavenRepository = Files.createDirectory(tempDir.resolve("maven"));
+        manager = DefaultTeaRepositoryManager.open(new TeaRepository(tempDir.resolve("tea")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    void importRepository_pomFiles() throws Exception {
+        createPom("org/example/lib-a/1.0/lib-a-1.0.pom");
+        createPom("org/example/lib-a/1.1/lib-a-1.1.pom");
+        // Artifact whose folder contains another artifact of a longer group ID
+        createPom("org/example/lib-b/2.0/lib-b-2.0.pom");
+        createPom("org/example/lib-b/nested/3.0/nested-3.0.pom");
+        createPom("org/example/lib-b/2.1/lib-b-2.1.pom");
+        // Timestamped snapshots
+        createPom("com/acme/tool/1.0-SNAPSHOT/tool-1.0-20250101.120000-1.pom");
+        createPom("com/acme/tool/1.0-SNAPSHOT/tool-1.0-20250102.120000-2.pom");
+        // Ignored files
+        createPom("com/acme/tool/1.0/tool-1.0.jar");
+        createPom("com/acme/tool/1.0/other-1.0.pom");
+        createPom(".cache/org/example/cached/1.0/cached-1.0.pom");
+
+        MavenRepositoryImporter importer = new DefaultMavenRepositoryImporter(manager, 3, 1);
+        assertThat(importer.importRepository(mavenRepository, Layout.POM_FILES)).isEqualTo(new Result(4, 6, 6, 0, 0));
+
+        Component component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/lib-b"));
+        assertThat(component.getName()).isEqualTo("lib-b");
+        Release release = manager.getOrCreateRelease(component, "2.1");
+        assertThat(release.getReleaseDate()).isEqualTo(MODIFIED.atOffset(ZoneOffset.UTC));
+        assertThat(release.getIdentifiers())
+                .containsExactly(
+                        new Identifier().idType(IdentifierType.PURL).idValue("pkg:maven/org.example/lib-b@2.1"));
+        Collection collection = manager.getLatestCollection(release);
+        assertThat(collection).isNotNull();
+        assertThat(collection.getVersion()).isEqualTo(1);
+        assertThat(collection.getUpdateReason().getType()).isEqualTo(CollectionUpdateReasonType.INITIAL_RELEASE);
+        assertThat(manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example.lib-b/nested"))
+                        .getName())
+                .isEqualTo("nested");
+        assertThat(manager.getOrCreateRelease(
+                                manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/com.acme/tool")),
+                                "1.0-SNAPSHOT")
+                        .getReleaseDate())
+                .isNotNull();
+        // Aggregates were written at the end of the import
+        assertThat(tempDir.resolve("tea/component/" + component.getUuid() + "/releases.json"))
+                .isRegularFile();
+        assertThat(tempDir.resolve("tea/release/" + release.getUuid() + "/collections.json"))
+                .isRegularFile();
+
+        // A second import only skips existing versions
+        createPom("org/example/lib-a/1.2/lib-a-1.2.pom");
+        assertThat(importer.importRepository(mavenRepository, Layout.POM_FILES)).isEqualTo(new Result(0, 1, 1, 6, 0));
+    }
+
+    @Test
+    void importRepository_metadata() throws Exception {
+        createMetadata("org/example/lib-a/maven-metadata.xml", "org.example", "lib-a", "20250102030405", "1.0", "1.1");
+        // Local repositories contain the metadata of each remote repository
+        createMetadata("org/example/lib-a/maven-metadata-local.xml", "org.example", "lib-a", null, "1.1", "1.2");
+        // The release date of the versions present in the repository is known
+        createPom("org/example/lib-a/1.0/lib-a-1.0.pom");
+        // Only the latest version has an exact release date, the other ones were released before
+        createMetadata("org/example/lib-c/maven-metadata.xml", "org.example", "lib-c", "20250203040506", "2.0", "2.1");
+        // Group metadata
+        Files.writeString(
+                mavenRepository.resolve("org/example/maven-metadata.xml"),
+                "<metadata><plugins><plugin><prefix>a</prefix></plugin></plugins></metadata>");
+        // Corrupted metadata
+        Path corrupted = Files.createDirectories(mavenRepository.resolve("org/example/lib-b"))
+                .resolve("maven-metadata.xml");
+        Files.writeString(corrupted, "<metadata><groupId>org.example");
+
+        MavenRepositoryImporter importer = new DefaultMavenRepositoryImporter(manager, 2, 10);
+        assertThat(importer.importRepository(mavenRepository, Layout.METADATA)).isEqualTo(new Result(2, 5, 5, 0, 1));
+
+        Component component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/lib-a"));
+        assertThat(manager.getOrCreateRelease(component, "1.0").getReleaseDate())
+                .isEqualTo(MODIFIED.atOffset(ZoneOffset.UTC));
+        assertThat(manager.getOrCreateRelease(component, "1.1").getReleaseDate())
+                .isEqualTo(OffsetDateTime.of(2025, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC));
+        assertThat(manager.getOrCreateRelease(component, "1.2").getReleaseDate())
+                .isEqualTo(MODIFIED.atOffset(ZoneOffset.UTC));
+        Component other = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/lib-c"));
+        assertThat(manager.getOrCreateRelease(other, "2.0").getReleaseDate())
+                .isEqualTo(OffsetDateTime.of(2025, 2, 3, 4, 5, 6, 0, ZoneOffset.UTC));
+        assertThat(manager.getOrCreateRelease(other, "2.1").getReleaseDate())
+                .isEqualTo(OffsetDateTime.of(2025, 2, 3, 4, 5, 6, 0, ZoneOffset.UTC));
+    }
+
+    private void createPom(String path) throws IOException {
+        Path file = mavenRepository.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "<project/>");
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+    }
+
+    private void createMetadata(String path, String groupId, String artifactId, String lastUpdated, String... versions)
+            throws IOException {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>");
+        xml.append("<groupId>").append(groupId).append("</groupId>");
+        xml.append("<artifactId>").append(artifactId).append("</artifactId>");
+        xml.append("<versioning><versions>");
+        for (String version : versions) {
+            xml.append("<version>").append(version).append("</version>");
+        }
+        xml.append("</versions>");
+        if (lastUpdated != null) {
+            xml.append("<lastUpdated>").append(lastUpdated).append("</lastUpdated>");
+        }
+        xml.append("</versioning></metadata>");
+        Path file = mavenRepository.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, xml);
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.packageurl.PackageURL;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.copernik.tea.TeaMirror;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DefaultTeaMirrorTest {
+
+    private static final Pattern QUERY_SEPARATOR = Pattern.compile("&");
+
+    @TempDir
+    private Path tempDir;
+
+    private Path sourcePath;
+
+    private HttpServer server;
+
+    /**
+     * The status and path of each request received by the stand-in server.
+     */
+    private final Queue<String> requests = new ConcurrentLinkedQueue<>();
+
+    private final Set<String> failingPaths = ConcurrentHashMap.newKeySet();
+
+    private DefaultTeaRepositoryManager source;
+
+    private Component component;
+
+    private Release release;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sourcePath = tempDir.resolve("source");
+        source = DefaultTeaRepositoryManager.open(
+                TeaRepository.builder(sourcePath).productsPageSize(2).build());
+        component = source.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+        source.saveComponent(component.name("Foo"));
+        Component other = source.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/bar"));
+        source.saveComponent(other.name("Bar"));
+        for (int i = 0; i < 3; i++) {
+            source.saveProduct(new Product()
+                    .uuid(UUID.randomUUID())
+                    .name("Product " + i)
+                    .addComponentsItem(component.getUuid())
+                    .addComponentsItem(other.getUuid()));
+        }
+        OffsetDateTime now = OffsetDateTime.now(UTC).truncatedTo(ChronoUnit.MILLIS);
+        release = source.getOrCreateRelease(component, "1.0.0").releaseDate(now);
+        source.saveRelease(component, release);
+        Release otherRelease = source.getOrCreateRelease(component, "2.0.0").releaseDate(now.plusDays(1));
+        source.saveRelease(component, otherRelease);
+        for (int version = 1; version <= 3; version++) {
+            source.saveCollection(new Collection().uuid(release.getUuid()).version(version));
+        }
+        source.saveCollection(new Collection().uuid(otherRelease.getUuid()).version(1));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/tea/v1", this::serve);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        source.close();
+    }
+
+    /**
+     * A minimal TEA server, which maps each path to a file of the source repository.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath().substring("/tea/v1".length());
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                Map<String, String> parameters = new HashMap<>();
+                for (String parameter : QUERY_SEPARATOR.split(query, -1)) {
+                    parameters.put(
+                            parameter.substring(0, parameter.indexOf('=')),
+                            parameter.substring(parameter.indexOf('=') + 1));
+                }
+                path += "/page-"
+                        + Long.parseLong(parameters.get("pageOffset")) / Long.parseLong(parameters.get("pageSize"));
+            }
+            Path file = sourcePath.resolve(path.substring(1) + ".json");
+            int status;
+            byte[] content = new byte[0];
+            if (failingPaths.contains(path)) {
+                status = 500;
+            } else if (!Files.isRegularFile(file)) {
+                status = 404;
+            } else {
+                content = Files.readAllBytes(file);
+                String etag = '"' + HexFormat.of().toHexDigits(Arrays.hashCode(content)) + '"';
+                exchange.getResponseHeaders().set("ETag", etag);
+                status = etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) ? 304 : 200;
+            }
+            requests.add(status + " " + path);
+            if (status == 200) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, content.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(content);
+                }
+            } else {
+                exchange.sendResponseHeaders(status, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private URI baseUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/tea/v1");
+    }
+
+    @Test
+    void mirror_copiesRepositoryAndSendsConditionalRequests() throws Exception {
+        Path targetPath = tempDir.resolve("target");
+        Path stateFile = targetPath.resolve(".index/mirror.tea");
+        try (DefaultTeaRepositoryManager target = DefaultTeaRepositoryManager.open(new TeaRepository(targetPath))) {
+            TeaMirror.Result result =
+                    TeaMirror.newInstance(target, stateFile, 4).mirror(baseUri());
+            assertThat(result).isEqualTo(new TeaMirror.Result(10, 0, 3, 2, 2, 4, 0));
+            assertThat(target.getLatestCollection(release)).isEqualTo(source.getLatestCollection(release));
+            assertThat(target.getCollection(release, 1)).isEqualTo(source.getCollection(release, 1));
+            for (String file : new String[] {
+                "component/" + component.getUuid() + "/releases.json",
+                "release/" + release.getUuid() + "/collections.json"
+            }) {
+                assertThat(targetPath.resolve(file)).as(file).hasSameBinaryContentAs(sourcePath.resolve(file));
+            }
+
+            // Nothing changed: only the missing list of releases is fetched again
+            requests.clear();
+            result = TeaMirror.newInstance(target, stateFile, 4).mirror(baseUri());
+            assertThat(result).isEqualTo(new TeaMirror.Result(8, 7, 0, 0, 0, 0, 2));
+            assertThat(requests).allMatch(request -> request.startsWith("304 ") || request.startsWith("404 "));
+
+            // Only the new collection version is fetched
+            source.saveCollection(new Collection().uuid(release.getUuid()).version(4));
+            requests.clear();
+            result = TeaMirror.newInstance(target, stateFile, 4).mirror(baseUri());
+            assertThat(result.collections()).isEqualTo(1);
+            assertThat(requests)
+                    .filteredOn(request -> request.startsWith("200 "))
+                    .containsExactly("200 /release/" + release.getUuid() + "/collection");
+            assertThat(target.getLatestCollection(release)).isEqualTo(source.getLatestCollection(release));
+        }
+    }
+
+    @Test
+    void mirror_resumesInterruptedRun() throws Exception {
+        Path targetPath = tempDir.resolve("target");
+        Path stateFile = targetPath.resolve(".index/mirror.tea");
+        String failingPath = "/release/" + release.getUuid() + "/collection/2";
+        failingPaths.add(failingPath);
+        try (DefaultTeaRepositoryManager target = DefaultTeaRepositoryManager.open(new TeaRepository(targetPath))) {
+            TeaMirror mirror = TeaMirror.newInstance(target, stateFile, 4);
+            assertThatThrownBy(() -> mirror.mirror(baseUri()))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining(failingPath);
+
+            failingPaths.clear();
+            mirror.mirror(baseUri());
+            for (int version = 1; version <= 3; version++) {
+                assertThat(target.getCollection(release, version)).isEqualTo(source.getCollection(release, version));
+            }
+            assertThat(targetPath.resolve("release/" + release.getUuid() + "/collections.json"))
+                    .hasSameBinaryContentAs(sourcePath.resolve("release/" + release.getUuid() + "/collections.json"));
+        }
+    }
+}
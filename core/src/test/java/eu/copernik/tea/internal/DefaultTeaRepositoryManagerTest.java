@@ -17,24 +17,61 @@ package eu.copernik.tea.internal;
 
 import static java.time.ZoneOffset.UTC;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.packageurl.PackageURL;
+import eu.copernik.tea.CacheStatistics;
+import eu.copernik.tea.Change;
+import eu.copernik.tea.DirectoryLayout;
+import eu.copernik.tea.OperationStatistics;
+import eu.copernik.tea.OutputProfile;
+import eu.copernik.tea.RepositoryOperation;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.ValidationPolicy;
+import eu.copernik.tea.model.Artifact;
+import eu.copernik.tea.model.ArtifactType;
 import eu.copernik.tea.model.Collection;
 import eu.copernik.tea.model.Component;
 import eu.copernik.tea.model.Identifier;
 import eu.copernik.tea.model.IdentifierType;
 import eu.copernik.tea.model.Product;
 import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 class DefaultTeaRepositoryManagerTest {
@@ -42,11 +79,31 @@ class DefaultTeaRepositoryManagerTest {
     @TempDir
     private Path tempDir;
 
+    private final List<DefaultTeaRepositoryManager> managers = new ArrayList<>();
+
     private DefaultTeaRepositoryManager manager;
 
     @BeforeEach
     void setUp() {
-        manager = new DefaultTeaRepositoryManager(tempDir);
+        manager = newManager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        managers.forEach(DefaultTeaRepositoryManager::close);
+    }
+
+    /**
+     * Creates another manager for the same repository, which does not share any state with {@link #manager}.
+     */
+    private DefaultTeaRepositoryManager newManager() {
+        return newManager(new TeaRepository(tempDir));
+    }
+
+    private DefaultTeaRepositoryManager newManager(TeaRepository repository) {
+        DefaultTeaRepositoryManager newManager = DefaultTeaRepositoryManager.open(repository);
+        managers.add(newManager);
+        return newManager;
     }
 
     @Test
@@ -79,6 +136,487 @@ class DefaultTeaRepositoryManagerTest {
         assertThat(products.getResults()).isNotEmpty().containsExactly(product);
     }
 
+    @Test
+    void saveProduct_writesProductPages() throws Exception {
+        DefaultTeaRepositoryManager pagingManager =
+                newManager(TeaRepository.builder(tempDir).productsPageSize(2).build());
+        List<Product> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Product product = new Product().uuid(UUID.randomUUID()).name("Product " + i);
+            pagingManager.saveProduct(product);
+            expected.add(product);
+        }
+        // Saved by another manager: the product list must be reloaded
+        Product other = new Product().uuid(UUID.randomUUID()).name("Other Product");
+        newManager(TeaRepository.builder(tempDir).productsPageSize(2).build()).saveProduct(other);
+        expected.add(other);
+        Product renamed = expected.get(0).name("Product 0, renamed");
+        pagingManager.saveProduct(renamed);
+        expected.sort(Comparator.comparing(Product::getUuid));
+
+        for (int page = 0; page < 3; page++) {
+            ProductPaginationDetails products = manager.loadModelOrThrow(
+                    ProductPaginationDetails.class, tempDir.resolve("products/page-" + page + ".json"));
+            assertThat(products.getPageStartIndex()).isEqualTo(2L * page);
+            assertThat(products.getPageSize()).isEqualTo(2L);
+            assertThat(products.getTotalResults()).isEqualTo(5L);
+            assertThat(products.getResults())
+                    .containsExactlyElementsOf(expected.subList(2 * page, Math.min(2 * page + 2, 5)));
+        }
+        assertThat(tempDir.resolve("products/page-3.json")).doesNotExist();
+        assertThat(tempDir.resolve("products.json")).hasSameTextualContentAs(tempDir.resolve("products/page-0.json"));
+    }
+
+    @Test
+    void saveProduct_rewritesOnlyThePageOfAnUpdatedProduct() throws Exception {
+        DefaultTeaRepositoryManager pagingManager =
+                newManager(TeaRepository.builder(tempDir).productsPageSize(1).build());
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Product product = new Product().uuid(UUID.randomUUID()).name("Product " + i);
+            pagingManager.saveProduct(product);
+            products.add(product);
+        }
+        FileTime old = FileTime.fromMillis(0);
+        List<Path> pages;
+        try (Stream<Path> files = Files.list(tempDir.resolve("products"))) {
+            pages = files.toList();
+        }
+        for (Path page : pages) {
+            Files.setLastModifiedTime(page, old);
+        }
+
+        products.sort(Comparator.comparing(Product::getUuid));
+        pagingManager.saveProduct(products.get(10).name("Product renamed"));
+
+        List<Path> rewritten = new ArrayList<>();
+        for (Path page : pages) {
+            if (!Files.getLastModifiedTime(page).equals(old)) {
+                rewritten.add(page);
+            }
+        }
+        assertThat(pages).hasSize(20);
+        assertThat(rewritten).containsExactly(tempDir.resolve("products/page-10.json"));
+    }
+
+    @Test
+    void saveProduct_rewritesThePagesFromTheInsertionPoint() throws Exception {
+        DefaultTeaRepositoryManager pagingManager =
+                newManager(TeaRepository.builder(tempDir).productsPageSize(1).build());
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Product product = new Product().uuid(UUID.randomUUID()).name("Product " + i);
+            pagingManager.saveProduct(product);
+            uuids.add(product.getUuid());
+        }
+        FileTime old = FileTime.fromMillis(0);
+        List<Path> pages;
+        try (Stream<Path> files = Files.list(tempDir.resolve("products"))) {
+            pages = files.toList();
+        }
+        for (Path page : pages) {
+            Files.setLastModifiedTime(page, old);
+        }
+
+        Product added = new Product().uuid(UUID.randomUUID()).name("Product added");
+        pagingManager.saveProduct(added);
+        uuids.add(added.getUuid());
+        uuids.sort(Comparator.naturalOrder());
+
+        Set<Path> expected = new HashSet<>();
+        // The first page carries the total number of results
+        expected.add(tempDir.resolve("products/page-0.json"));
+        for (int page = uuids.indexOf(added.getUuid()); page <= 20; page++) {
+            expected.add(tempDir.resolve("products/page-" + page + ".json"));
+        }
+        Set<Path> rewritten = new HashSet<>();
+        try (Stream<Path> files = Files.list(tempDir.resolve("products"))) {
+            for (Path page : files.toList()) {
+                if (!Files.getLastModifiedTime(page).equals(old)) {
+                    rewritten.add(page);
+                }
+            }
+        }
+        assertThat(rewritten).isEqualTo(expected);
+        ProductPaginationDetails last = manager.loadModelOrThrow(
+                ProductPaginationDetails.class, tempDir.resolve("products/page-20.json"));
+        assertThat(last.getTotalResults()).isEqualTo(21L);
+        assertThat(last.getResults()).extracting(Product::getUuid).containsExactly(uuids.get(20));
+    }
+
+    @Test
+    void open_repaginatesProductsWrittenWithAnotherPageSize() throws Exception {
+        DefaultTeaRepositoryManager pagingManager =
+                newManager(TeaRepository.builder(tempDir).productsPageSize(2).build());
+        for (int i = 0; i < 5; i++) {
+            pagingManager.saveProduct(new Product().uuid(UUID.randomUUID()).name("Product " + i));
+        }
+        assertThat(tempDir.resolve("products/page-2.json")).isRegularFile();
+
+        newManager(TeaRepository.builder(tempDir).productsPageSize(3).build());
+        assertThat(tempDir.resolve(TeaRepository.PRODUCTS_PAGE_SIZE_FILE)).hasContent("3");
+        ProductPaginationDetails first =
+                manager.loadModelOrThrow(ProductPaginationDetails.class, tempDir.resolve("products/page-0.json"));
+        assertThat(first.getPageSize()).isEqualTo(3L);
+        assertThat(first.getResults()).hasSize(3);
+        assertThat(tempDir.resolve("products/page-2.json")).doesNotExist();
+
+        // Managers opened earlier follow the recorded page size
+        pagingManager.saveProduct(new Product().uuid(UUID.randomUUID()).name("Product 5"));
+        ProductPaginationDetails second =
+                manager.loadModelOrThrow(ProductPaginationDetails.class, tempDir.resolve("products/page-1.json"));
+        assertThat(second.getPageStartIndex()).isEqualTo(3L);
+        assertThat(second.getTotalResults()).isEqualTo(6L);
+        assertThat(second.getResults()).hasSize(3);
+        assertThat(tempDir.resolve("products/page-2.json")).doesNotExist();
+    }
+
+    @Test
+    void findProductsByIdentifier_usesIndexAndWritesResults() throws Exception {
+        Identifier shared = new Identifier().idType(IdentifierType.CPE).idValue("cpe:2.3:a:apache:log4j");
+        Identifier purl = new Identifier().idType(IdentifierType.PURL).idValue("pkg:maven/org.apache/log4j-api");
+        Product first = new Product().uuid(UUID.randomUUID()).name("First").addIdentifiersItem(shared);
+        Product second = new Product()
+                .uuid(UUID.randomUUID())
+                .name("Second")
+                .addIdentifiersItem(shared)
+                .addIdentifiersItem(purl);
+        manager.saveProduct(first);
+        manager.saveProduct(second);
+
+        List<Product> expected = new ArrayList<>(List.of(first, second));
+        expected.sort(Comparator.comparing(Product::getUuid));
+        assertThat(manager.findProductsByIdentifier(IdentifierType.CPE, shared.getIdValue()))
+                .containsExactlyElementsOf(expected);
+        assertThat(manager.findProductsByIdentifier(IdentifierType.PURL, purl.getIdValue()))
+                .containsExactly(second);
+        assertThat(manager.findProductsByIdentifier(IdentifierType.TEI, shared.getIdValue()))
+                .isEmpty();
+        // The index is persistent
+        assertThat(newManager().findProductsByIdentifier(IdentifierType.PURL, purl.getIdValue()))
+                .containsExactly(second);
+
+        // Removing an identifier updates the index and the precomputed results
+        second.setIdentifiers(new ArrayList<>(List.of(shared)));
+        manager.saveProduct(second);
+        assertThat(manager.findProductsByIdentifier(IdentifierType.PURL, purl.getIdValue()))
+                .isEmpty();
+        Path resultFile = tempDir.resolve("products/identifier/PURL/"
+                + HexFormat.of()
+                        .formatHex(MessageDigest.getInstance("SHA-256")
+                                .digest(purl.getIdValue().getBytes(StandardCharsets.UTF_8)))
+                + ".json");
+        ProductPaginationDetails results = manager.loadModelOrThrow(ProductPaginationDetails.class, resultFile);
+        assertThat(results.getTotalResults()).isZero();
+        assertThat(results.getResults()).isEmpty();
+
+        // Modified behind our back
+        Product modified =
+                manager.loadModelOrThrow(Product.class, tempDir.resolve("product/" + first.getUuid() + ".json"));
+        modified.setIdentifiers(new ArrayList<>(List.of(purl)));
+        Files.delete(tempDir.resolve("product/" + first.getUuid() + ".json"));
+        newManager().saveProduct(modified);
+        assertThat(manager.findProductsByIdentifier(IdentifierType.CPE, shared.getIdValue()))
+                .containsExactly(second);
+    }
+
+    @Test
+    void concurrentSaves_doNotLoseUpdates() throws Exception {
+        PackageURL purl = new PackageURL("pkg:maven/org.example/foo");
+        int threads = 8;
+        int releasesPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Component>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                // Each thread uses its own manager, as separate Maven modules would
+                DefaultTeaRepositoryManager threadManager = newManager();
+                futures.add(executor.submit(() -> {
+                    Component component = threadManager.getOrCreateComponentByPurl(purl);
+                    threadManager.saveComponent(component.name("Foo"));
+                    for (int j = 0; j < releasesPerThread; j++) {
+                        Release release = threadManager
+                                .getOrCreateRelease(component, thread + "." + j)
+                                .releaseDate(OffsetDateTime.now(UTC));
+                        threadManager.saveRelease(component, release);
+                    }
+                    return component;
+                }));
+            }
+            Set<UUID> componentUuids = new HashSet<>();
+            for (Future<Component> future : futures) {
+                componentUuids.add(future.get().getUuid());
+            }
+            assertThat(componentUuids).hasSize(1);
+        } finally {
+            executor.shutdown();
+        }
+
+        Component component = manager.getOrCreateComponentByPurl(purl);
+        Path releasesFile = tempDir.resolve("component/" + component.getUuid() + "/releases.json");
+        List<Release> releases = manager.loadModelList(new TypeReference<>() {}, releasesFile);
+        assertThat(releases).hasSize(threads * releasesPerThread);
+        try (Stream<Path> files = Files.list(tempDir.resolve("component/" + component.getUuid() + "/release"))) {
+            assertThat(files).allMatch(file -> file.toString().endsWith(".json"));
+        }
+    }
+
+    @Test
+    void unsavedLookups_releaseTheirReservations() throws Exception {
+        PackageURL purl = new PackageURL("pkg:maven/org.example/unsaved");
+        try (DefaultTeaRepositoryManager other = DefaultTeaRepositoryManager.open(new TeaRepository(tempDir))) {
+            UUID reserved;
+            try (TeaRepositoryBatch batch = other.beginBatch()) {
+                reserved = other.getOrCreateComponentByPurl(purl).getUuid();
+                // Shared with the other managers until the batch ends
+                assertThat(manager.getOrCreateComponentByPurl(purl).getUuid()).isEqualTo(reserved);
+                batch.commit();
+            }
+            UUID afterBatch = manager.getOrCreateComponentByPurl(purl).getUuid();
+            assertThat(afterBatch).isNotEqualTo(reserved);
+            assertThat(other.getOrCreateComponentByPurl(purl).getUuid()).isEqualTo(afterBatch);
+            manager.close();
+            assertThat(other.getOrCreateComponentByPurl(purl).getUuid()).isNotEqualTo(afterBatch);
+        }
+    }
+
+    @Test
+    void savedLookups_removeTheirReservations() throws Exception {
+        Component component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/saved"));
+        Path reservationFolder = tempDir.resolve(".index/reservations");
+        // Visible to the managers of other processes
+        try (Stream<Path> reservations = Files.list(reservationFolder)) {
+            assertThat(reservations).hasSize(1);
+        }
+        manager.saveComponent(component.name("Saved"));
+        try (Stream<Path> reservations = Files.list(reservationFolder)) {
+            assertThat(reservations).isEmpty();
+        }
+    }
+
+    @Test
+    void journal_materializesMutationsInBackground() throws Exception {
+        DefaultTeaRepositoryManager journaled =
+                newManager(TeaRepository.builder(tempDir).journal(true).build());
+        // Applying a product with identifiers must not wait for the journal, which would never finish
+        Identifier identifier = new Identifier().idType(IdentifierType.CPE).idValue("cpe:2.3:a:example:foo");
+        Product product = new Product().uuid(UUID.randomUUID()).name("Foo").addIdentifiersItem(identifier);
+        journaled.saveProduct(product);
+        Component component = journaled.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+        journaled.saveComponent(component.name("Foo"));
+        Release release = journaled.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+        journaled.saveRelease(component, release);
+        try (TeaRepositoryBatch batch = journaled.beginBatch()) {
+            for (int version = 1; version <= 3; version++) {
+                journaled.saveCollection(
+                        new Collection().uuid(release.getUuid()).version(version));
+            }
+            batch.commit();
+        }
+        // Reads see the journaled mutations
+        assertThat(journaled.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo")))
+                .isEqualTo(component);
+        assertThat(journaled.getOrCreateRelease(component, "1.0.0")).isEqualTo(release);
+        assertThat(journaled.findProductsByIdentifier(IdentifierType.CPE, "cpe:2.3:a:example:foo"))
+                .containsExactly(product);
+        Collection latest = journaled.getLatestCollection(release);
+        assertThat(latest).isNotNull();
+        assertThat(latest.getVersion()).isEqualTo(3);
+        journaled.close();
+
+        Path releasesFile = tempDir.resolve("component/" + component.getUuid() + "/releases.json");
+        assertThat(manager.loadModelList(new TypeReference<List<Release>>() {}, releasesFile))
+                .containsExactly(release);
+        Path collectionsFile = tempDir.resolve("release/" + release.getUuid() + "/collections.json");
+        assertThat(manager.loadModelList(new TypeReference<List<Collection>>() {}, collectionsFile))
+                .hasSize(3);
+        assertThat(manager.loadModelOrThrow(ProductPaginationDetails.class, tempDir.resolve("products.json"))
+                        .getResults())
+                .containsExactly(product);
+        try (Stream<Path> files = Files.list(tempDir.resolve(MutationJournal.JOURNAL_FOLDER))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void directoryLayout_shardedAppliesToNewRepositories() throws Exception {
+        Path basePath = tempDir.resolve("sharded");
+        DefaultTeaRepositoryManager shardedManager = newManager(TeaRepository.builder(basePath)
+                .directoryLayout(DirectoryLayout.SHARDED)
+                .build());
+        Component component = shardedManager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+        shardedManager.saveComponent(component.name("Foo"));
+        Release release = shardedManager.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+        shardedManager.saveRelease(component, release);
+        shardedManager.saveCollection(new Collection().uuid(release.getUuid()).version(1));
+
+        String componentUuid = component.getUuid().toString();
+        Path componentFolder = basePath.resolve("component/" + componentUuid.substring(0, 2) + "/"
+                + componentUuid.substring(2, 4) + "/" + componentUuid);
+        assertThat(componentFolder.resolveSibling(componentUuid + ".json")).isRegularFile();
+        assertThat(componentFolder.resolve("releases.json")).isRegularFile();
+        assertThat(componentFolder.resolve("release/1.0.0.json")).isRegularFile();
+        assertThat(basePath.resolve(
+                        DirectoryLayout.SHARDED.entryPath("release", release.getUuid()) + "/collection.json"))
+                .isRegularFile();
+
+        // Existing repositories keep their layout
+        Component found = newManager(new TeaRepository(basePath))
+                .getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+        assertThat(found).isEqualTo(component);
+    }
+
+    @Test
+    void getChanges_publishesPagedFeed() throws Exception {
+        Product product = new Product().uuid(UUID.randomUUID()).name("Product");
+        manager.saveProduct(product);
+        Component component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+        manager.saveComponent(component.name("Foo"));
+        Release release = manager.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+        manager.saveRelease(component, release);
+        manager.saveCollection(new Collection().uuid(release.getUuid()).version(1));
+        // Unchanged objects are not recorded
+        manager.saveProduct(product);
+
+        assertThat(manager.getChanges(0, 10))
+                .extracting(Change::sequence, Change::type, Change::uuid, Change::componentUuid, Change::version)
+                .containsExactly(
+                        tuple(1L, Change.Type.PRODUCT, product.getUuid(), null, null),
+                        tuple(2L, Change.Type.COMPONENT, component.getUuid(), null, null),
+                        tuple(3L, Change.Type.RELEASE, release.getUuid(), component.getUuid(), "1.0.0"),
+                        tuple(4L, Change.Type.COLLECTION, release.getUuid(), null, "1"));
+
+        int productCount = 2 * ChangeFeed.PAGE_SIZE;
+        try (TeaRepositoryBatch batch = manager.beginBatch()) {
+            for (int i = 0; i < productCount; i++) {
+                manager.saveProduct(new Product().uuid(UUID.randomUUID()).name("Product " + i));
+            }
+            batch.commit();
+        }
+        // Changes are visible to other managers and processes
+        DefaultTeaRepositoryManager reader = newManager();
+        assertThat(reader.getChanges(4, Integer.MAX_VALUE))
+                .hasSize(productCount)
+                .extracting(Change::sequence)
+                .startsWith(5L)
+                .endsWith(4L + productCount);
+        assertThat(reader.getChanges(ChangeFeed.PAGE_SIZE - 1, 2))
+                .extracting(Change::sequence)
+                .containsExactly((long) ChangeFeed.PAGE_SIZE, ChangeFeed.PAGE_SIZE + 1L);
+        assertThat(reader.getChanges(4 + productCount, 10)).isEmpty();
+        assertThat(tempDir.resolve(ChangeFeed.INDEX_FILE)).isRegularFile();
+        for (int page = 0; page < 3; page++) {
+            assertThat(tempDir.resolve(ChangeFeed.PAGES_FOLDER + "/page-" + page + ".json"))
+                    .isRegularFile();
+        }
+    }
+
+    @Test
+    void getChanges_recoversChangesOfUnfinishedBatches() throws Exception {
+        Product product = new Product().uuid(UUID.randomUUID()).name("Test Product");
+        // The manager stops before the batch is closed
+        manager.beginBatch();
+        manager.saveProduct(product);
+        manager.close();
+        try (Stream<Path> files = Files.list(tempDir.resolve(ChangeFeed.PENDING_FOLDER))) {
+            assertThat(files).hasSize(1);
+        }
+
+        DefaultTeaRepositoryManager recovered = newManager();
+        assertThat(recovered.getChanges(0, 10))
+                .extracting(Change::sequence, Change::type, Change::uuid)
+                .containsExactly(tuple(1L, Change.Type.PRODUCT, product.getUuid()));
+        try (Stream<Path> files = Files.list(tempDir.resolve(ChangeFeed.PENDING_FOLDER))) {
+            assertThat(files).isEmpty();
+        }
+        // Published changes are not kept
+        recovered.saveProduct(product.name("Renamed Product"));
+        recovered.close();
+        try (Stream<Path> files = Files.list(tempDir.resolve(ChangeFeed.PENDING_FOLDER))) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(newManager().getChanges(0, 10)).hasSize(2);
+    }
+
+    @Test
+    void contentAddressedArtifacts_storesEachArtifactOnce() throws Exception {
+        Path basePath = tempDir.resolve("content-addressed");
+        DefaultTeaRepositoryManager storeManager = newManager(
+                TeaRepository.builder(basePath).contentAddressedArtifacts(true).build());
+        Component component = storeManager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+        storeManager.saveComponent(component.name("Foo"));
+        Release release = storeManager.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+        storeManager.saveRelease(component, release);
+        Artifact bom = new Artifact().uuid(UUID.randomUUID()).name("SBOM").type(ArtifactType.BOM);
+        Artifact vex = new Artifact().uuid(UUID.randomUUID()).name("VEX").type(ArtifactType.VULNERABILITIES);
+        Collection first = new Collection().uuid(release.getUuid()).version(1).addArtifactsItem(bom);
+        Collection second = new Collection()
+                .uuid(release.getUuid())
+                .version(2)
+                .addArtifactsItem(bom)
+                .addArtifactsItem(vex);
+        storeManager.saveCollection(first);
+        storeManager.saveCollection(second);
+
+        try (Stream<Path> files = Files.walk(basePath.resolve(ArtifactStore.ARTIFACT_FOLDER))) {
+            assertThat(files.filter(Files::isRegularFile)).hasSize(2);
+        }
+        // Only the collection versions are stored, without the aggregates
+        Path storedFolder = basePath.resolve(ArtifactStore.RELEASE_FOLDER + "/" + release.getUuid());
+        try (Stream<Path> files = Files.walk(storedFolder)) {
+            assertThat(files.filter(Files::isRegularFile).map(storedFolder::relativize))
+                    .containsExactlyInAnyOrder(Path.of("collection/1.json"), Path.of("collection/2.json"));
+        }
+        assertThat(basePath.resolve("release")).doesNotExist();
+        assertThat(storeManager.getCollection(release, 1)).isEqualTo(first);
+        assertThat(storeManager.getLatestCollection(release)).isEqualTo(second);
+        // Reopening keeps the storage of the repository
+        assertThat(newManager(new TeaRepository(basePath)).getCollection(release, 2))
+                .isEqualTo(second);
+
+        // The published layout contains the expanded collections
+        Path exportPath = tempDir.resolve("export");
+        storeManager.exportTo(newManager(new TeaRepository(exportPath)));
+        Path collectionsFile = exportPath.resolve("release/" + release.getUuid() + "/collections.json");
+        assertThat(manager.loadModelList(new TypeReference<List<Collection>>() {}, collectionsFile))
+                .containsExactly(first, second);
+    }
+
+    @Test
+    void outputProfile_publicationWritesCompactAndCompressedFiles() throws Exception {
+        DefaultTeaRepositoryManager publishingManager = newManager(TeaRepository.builder(tempDir)
+                .outputProfile(OutputProfile.PUBLICATION)
+                .build());
+        Product product = new Product().uuid(UUID.randomUUID()).name("Published Product");
+        publishingManager.saveProduct(product);
+
+        Path productFile = tempDir.resolve("product/" + product.getUuid() + ".json");
+        for (Path file :
+                List.of(productFile, tempDir.resolve("products.json"), tempDir.resolve("products/page-0.json"))) {
+            byte[] content = Files.readAllBytes(file);
+            assertThat(new String(content, StandardCharsets.UTF_8)).doesNotContain("\n");
+            try (InputStream input =
+                    new GZIPInputStream(Files.newInputStream(file.resolveSibling(file.getFileName() + ".gz")))) {
+                assertThat(input.readAllBytes()).isEqualTo(content);
+            }
+        }
+        // Unchanged content is neither rewritten nor recompressed
+        Path compressedFile = tempDir.resolve("product/" + product.getUuid() + ".json.gz");
+        FileTime past = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(productFile, past);
+        Files.setLastModifiedTime(compressedFile, past);
+        publishingManager.saveProduct(product);
+        assertThat(Files.getLastModifiedTime(productFile)).isEqualTo(past);
+        assertThat(Files.getLastModifiedTime(compressedFile)).isEqualTo(past);
+
+        // Switching back to pretty-printing removes the stale compressed copies
+        manager.saveProduct(product.name("Renamed Product"));
+        assertThat(Files.readString(productFile)).contains("\n");
+        assertThat(compressedFile).doesNotExist();
+        assertThat(manager.getProduct(product.getUuid())).isEqualTo(product);
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void getOrCreateComponentByPurl_createsAndFindsComponent(boolean hasOtherComponents) throws Exception {
@@ -106,6 +644,76 @@ class DefaultTeaRepositoryManagerTest {
         assertThat(found.getUuid()).isEqualTo(created.getUuid());
     }
 
+    @Test
+    void findComponentByIdentifier_usesPersistentIndex() throws Exception {
+        PackageURL purl = new PackageURL("pkg:maven/org.example/indexed@1.0.0");
+        Component component = manager.getOrCreateComponentByPurl(purl);
+        component.name("Indexed Component");
+        component.addIdentifiersItem(new Identifier().idType(IdentifierType.CPE).idValue("cpe:/a:example:indexed"));
+        manager.saveComponent(component);
+        assertThat(tempDir.resolve(".index/component-identifiers.idx")).isRegularFile();
+
+        // A new manager loads the index from disk
+        DefaultTeaRepositoryManager other = newManager();
+        assertThat(other.findComponentByIdentifier(IdentifierType.CPE, "cpe:/a:example:indexed"))
+                .hasValue(component);
+        assertThat(other.findComponentByPurl(purl)).hasValue(component);
+
+        // Removed identifiers are no longer found
+        component.setIdentifiers(
+                new ArrayList<>(List.of(component.getIdentifiers().get(0))));
+        other.saveComponent(component);
+        assertThat(other.findComponentByIdentifier(IdentifierType.CPE, "cpe:/a:example:indexed"))
+                .isEmpty();
+        assertThat(newManager().findComponentByIdentifier(IdentifierType.CPE, "cpe:/a:example:indexed"))
+                .isEmpty();
+    }
+
+    @Test
+    void getOrCreateComponentByPurl_seesComponentsIndexedByOtherManagers() throws Exception {
+        // Load the index of both managers
+        DefaultTeaRepositoryManager other = newManager();
+        assertThat(manager.findComponentByPurl(new PackageURL("pkg:maven/org.example/missing@1.0.0")))
+                .isEmpty();
+        assertThat(other.findComponentByPurl(new PackageURL("pkg:maven/org.example/missing@1.0.0")))
+                .isEmpty();
+
+        PackageURL purl = new PackageURL("pkg:maven/org.example/shared@1.0.0");
+        Component component = other.getOrCreateComponentByPurl(purl);
+        component.name("Shared Component");
+        other.saveComponent(component);
+
+        assertThat(manager.getOrCreateComponentByPurl(purl)).isEqualTo(component);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void findComponentByPurl_rebuildsStaleIndex(boolean deleteIndex) throws Exception {
+        PackageURL purl = new PackageURL("pkg:maven/org.example/stale@1.0.0");
+        Component component = manager.getOrCreateComponentByPurl(purl);
+        component.name("Stale Component");
+        manager.saveComponent(component);
+
+        Path indexFile = tempDir.resolve(".index/component-identifiers.idx");
+        if (deleteIndex) {
+            Files.delete(indexFile);
+        } else {
+            // Add a component without updating the index
+            Component other = new Component()
+                    .uuid(UUID.randomUUID())
+                    .name("Unindexed Component")
+                    .addIdentifiersItem(new Identifier()
+                            .idType(IdentifierType.PURL)
+                            .idValue("pkg:maven/org.example/unindexed@1.0.0"));
+            Files.copy(indexFile, tempDir.resolve("index.bak"));
+            manager.saveComponent(other);
+            Files.move(tempDir.resolve("index.bak"), indexFile, StandardCopyOption.REPLACE_EXISTING);
+            assertThat(newManager().findComponentByPurl(new PackageURL("pkg:maven/org.example/unindexed@1.0.0")))
+                    .hasValue(other);
+        }
+        assertThat(newManager().findComponentByPurl(purl)).hasValue(component);
+    }
+
     @Test
     void findComponentByPurl_returnsNullForNonExistentPurl() throws Exception {
         PackageURL purl = new PackageURL("pkg:maven/org.example/nonexistent@1.0.0");
@@ -138,6 +746,30 @@ class DefaultTeaRepositoryManagerTest {
         }
     }
 
+    @Test
+    void getOrCreateRelease_usesReleaseIndex() throws Exception {
+        PackageURL purl = new PackageURL("pkg:maven/org.example/versions");
+        Component component = manager.getOrCreateComponentByPurl(purl);
+        component.name("Test Component Versions");
+        manager.saveComponent(component);
+        for (int i = 0; i < 5; i++) {
+            Release release = manager.getOrCreateRelease(component, "1." + i);
+            release.releaseDate(OffsetDateTime.now(UTC));
+            manager.saveRelease(component, release);
+        }
+        Path indexFile = tempDir.resolve(".index/component-releases/" + component.getUuid() + ".idx");
+        assertThat(indexFile).isRegularFile();
+
+        // A new manager loads the index from disk
+        Release release = newManager().getOrCreateRelease(component, "1.3");
+        assertThat(release).isEqualTo(manager.getOrCreateRelease(component, "1.3"));
+
+        // A missing index is rebuilt
+        Files.delete(indexFile);
+        assertThat(newManager().getOrCreateRelease(component, "1.3")).isEqualTo(release);
+        assertThat(indexFile).isRegularFile();
+    }
+
     @Test
     void saveRelease_savesAndRetrievesRelease() throws Exception {
         PackageURL purl = new PackageURL("pkg:maven/org.example/baz");
@@ -159,6 +791,28 @@ class DefaultTeaRepositoryManagerTest {
         assertThat(releases).isNotEmpty().containsExactly(release);
     }
 
+    @Test
+    void saveRelease_keepsReleasesWithTheSameDate() throws Exception {
+        PackageURL purl = new PackageURL("pkg:maven/org.example/same-date");
+        Component component = manager.getOrCreateComponentByPurl(purl);
+        component.name("Test Component Same Date");
+        manager.saveComponent(component);
+
+        OffsetDateTime releaseDate = OffsetDateTime.now(UTC);
+        Release first = new Release().uuid(UUID.randomUUID()).version("1.0.0").releaseDate(releaseDate);
+        Release second = new Release().uuid(UUID.randomUUID()).version("1.0.1").releaseDate(releaseDate);
+        Release third = new Release().uuid(UUID.randomUUID()).version("0.9.0").releaseDate(releaseDate.minusDays(1));
+        manager.saveRelease(component, first);
+        manager.saveRelease(component, second);
+        manager.saveRelease(component, third);
+        first.preRelease(true);
+        manager.saveRelease(component, first);
+
+        Path releasesFile = tempDir.resolve("component/" + component.getUuid() + "/releases.json");
+        List<Release> releases = manager.loadModelList(new TypeReference<>() {}, releasesFile);
+        assertThat(releases).hasSize(3).startsWith(third).contains(first, second);
+    }
+
     @Test
     void getLatestCollectionByRelease_returnsLatest() throws Exception {
         PackageURL purl = new PackageURL("pkg:maven/org.example/qux");
@@ -214,4 +868,157 @@ class DefaultTeaRepositoryManagerTest {
             assertThat(collections).isNotEmpty().contains(collection);
         }
     }
+
+    @Test
+    @SuppressWarnings("try")
+    void beginBatch_defersAggregatesUntilClosed() throws Exception {
+        Path productsFile = tempDir.resolve("products.json");
+        Product product = new Product().uuid(UUID.randomUUID()).name("Batch Product");
+        Component component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/batch"));
+        component.name("Batch Component");
+        Release release = manager.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+        Path releasesFile = tempDir.resolve("component/" + component.getUuid() + "/releases.json");
+        Path collectionsFile = tempDir.resolve("release/" + release.getUuid() + "/collections.json");
+
+        try (TeaRepositoryBatch batch = manager.beginBatch()) {
+            try (TeaRepositoryBatch nested = manager.beginBatch()) {
+                manager.saveProduct(product);
+                manager.saveComponent(component);
+                manager.saveRelease(component, release);
+                for (int version = 1; version <= 3; version++) {
+                    manager.saveCollection(
+                            new Collection().uuid(release.getUuid()).version(version));
+                }
+            }
+            // Only model files are written
+            assertThat(manager.getProduct(product.getUuid())).isEqualTo(product);
+            assertThat(manager.getOrCreateRelease(component, "1.0.0")).isEqualTo(release);
+            assertThat(productsFile).doesNotExist();
+            assertThat(releasesFile).doesNotExist();
+            assertThat(collectionsFile).doesNotExist();
+        }
+
+        ProductPaginationDetails products = manager.loadModelOrThrow(ProductPaginationDetails.class, productsFile);
+        assertThat(products.getResults()).containsExactly(product);
+        List<Release> releases = manager.loadModelList(new TypeReference<>() {}, releasesFile);
+        assertThat(releases).containsExactly(release);
+        List<Collection> collections = manager.loadModelList(new TypeReference<>() {}, collectionsFile);
+        assertThat(collections).extracting(Collection::getVersion).containsExactly(1, 2, 3);
+        Collection latest = manager.getLatestCollection(release);
+        assertThat(latest).isNotNull().extracting(Collection::getVersion).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ValidationPolicy.class)
+    void validationPolicy_isApplied(ValidationPolicy policy) throws Exception {
+        DefaultTeaRepositoryManager policyManager = newManager(
+                TeaRepository.builder(tempDir).validationPolicy(policy).build());
+        // The name of a product is required
+        Product invalid = new Product().uuid(UUID.randomUUID());
+        if (policy.validateOnWrite()) {
+            assertThatThrownBy(() -> policyManager.saveProduct(invalid)).isInstanceOf(IOException.class);
+        } else {
+            policyManager.saveProduct(invalid);
+        }
+
+        Path productFile = tempDir.resolve("product/" + invalid.getUuid() + ".json");
+        Files.createDirectories(productFile.getParent());
+        Files.writeString(productFile, "{\"uuid\": \"" + invalid.getUuid() + "\"}");
+        if (policy.validateOnRead()) {
+            assertThatThrownBy(() -> policyManager.getProduct(invalid.getUuid()))
+                    .isInstanceOf(IOException.class);
+        } else {
+            assertThat(policyManager.getProduct(invalid.getUuid())).isEqualTo(invalid);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void findAllModels_isDeterministic(int parallelism) throws Exception {
+        DefaultTeaRepositoryManager parallelManager = newManager(
+                TeaRepository.builder(tempDir).parallelism(parallelism).build());
+        Component component = parallelManager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/par"));
+        component.name("Parallel Component");
+        parallelManager.saveComponent(component);
+        Release release = parallelManager.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+        parallelManager.saveRelease(component, release);
+        try (TeaRepositoryBatch batch = parallelManager.beginBatch()) {
+            for (int version = 1; version <= 20; version++) {
+                parallelManager.saveCollection(
+                        new Collection().uuid(release.getUuid()).version(version));
+            }
+            batch.commit();
+            // Sorted by file name
+            assertThat(parallelManager.findAllCollections(release.getUuid()))
+                    .extracting(Collection::getVersion)
+                    .containsExactly(1, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 2, 20, 3, 4, 5, 6, 7, 8, 9);
+        }
+
+        // Errors are propagated as IOException
+        Files.writeString(tempDir.resolve("release/" + release.getUuid() + "/collection/21.json"), "{");
+        assertThatThrownBy(() -> parallelManager.findAllCollections(release.getUuid()))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void cache_servesUnmodifiedFilesAndDetectsModifications() throws Exception {
+        DefaultTeaRepositoryManager cachingManager =
+                newManager(TeaRepository.builder(tempDir).cacheSize(10).build());
+        Product product = new Product().uuid(UUID.randomUUID()).name("Cached Product");
+        cachingManager.saveProduct(product);
+
+        Product first = cachingManager.getProduct(product.getUuid());
+        assertThat(first).isEqualTo(product);
+        // Modifications to returned instances do not affect the cache
+        first.setName("Modified");
+        assertThat(cachingManager.getProduct(product.getUuid())).isEqualTo(product);
+        assertThat(cachingManager.getCacheStatistics()).isEqualTo(new CacheStatistics(1, 1, 1));
+
+        // Modification by another manager
+        product.name("Product modified by another process with a longer name");
+        newManager().saveProduct(product);
+        assertThat(cachingManager.getProduct(product.getUuid())).isEqualTo(product);
+        assertThat(cachingManager.getCacheStatistics()).isEqualTo(new CacheStatistics(1, 2, 1));
+    }
+
+    @Test
+    void operationStatistics_countsOperationsAndEmitsEvents() throws Exception {
+        Product product = new Product().uuid(UUID.randomUUID()).name("Measured Product");
+        Path productFile = tempDir.resolve("product/" + product.getUuid() + ".json");
+        Path recordingFile = tempDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("eu.copernik.tea.Save").withThreshold(Duration.ZERO);
+            recording.start();
+            manager.saveProduct(product);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        assertThat(manager.getProduct(product.getUuid())).isEqualTo(product);
+
+        Map<RepositoryOperation, OperationStatistics> statistics = manager.getOperationStatistics();
+        assertThat(statistics).containsOnlyKeys(RepositoryOperation.values());
+        for (RepositoryOperation operation : List.of(
+                RepositoryOperation.LOAD,
+                RepositoryOperation.SAVE,
+                RepositoryOperation.FIND_ALL,
+                RepositoryOperation.UPDATE_AGGREGATE)) {
+            OperationStatistics operationStatistics = statistics.get(operation);
+            assertThat(operationStatistics.count()).as(operation.name()).isPositive();
+            assertThat(operationStatistics.latencyHistogram().stream()
+                            .mapToLong(Long::longValue)
+                            .sum())
+                    .as(operation.name())
+                    .isEqualTo(operationStatistics.count());
+        }
+        assertThat(statistics.get(RepositoryOperation.LOAD).bytes()).isGreaterThanOrEqualTo(Files.size(productFile));
+        assertThat(statistics.get(RepositoryOperation.SAVE).bytes()).isGreaterThanOrEqualTo(Files.size(productFile));
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        assertThat(events)
+                .filteredOn(event -> event.getEventType().getName().equals("eu.copernik.tea.Save"))
+                .anySatisfy(event -> {
+                    assertThat(event.getString("path")).isEqualTo(productFile.toString());
+                    assertThat(event.getLong("bytes")).isEqualTo(Files.size(productFile));
+                });
+    }
 }
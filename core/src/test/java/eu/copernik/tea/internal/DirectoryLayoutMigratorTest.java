@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.DirectoryLayout;
+import eu.copernik.tea.OutputProfile;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryLayoutMigratorTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void migrate_movesEntriesBothWays() throws Exception {
+        List<Component> components = new ArrayList<>();
+        List<Release> releases = new ArrayList<>();
+        TeaRepository repository = TeaRepository.builder(tempDir)
+                .outputProfile(OutputProfile.PUBLICATION)
+                .build();
+        try (DefaultTeaRepositoryManager manager = DefaultTeaRepositoryManager.open(repository)) {
+            for (int i = 0; i < 20; i++) {
+                Component component =
+                        manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/lib-" + i));
+                manager.saveComponent(component.name("lib-" + i));
+                Release release = manager.getOrCreateRelease(component, "1.0").releaseDate(OffsetDateTime.now(UTC));
+                manager.saveRelease(component, release);
+                manager.saveCollection(new Collection().uuid(release.getUuid()).version(1));
+                components.add(component);
+                releases.add(release);
+            }
+        }
+
+        DirectoryLayout.SHARDED.migrate(tempDir, 4);
+        assertThat(DirectoryLayout.detect(tempDir)).isEqualTo(DirectoryLayout.SHARDED);
+        for (int i = 0; i < components.size(); i++) {
+            String componentPath = DirectoryLayout.SHARDED.entryPath(
+                    "component", components.get(i).getUuid());
+            assertThat(tempDir.resolve(componentPath + ".json")).isRegularFile();
+            assertThat(tempDir.resolve(componentPath + ".json.gz")).isRegularFile();
+            assertThat(tempDir.resolve(componentPath + "/releases.json")).isRegularFile();
+            String releasePath =
+                    DirectoryLayout.SHARDED.entryPath("release", releases.get(i).getUuid());
+            assertThat(tempDir.resolve(releasePath + "/collection.json")).isRegularFile();
+            assertThat(tempDir.resolve("component/" + components.get(i).getUuid() + ".json"))
+                    .doesNotExist();
+        }
+        assertRepositoryContent(components, releases);
+
+        DirectoryLayout.FLAT.migrate(tempDir, 4);
+        assertThat(DirectoryLayout.detect(tempDir)).isEqualTo(DirectoryLayout.FLAT);
+        assertThat(tempDir.resolve(DirectoryLayout.LAYOUT_FILE)).doesNotExist();
+        for (Component component : components) {
+            assertThat(tempDir.resolve("component/" + component.getUuid() + ".json"))
+                    .isRegularFile();
+        }
+        // The shards were removed
+        try (Stream<Path> children = Files.list(tempDir.resolve("release"))) {
+            assertThat(children)
+                    .allMatch(child -> child.getFileName().toString().length() == 36);
+        }
+        assertRepositoryContent(components, releases);
+    }
+
+    @Test
+    void migrate_refusesRepositoryInUse() throws Exception {
+        DefaultTeaRepositoryManager manager = DefaultTeaRepositoryManager.open(new TeaRepository(tempDir));
+        try {
+            assertThatThrownBy(() -> DirectoryLayout.SHARDED.migrate(tempDir, 1))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("in use");
+        } finally {
+            manager.close();
+        }
+        // Left behind by a crashed manager
+        Path journalFolder = Files.createDirectories(tempDir.resolve(MutationJournal.JOURNAL_FOLDER));
+        Files.createFile(journalFolder.resolve(UUID.randomUUID() + ".wal"));
+        assertThatThrownBy(() -> DirectoryLayout.SHARDED.migrate(tempDir, 1))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("unapplied journals");
+        assertThat(DirectoryLayout.detect(tempDir)).isEqualTo(DirectoryLayout.FLAT);
+    }
+
+    private void assertRepositoryContent(List<Component> components, List<Release> releases) throws Exception {
+        // The configured layout only applies to new repositories
+        TeaRepository repository = TeaRepository.builder(tempDir)
+                .directoryLayout(DirectoryLayout.FLAT)
+                .build();
+        try (DefaultTeaRepositoryManager manager = DefaultTeaRepositoryManager.open(repository)) {
+            for (int i = 0; i < components.size(); i++) {
+                Component component =
+                        manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/lib-" + i));
+                assertThat(component).isEqualTo(components.get(i));
+                Release release = manager.getOrCreateRelease(component, "1.0");
+                assertThat(release.getUuid()).isEqualTo(releases.get(i).getUuid());
+                assertThat(manager.getLatestCollection(release)).isNotNull();
+            }
+        }
+    }
+}
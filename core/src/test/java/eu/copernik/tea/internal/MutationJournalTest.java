@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MutationJournalTest {
+
+    private static final byte TYPE = 'T';
+
+    @TempDir
+    private Path tempDir;
+
+    private static final class RecordingReplayer implements MutationJournal.Replayer {
+
+        private final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger syncs = new AtomicInteger();
+
+        @Override
+        public void apply(byte type, byte[] payload) {
+            assertThat(type).isEqualTo(TYPE);
+            applied.add(new String(payload, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void sync() {
+            syncs.incrementAndGet();
+        }
+    }
+
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir.resolve(MutationJournal.JOURNAL_FOLDER))) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void record_appliesConcurrentMutationsInOrder() throws Exception {
+        RecordingReplayer replayer = new RecordingReplayer();
+        MutationJournal journal = MutationJournal.open(tempDir, replayer);
+        int threads = 8;
+        int mutationsPerThread = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < mutationsPerThread; j++) {
+                        journal.record(TYPE, payload(thread + ":" + j));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        journal.awaitApplied();
+
+        assertThat(replayer.applied).hasSize(threads * mutationsPerThread);
+        for (int i = 0; i < threads; i++) {
+            String prefix = i + ":";
+            List<String> expected = new ArrayList<>();
+            for (int j = 0; j < mutationsPerThread; j++) {
+                expected.add(prefix + j);
+            }
+            assertThat(replayer.applied.stream().filter(value -> value.startsWith(prefix)))
+                    .containsExactlyElementsOf(expected);
+        }
+        journal.close();
+        assertThat(replayer.syncs).hasPositiveValue();
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void open_replaysJournalsLeftByCrashedManagers() throws Exception {
+        CountDownLatch recorded = new CountDownLatch(1);
+        MutationJournal.Replayer failing = new MutationJournal.Replayer() {
+            @Override
+            public void apply(byte type, byte[] payload) throws IOException {
+                try {
+                    recorded.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Simulated crash");
+            }
+
+            @Override
+            public void sync() {}
+        };
+        MutationJournal journal = MutationJournal.open(tempDir, failing);
+        for (int i = 0; i < 5; i++) {
+            journal.record(TYPE, payload("mutation-" + i));
+        }
+        recorded.countDown();
+        assertThatThrownBy(journal::close).isInstanceOf(IOException.class).hasRootCauseMessage("Simulated crash");
+        List<Path> files = journalFiles();
+        assertThat(files).hasSize(1);
+        // A partial record left by an interrupted append
+        Files.write(files.get(0), new byte[] {TYPE, 0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        RecordingReplayer replayer = new RecordingReplayer();
+        MutationJournal recovered = MutationJournal.open(tempDir, replayer);
+        assertThat(replayer.applied)
+                .containsExactly("mutation-0", "mutation-1", "mutation-2", "mutation-3", "mutation-4");
+        assertThat(replayer.syncs).hasValue(1);
+        recovered.close();
+        assertThat(journalFiles()).isEmpty();
+    }
+}
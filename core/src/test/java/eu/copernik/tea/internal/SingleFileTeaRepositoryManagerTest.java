@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.Change;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SingleFileTeaRepositoryManagerTest {
+
+    private static final String PRODUCT_TEI = "urn:tei:uuid:example.com:" + UUID.randomUUID();
+
+    @TempDir
+    private Path tempDir;
+
+    private TeaRepositoryManager newManager() {
+        return TeaRepositoryManagerFactory.getInstance()
+                .newInstance(TeaRepository.builder(tempDir)
+                        .backend(TeaRepository.SINGLE_FILE_BACKEND)
+                        .build());
+    }
+
+    @Test
+    void factory_selectsBackendByName() throws Exception {
+        try (TeaRepositoryManager manager = newManager()) {
+            assertThat(manager).isInstanceOf(SingleFileTeaRepositoryManager.class);
+        }
+        assertThat(tempDir.resolve(SingleFileTeaRepositoryManager.STORE_FILE)).isRegularFile();
+        try (TeaRepositoryManager manager =
+                TeaRepositoryManagerFactory.getInstance().newInstance(new TeaRepository(tempDir))) {
+            assertThat(manager).isInstanceOf(DefaultTeaRepositoryManager.class);
+        }
+        TeaRepository unknown =
+                TeaRepository.builder(tempDir).backend("unknown").build();
+        assertThatThrownBy(() -> TeaRepositoryManagerFactory.getInstance().newInstance(unknown))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown");
+    }
+
+    @Test
+    void builder_rejectsUnsupportedOptions() {
+        TeaRepository.Builder builder = TeaRepository.builder(tempDir).backend(TeaRepository.SINGLE_FILE_BACKEND);
+        assertThatThrownBy(() -> builder.journal(true).build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("journal");
+        assertThatThrownBy(() -> builder.journal(false).contentAddressedArtifacts(true).build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("content-addressed");
+    }
+
+    @Test
+    void saveAndReopen_preservesAllObjects() throws Exception {
+        Fixture fixture;
+        try (TeaRepositoryManager manager = newManager()) {
+            fixture = Fixture.create(manager);
+        }
+        try (TeaRepositoryManager manager = newManager()) {
+            fixture.assertFoundIn(manager);
+        }
+    }
+
+    @Test
+    void open_replaysRecordsAfterCheckpointAndDropsPartialRecord() throws Exception {
+        Path storeFile = tempDir.resolve(SingleFileTeaRepositoryManager.STORE_FILE);
+        Fixture fixture;
+        try (TeaRepositoryManager manager = newManager()) {
+            fixture = Fixture.create(manager);
+        }
+        // Appended after the last checkpoint, before a crash
+        Product renamed = fixture.product.name("Renamed Product");
+        byte[] crashedContent;
+        try (AppendOnlyStore store = AppendOnlyStore.open(storeFile)) {
+            store.put("product/" + renamed.getUuid(), new ObjectMapper().writeValueAsBytes(renamed));
+            crashedContent = Files.readAllBytes(storeFile);
+        }
+        Files.write(storeFile, crashedContent);
+        long size = Files.size(storeFile);
+        // Simulate an interrupted append
+        try (FileChannel channel = FileChannel.open(storeFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'D', 0, 0, 0, 42}));
+        }
+
+        try (TeaRepositoryManager manager = newManager()) {
+            assertThat(Files.size(storeFile)).isEqualTo(size);
+            assertThat(manager.getProduct(renamed.getUuid())).isEqualTo(renamed);
+            fixture.assertFoundIn(manager);
+        }
+    }
+
+    @Test
+    void exportTo_writesDirectoryLayout() throws Exception {
+        Path exportDir = tempDir.resolve("export");
+        Fixture fixture;
+        try (TeaRepositoryManager manager = newManager();
+                DefaultTeaRepositoryManager target = DefaultTeaRepositoryManager.open(new TeaRepository(exportDir))) {
+            fixture = Fixture.create(manager);
+            manager.exportTo(target);
+        }
+        assertThat(exportDir.resolve("products.json")).isRegularFile();
+        assertThat(exportDir.resolve("component/" + fixture.component.getUuid() + "/releases.json"))
+                .isRegularFile();
+        assertThat(exportDir.resolve("release/" + fixture.release.getUuid() + "/collections.json"))
+                .isRegularFile();
+        try (DefaultTeaRepositoryManager target = DefaultTeaRepositoryManager.open(new TeaRepository(exportDir))) {
+            fixture.assertFoundIn(target);
+        }
+    }
+
+    @Test
+    void exportTo_savesCollectionsInVersionOrder() throws Exception {
+        Path exportDir = tempDir.resolve("export");
+        try (TeaRepositoryManager manager = newManager();
+                DefaultTeaRepositoryManager target = DefaultTeaRepositoryManager.open(new TeaRepository(exportDir))) {
+            Fixture fixture = Fixture.create(manager);
+            for (int version = 3; version <= 10; version++) {
+                manager.saveCollection(
+                        new Collection().uuid(fixture.release.getUuid()).version(version));
+            }
+            manager.exportTo(target);
+            assertThat(target.getChanges(0, 100))
+                    .filteredOn(change -> change.type() == Change.Type.COLLECTION)
+                    .extracting(Change::version)
+                    .containsExactly("1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+        }
+    }
+
+    @Test
+    void getChanges_recordsModificationsInOrder() throws Exception {
+        Fixture fixture;
+        try (TeaRepositoryManager manager = newManager()) {
+            fixture = Fixture.create(manager);
+            // Unchanged objects are not recorded
+            manager.saveProduct(fixture.product);
+        }
+        try (TeaRepositoryManager manager = newManager()) {
+            assertThat(manager.getChanges(0, 10))
+                    .extracting(Change::sequence, Change::type)
+                    .containsExactly(
+                            tuple(1L, Change.Type.PRODUCT),
+                            tuple(2L, Change.Type.COMPONENT),
+                            tuple(3L, Change.Type.RELEASE),
+                            tuple(4L, Change.Type.COLLECTION),
+                            tuple(5L, Change.Type.COLLECTION));
+            assertThat(manager.getChanges(2, 1))
+                    .containsExactly(manager.getChanges(0, 3).get(2))
+                    .allSatisfy(change -> {
+                        assertThat(change.uuid()).isEqualTo(fixture.release.getUuid());
+                        assertThat(change.componentUuid()).isEqualTo(fixture.component.getUuid());
+                        assertThat(change.version()).isEqualTo("1.0.0");
+                    });
+            assertThat(manager.getChanges(5, 10)).isEmpty();
+        }
+    }
+
+    @Test
+    void open_rejectsStoreInUse() throws Exception {
+        try (TeaRepositoryManager manager = newManager()) {
+            manager.saveProduct(new Product().uuid(UUID.randomUUID()).name("Product"));
+            assertThatThrownBy(this::newManager)
+                    .hasCauseInstanceOf(IOException.class)
+                    .hasStackTraceContaining("already in use");
+        }
+        // The lock is released when the store is closed
+        try (TeaRepositoryManager manager = newManager()) {
+            assertThat(manager.getChanges(0, 10)).hasSize(1);
+        }
+    }
+
+    @Test
+    void open_rejectsForeignFile() throws Exception {
+        Files.writeString(tempDir.resolve(SingleFileTeaRepositoryManager.STORE_FILE), "Not a TEA store");
+        assertThatThrownBy(this::newManager).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    void checkpoint_compactsOverwrittenRecords() throws Exception {
+        Path storeFile = tempDir.resolve(SingleFileTeaRepositoryManager.STORE_FILE);
+        byte[] value = new byte[64 * 1024];
+        try (AppendOnlyStore store = AppendOnlyStore.open(storeFile)) {
+            store.put("kept", new byte[] {42});
+            for (int i = 0; i < 64; i++) {
+                value[0] = (byte) i;
+                store.put("overwritten", value);
+                store.checkpoint();
+            }
+            // The overwritten records are reclaimed once they exceed 1 MiB
+            assertThat(Files.size(storeFile)).isLessThan((1 << 20) + 2L * value.length);
+            assertThat(store.get("overwritten")).isEqualTo(value);
+            // The compacted file is still locked
+            assertThatThrownBy(() -> AppendOnlyStore.open(storeFile)).hasMessageContaining("already in use");
+
+            // Small updates do not append a copy of the whole index each time
+            for (int i = 0; i < 100; i++) {
+                store.put("key-" + i, new byte[] {(byte) i});
+            }
+            store.checkpoint();
+            long size = Files.size(storeFile);
+            store.put("key-0", new byte[] {-1});
+            store.checkpoint();
+            assertThat(Files.size(storeFile) - size).isLessThan(100);
+        }
+        try (AppendOnlyStore store = AppendOnlyStore.open(storeFile)) {
+            assertThat(store.get("kept")).containsExactly(42);
+            assertThat(store.get("overwritten")).isEqualTo(value);
+            assertThat(store.get("key-0")).containsExactly(-1);
+            assertThat(store.keys("key-")).hasSize(100);
+            store.compact();
+            assertThat(store.get("key-99")).containsExactly(99);
+        }
+        try (AppendOnlyStore store = AppendOnlyStore.open(storeFile)) {
+            assertThat(store.keys("")).hasSize(102);
+        }
+        assertThat(tempDir.resolve(SingleFileTeaRepositoryManager.STORE_FILE + ".compact"))
+                .doesNotExist();
+    }
+
+    private record Fixture(Product product, Component component, Release release, Collection collection) {
+
+        static Fixture create(TeaRepositoryManager manager) throws Exception {
+            Product product = new Product()
+                    .uuid(UUID.randomUUID())
+                    .name("Product")
+                    .addIdentifiersItem(
+                            new Identifier().idType(IdentifierType.TEI).idValue(PRODUCT_TEI));
+            manager.saveProduct(product);
+            PackageURL purl = new PackageURL("pkg:maven/org.example/store@1.0.0");
+            Component component = manager.getOrCreateComponentByPurl(purl)
+                    .name("Component")
+                    .addIdentifiersItem(
+                            new Identifier().idType(IdentifierType.CPE).idValue("cpe:/a:example:store"));
+            manager.saveComponent(component);
+            Release release = manager.getOrCreateRelease(component, "1.0.0")
+                    .releaseDate(OffsetDateTime.now(UTC).truncatedTo(ChronoUnit.MILLIS));
+            manager.saveRelease(component, release);
+            Collection collection = null;
+            for (int version = 1; version <= 2; version++) {
+                collection = new Collection().uuid(release.getUuid()).version(version);
+                manager.saveCollection(collection);
+            }
+            return new Fixture(product, component, release, collection);
+        }
+
+        void assertFoundIn(TeaRepositoryManager manager) throws Exception {
+            assertThat(manager.getProduct(product.getUuid())).isNotNull();
+            assertThat(manager.findProductsByIdentifier(IdentifierType.TEI, PRODUCT_TEI))
+                    .extracting(Product::getUuid)
+                    .containsExactly(product.getUuid());
+            PackageURL purl = new PackageURL("pkg:maven/org.example/store@1.0.0");
+            assertThat(manager.getOrCreateComponentByPurl(purl)).isEqualTo(component);
+            assertThat(manager.getOrCreateRelease(component, "1.0.0")).isEqualTo(release);
+            assertThat(manager.getCollection(release, 1)).isNotNull();
+            assertThat(manager.getLatestCollection(release)).isEqualTo(collection);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UuidIndexTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void load_dropsRecordWithInvalidLength() throws Exception {
+        Path indexFile = tempDir.resolve("test.idx");
+        UUID uuid = UUID.randomUUID();
+        UuidIndex.create(indexFile, Map.of(uuid, Set.of("key")));
+        long size = Files.size(indexFile);
+        // A key length larger than the rest of the file
+        byte[] corrupted = ByteBuffer.allocate(21)
+                .put((byte) 'A')
+                .putInt(Integer.MAX_VALUE)
+                .array();
+        Files.write(indexFile, corrupted, StandardOpenOption.APPEND);
+
+        UuidIndex index = UuidIndex.load(indexFile);
+        assertThat(index).isNotNull();
+        assertThat(index.get("key")).containsExactly(uuid);
+        assertThat(Files.size(indexFile)).isEqualTo(size);
+    }
+
+    @Test
+    void load_compactsObsoleteRecords() throws Exception {
+        Path indexFile = tempDir.resolve("test.idx");
+        UUID uuid = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        UuidIndex index = UuidIndex.create(indexFile, Map.of(other, Set.of()));
+        for (int i = 0; i < 1000; i++) {
+            index.put(uuid, Set.of("key-" + i));
+        }
+        long size = Files.size(indexFile);
+
+        UuidIndex loaded = UuidIndex.load(indexFile);
+        assertThat(loaded).isNotNull();
+        assertThat(Files.size(indexFile)).isLessThan(size / 100);
+        assertThat(loaded.get("key-999")).containsExactly(uuid);
+        assertThat(loaded.keys(uuid)).containsExactly("key-999");
+        assertThat(loaded.uuids()).containsExactlyInAnyOrder(uuid, other);
+        // The compacted file is a valid index
+        UuidIndex reloaded = UuidIndex.load(indexFile);
+        assertThat(reloaded).isNotNull();
+        assertThat(reloaded.keys(uuid)).containsExactly("key-999");
+        assertThat(reloaded.uuids()).containsExactlyInAnyOrder(uuid, other);
+    }
+}
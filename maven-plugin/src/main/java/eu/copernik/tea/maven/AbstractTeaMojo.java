@@ -15,14 +15,282 @@
  */
 package eu.copernik.tea.maven;
 
+import eu.copernik.tea.CacheStatistics;
+import eu.copernik.tea.OperationStatistics;
+import eu.copernik.tea.RepositoryOperation;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
 import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
 
+/**
+ * Base class of the mojos that update a TEA repository.
+ * <p>
+ *     The repository manager is opened by {@link #execute()}, which passes it to {@link #execute(TeaRepositoryManager)}
+ *     and logs a summary of the repository operations when the execution ends.
+ * </p>
+ */
 public abstract class AbstractTeaMojo extends AbstractMojo {
 
+    /**
+     * Location of the cache of optional artifacts that are missing, relative to the local repository.
+     */
+    private static final String MISSING_ARTIFACTS_FILE = ".tea-generator/missing-artifacts.txt";
+
+    /**
+     * Location of the random identifier of a TEA repository, relative to the repository.
+     */
+    private static final String REPOSITORY_ID_FILE = ".tea-generator/repository-id";
+
     private final TeaRepositoryManagerFactory teaRepositoryManagerFactory;
+    private final RepositorySystem repositorySystem;
+
+    @Parameter(defaultValue = "${repositorySystemSession}", readonly = true, required = true)
+    private RepositorySystemSession repositorySession;
+
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true, required = true)
+    private List<RemoteRepository> remoteRepositories;
+
+    /**
+     * Maximum number of batches of artifacts resolved concurrently.
+     */
+    @Parameter(property = "tea.resolver.threads", defaultValue = "4")
+    private int resolverThreads;
+
+    /**
+     * Maximum number of artifacts sent to the repository system in a single request.
+     */
+    @Parameter(property = "tea.resolver.batchSize", defaultValue = "32")
+    private int resolverBatchSize;
+
+    /**
+     * Number of hours after which missing SBOMs and signatures are looked up again.
+     */
+    @Parameter(property = "tea.resolver.missingArtifactsExpiry", defaultValue = "24")
+    private long missingArtifactsExpiry;
+
+    /**
+     * File containing the fingerprints of the inputs of the generated TEA objects.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/tea-generator/fingerprints.txt", required = true)
+    private File fingerprintFile;
 
-    protected AbstractTeaMojo(TeaRepositoryManagerFactory teaRepositoryManagerFactory) {
+    /**
+     * If {@code true}, the TEA objects whose inputs did not change since the last execution are skipped.
+     */
+    @Parameter(property = "tea.incremental", defaultValue = "true")
+    private boolean incremental;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true, required = true)
+    private String pluginVersion;
+
+    /**
+     * Location of the TEA repository.
+     */
+    @Parameter(property = "tea.repository", defaultValue = "${project.build.directory}/tea", required = true)
+    private File repositoryDirectory;
+
+    /**
+     * Storage backend of the TEA repository.
+     */
+    @Parameter(property = "tea.repository.backend", defaultValue = TeaRepository.DIRECTORY_BACKEND)
+    private String repositoryBackend;
+
+    protected AbstractTeaMojo(
+            TeaRepositoryManagerFactory teaRepositoryManagerFactory, RepositorySystem repositorySystem) {
         this.teaRepositoryManagerFactory = teaRepositoryManagerFactory;
+        this.repositorySystem = repositorySystem;
+    }
+
+    /**
+     * Opens the TEA repository and runs the mojo.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException, MojoFailureException {
+        TeaRepository repository = TeaRepository.builder(repositoryDirectory.toPath())
+                .backend(repositoryBackend)
+                .build();
+        try (TeaRepositoryManager repositoryManager = teaRepositoryManagerFactory.newInstance(repository)) {
+            try {
+                execute(repositoryManager);
+            } finally {
+                logStatistics(repositoryManager);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new MojoExecutionException("Failed to update TEA repository: " + repositoryDirectory, e);
+        }
+    }
+
+    /**
+     * Updates the TEA repository.
+     *
+     * @param repositoryManager the manager of the TEA repository, which is closed after the execution
+     */
+    protected abstract void execute(TeaRepositoryManager repositoryManager)
+            throws IOException, MojoExecutionException, MojoFailureException;
+
+    /**
+     * Creates a resolver for the dependencies of the current project and their SBOMs.
+     * <p>
+     *     The caller must {@link ArtifactBatchResolver#close() close} the resolver and save its
+     *     {@link MissingArtifactCache}.
+     * </p>
+     */
+    ArtifactBatchResolver newArtifactResolver(MissingArtifactCache missingArtifacts) {
+        return new ArtifactBatchResolver(
+                repositorySystem,
+                repositorySession,
+                remoteRepositories,
+                resolverThreads,
+                resolverBatchSize,
+                missingArtifacts);
+    }
+
+    /**
+     * Loads the cache of missing optional artifacts shared by all the builds using the same local repository.
+     */
+    MissingArtifactCache loadMissingArtifacts() throws IOException {
+        File basedir = repositorySession.getLocalRepository().getBasedir();
+        return MissingArtifactCache.load(
+                basedir.toPath().resolve(MISSING_ARTIFACTS_FILE),
+                Duration.ofHours(missingArtifactsExpiry),
+                Clock.systemUTC());
+    }
+
+    /**
+     * Loads the fingerprints of the inputs of the TEA objects generated by previous executions.
+     * <p>
+     *     Objects whose fingerprint is {@link FingerprintStore#isUpToDate up-to-date} must be skipped without reading
+     *     or writing the TEA repository. After an object is written, its fingerprint must be
+     *     {@link FingerprintStore#update updated} and, at the end of the execution, the store must be
+     *     {@link FingerprintStore#save saved}.
+     * </p>
+     * <p>
+     *     The previous fingerprints are discarded if incremental execution is disabled or if they were recorded for
+     *     another repository: the configuration fingerprint contains the location, the backend and the identifier of
+     *     the repository, which changes if the repository is deleted.
+     * </p>
+     */
+    FingerprintStore loadFingerprints() throws IOException {
+        FingerprintStore.Builder configuration = FingerprintStore.fingerprint()
+                .add("mojo", getClass().getName())
+                .add("pluginVersion", pluginVersion)
+                .add("repository", repositoryDirectory.getAbsolutePath())
+                .add("repositoryBackend", repositoryBackend)
+                .add("repositoryId", getRepositoryId());
+        addConfiguration(configuration);
+        if (!incremental) {
+            // Never matches a stored configuration
+            configuration.add("nonce", UUID.randomUUID());
+        }
+        return FingerprintStore.load(fingerprintFile.toPath(), configuration.build());
+    }
+
+    /**
+     * Returns the random identifier of the TEA repository, creating it if necessary.
+     */
+    private String getRepositoryId() throws IOException {
+        Path idFile = repositoryDirectory.toPath().resolve(REPOSITORY_ID_FILE);
+        if (!Files.exists(idFile)) {
+            Files.createDirectories(Objects.requireNonNull(idFile.getParent()));
+            try {
+                Files.writeString(
+                        idFile, UUID.randomUUID().toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                // Created by a concurrent build
+            }
+        }
+        return Files.readString(idFile, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Adds the parameters of the mojo that influence the generated TEA objects to the configuration fingerprint.
+     *
+     * @param fingerprint the fingerprint of the plugin configuration
+     */
+    protected void addConfiguration(FingerprintStore.Builder fingerprint) {}
+
+    /**
+     * Adds the coordinates and the content of resolved artifacts, e.g., SBOMs, to a fingerprint.
+     *
+     * @param fingerprint a fingerprint of the inputs of a TEA object
+     * @param artifacts a map from requested to resolved artifacts, as returned by {@link ArtifactBatchResolver}
+     */
+    static void addArtifacts(FingerprintStore.Builder fingerprint, Map<Artifact, Artifact> artifacts)
+            throws IOException {
+        for (Map.Entry<Artifact, Artifact> entry : artifacts.entrySet()) {
+            fingerprint.addFile(
+                    entry.getKey().toString(), entry.getValue().getFile().toPath());
+        }
+    }
+
+    /**
+     * Logs a summary of the operations performed on the TEA repository.
+     *
+     * @param repositoryManager the repository manager used by the execution
+     */
+    private void logStatistics(TeaRepositoryManager repositoryManager) {
+        Map<RepositoryOperation, OperationStatistics> statistics = repositoryManager.getOperationStatistics();
+        if (statistics.values().stream().allMatch(operation -> operation.count() == 0)) {
+            return;
+        }
+        getLog().info("TEA repository statistics:");
+        statistics.forEach((operation, operationStatistics) -> {
+            if (operationStatistics.count() > 0) {
+                getLog().info(formatStatistics(operation, operationStatistics));
+            }
+        });
+        CacheStatistics cache = repositoryManager.getCacheStatistics();
+        if (cache.hitCount() + cache.missCount() > 0) {
+            getLog().info(String.format(
+                    Locale.ROOT, "  %-16s %d hits, %d misses", "CACHE", cache.hitCount(), cache.missCount()));
+        }
+    }
+
+    private static String formatStatistics(RepositoryOperation operation, OperationStatistics statistics) {
+        return String.format(
+                Locale.ROOT,
+                "  %-16s %d operations, %d KiB, total %d ms, average %s, p50 %s, p99 %s",
+                operation,
+                statistics.count(),
+                statistics.bytes() / 1024,
+                statistics.totalTime().toMillis(),
+                formatLatency(statistics.averageTime()),
+                formatBound(statistics.percentile(0.5)),
+                formatBound(statistics.percentile(0.99)));
+    }
+
+    private static String formatLatency(Duration latency) {
+        return String.format(Locale.ROOT, "%.3f ms", latency.toNanos() / 1e6);
+    }
+
+    /**
+     * Formats the upper bound of a histogram bucket.
+     */
+    private static String formatBound(Duration bound) {
+        Duration lastBound = OperationStatistics.bucketUpperBound(OperationStatistics.HISTOGRAM_BUCKETS - 2);
+        return bound.compareTo(lastBound) > 0 ? ">= " + formatLatency(lastBound) : "< " + formatLatency(bound);
     }
 }
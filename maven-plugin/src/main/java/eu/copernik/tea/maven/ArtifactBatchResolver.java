@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Resolves artifacts and their optional SBOMs and signatures in batches.
+ * <p>
+ *     Artifacts are split into batches of {@link ArtifactRequest}s, which are sent to the repository system in
+ *     parallel, using a bounded number of threads. The repository system already uses the local repository as a
+ *     cache shared between builds; in addition, resolved artifacts are remembered for the lifetime of this resolver,
+ *     and optional artifacts that are not found are recorded in a {@link MissingArtifactCache}.
+ * </p>
+ */
+@NullMarked
+final class ArtifactBatchResolver implements Closeable {
+
+    /** The classifier used by the CycloneDX Maven Plugin. */
+    static final String CYCLONEDX_CLASSIFIER = "cyclonedx";
+
+    private static final List<String> SBOM_EXTENSIONS = List.of("json", "xml");
+    private static final String SIGNATURE_EXTENSION = ".asc";
+
+    private final RepositorySystem repositorySystem;
+    private final RepositorySystemSession session;
+    private final List<RemoteRepository> repositories;
+    private final int batchSize;
+    private final MissingArtifactCache missingArtifacts;
+    private final ExecutorService executor;
+    private final Map<String, Artifact> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * @param repositorySystem the repository system
+     * @param session the repository session
+     * @param repositories the remote repositories to search
+     * @param parallelism the maximum number of batches resolved concurrently
+     * @param batchSize the maximum number of artifacts in a batch
+     * @param missingArtifacts the cache of optional artifacts known to be missing
+     */
+    ArtifactBatchResolver(
+            RepositorySystem repositorySystem,
+            RepositorySystemSession session,
+            List<RemoteRepository> repositories,
+            int parallelism,
+            int batchSize,
+            MissingArtifactCache missingArtifacts) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.repositories = List.copyOf(repositories);
+        this.batchSize = batchSize;
+        this.missingArtifacts = missingArtifacts;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "tea-resolver-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the optional artifacts attached to an artifact.
+     * <p>
+     *     These are the CycloneDX SBOMs in JSON and XML format and the OpenPGP signatures of the artifact and of the
+     *     SBOMs.
+     * </p>
+     *
+     * @param artifact a main artifact
+     */
+    static List<Artifact> attachedArtifacts(Artifact artifact) {
+        List<Artifact> attached = new ArrayList<>();
+        attached.add(signature(artifact));
+        for (String extension : SBOM_EXTENSIONS) {
+            Artifact sbom = new DefaultArtifact(
+                    artifact.getGroupId(),
+                    artifact.getArtifactId(),
+                    CYCLONEDX_CLASSIFIER,
+                    extension,
+                    artifact.getVersion());
+            attached.add(sbom);
+            attached.add(signature(sbom));
+        }
+        return attached;
+    }
+
+    private static Artifact signature(Artifact artifact) {
+        return new DefaultArtifact(
+                artifact.getGroupId(),
+                artifact.getArtifactId(),
+                artifact.getClassifier(),
+                artifact.getExtension() + SIGNATURE_EXTENSION,
+                artifact.getVersion());
+    }
+
+    /**
+     * Resolves artifacts that must be present.
+     *
+     * @param artifacts the artifacts to resolve
+     * @return a map from the requested artifacts to the resolved ones, in the order of the request
+     * @throws ArtifactResolutionException if any artifact can not be resolved
+     */
+    Map<Artifact, Artifact> resolve(Collection<Artifact> artifacts) throws ArtifactResolutionException {
+        List<ArtifactResult> failures = new ArrayList<>();
+        Map<Artifact, Artifact> result = resolve(artifacts, false, failures);
+        if (!failures.isEmpty()) {
+            throw new ArtifactResolutionException(failures);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves artifacts that might be missing.
+     * <p>
+     *     Artifacts that are not found are remembered and not looked up again until their entry in the
+     *     {@link MissingArtifactCache} expires. Artifacts that can not be resolved for other reasons, e.g., network
+     *     errors, are omitted from the result, but not remembered.
+     * </p>
+     *
+     * @param artifacts the artifacts to resolve
+     * @return a map from the requested artifacts to the resolved ones, in the order of the request
+     */
+    Map<Artifact, Artifact> resolveOptional(Collection<Artifact> artifacts) {
+        return resolve(artifacts, true, new ArrayList<>());
+    }
+
+    private Map<Artifact, Artifact> resolve(
+            Collection<Artifact> artifacts, boolean optional, List<ArtifactResult> failures) {
+        Set<Artifact> pending = new LinkedHashSet<>();
+        for (Artifact artifact : artifacts) {
+            if (!resolved.containsKey(artifact.toString())
+                    && !(optional && missingArtifacts.isMissing(artifact, repositories))) {
+                pending.add(artifact);
+            }
+        }
+        List<CompletableFuture<List<ArtifactResult>>> futures = new ArrayList<>();
+        List<ArtifactRequest> batch = new ArrayList<>(batchSize);
+        for (Artifact artifact : pending) {
+            batch.add(new ArtifactRequest(artifact, repositories, null));
+            if (batch.size() == batchSize) {
+                futures.add(submit(batch));
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            futures.add(submit(batch));
+        }
+        for (CompletableFuture<List<ArtifactResult>> future : futures) {
+            for (ArtifactResult artifactResult : future.join()) {
+                Artifact artifact = artifactResult.getRequest().getArtifact();
+                if (artifactResult.isResolved()) {
+                    resolved.put(artifact.toString(), artifactResult.getArtifact());
+                } else {
+                    if (optional && artifactResult.isMissing()) {
+                        missingArtifacts.markMissing(artifact, repositories);
+                    }
+                    failures.add(artifactResult);
+                }
+            }
+        }
+        Map<Artifact, Artifact> result = new LinkedHashMap<>();
+        for (Artifact artifact : artifacts) {
+            Artifact resolvedArtifact = resolved.get(artifact.toString());
+            if (resolvedArtifact != null) {
+                result.put(artifact, resolvedArtifact);
+            }
+        }
+        return result;
+    }
+
+    private CompletableFuture<List<ArtifactResult>> submit(List<ArtifactRequest> requests) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    try {
+                        return repositorySystem.resolveArtifacts(session, requests);
+                    } catch (ArtifactResolutionException e) {
+                        // The exception contains the results of all the requests
+                        return e.getResults();
+                    }
+                },
+                executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.Lookup;
+import eu.copernik.tea.TeaRepositoryBatch;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Release;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Imports the components of CycloneDX BOMs into a TEA repository.
+ * <p>
+ *     The BOM is read with a {@link StreamingBomReader} and its components are saved in batches of bounded size, each
+ *     one in its own {@link TeaRepositoryBatch}: the memory used does not depend on the size of the BOM.
+ * </p>
+ * <p>
+ *     Each component with a Package URL is mapped to a TEA component identified by the Package URL without version,
+ *     and each version of the component to a TEA release identified by the full Package URL.
+ * </p>
+ */
+@NullMarked
+final class BomIngester {
+
+    /**
+     * Statistics of an import.
+     *
+     * @param components the number of TEA components created
+     * @param releases the number of TEA releases created
+     * @param skipped the number of BOM components without a valid Package URL or version
+     */
+    record Result(int components, int releases, int skipped) {}
+
+    private final TeaRepositoryManager repositoryManager;
+    private final int batchSize;
+    private final OffsetDateTime releaseDate;
+
+    /**
+     * @param repositoryManager the repository receiving the components
+     * @param batchSize the maximum number of BOM components saved in a single batch
+     * @param releaseDate the release date of the new releases
+     */
+    BomIngester(TeaRepositoryManager repositoryManager, int batchSize, OffsetDateTime releaseDate) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.repositoryManager = repositoryManager;
+        this.batchSize = batchSize;
+        this.releaseDate = releaseDate;
+    }
+
+    /**
+     * Imports the components of a BOM file.
+     *
+     * @param bom a CycloneDX BOM in JSON or XML format
+     */
+    Result ingest(Path bom) throws IOException {
+        try (InputStream input = Files.newInputStream(bom)) {
+            return ingest(input, StreamingBomReader.Format.fromFileName(bom.toString()));
+        }
+    }
+
+    /**
+     * Imports the components of a BOM.
+     *
+     * @param input a CycloneDX BOM
+     * @param format the format of the BOM
+     */
+    Result ingest(InputStream input, StreamingBomReader.Format format) throws IOException {
+        Ingestion ingestion = new Ingestion();
+        try {
+            StreamingBomReader.readComponents(input, format, ingestion::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        ingestion.flush();
+        return new Result(ingestion.components, ingestion.releases, ingestion.skipped);
+    }
+
+    private final class Ingestion {
+
+        // Release Package URLs of the pending batch, by component Package URL
+        private final Map<PackageURL, Map<String, PackageURL>> pending = new LinkedHashMap<>();
+        private final Map<PackageURL, String> names = new LinkedHashMap<>();
+        private int pendingCount;
+        private int components;
+        private int releases;
+        private int skipped;
+
+        void add(StreamingBomReader.BomComponent bomComponent) {
+            String version = bomComponent.version();
+            PackageURL purl = parsePurl(bomComponent.purl());
+            if (purl == null || version == null || version.isEmpty()) {
+                skipped++;
+                return;
+            }
+            PackageURL componentPurl = withoutVersion(purl);
+            names.putIfAbsent(componentPurl, bomComponent.name());
+            pending.computeIfAbsent(componentPurl, ignored -> new LinkedHashMap<>())
+                    .putIfAbsent(version, purl);
+            if (++pendingCount >= batchSize) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try (TeaRepositoryBatch batch = repositoryManager.beginBatch()) {
+                for (Map.Entry<PackageURL, Map<String, PackageURL>> entry : pending.entrySet()) {
+                    Lookup<Component> lookup = repositoryManager.lookupComponentByPurl(entry.getKey());
+                    Component component = lookup.value();
+                    if (lookup.created()) {
+                        component.setName(names.get(entry.getKey()));
+                        repositoryManager.saveComponent(component);
+                        components++;
+                    }
+                    for (Map.Entry<String, PackageURL> release :
+                            entry.getValue().entrySet()) {
+                        saveRelease(component, release.getKey(), release.getValue());
+                    }
+                }
+                batch.commit();
+            }
+            pending.clear();
+            names.clear();
+            pendingCount = 0;
+        }
+
+        private void saveRelease(Component component, String version, PackageURL purl) throws IOException {
+            Lookup<Release> lookup = repositoryManager.lookupRelease(component, version);
+            if (lookup.created()) {
+                Release release = lookup.value();
+                release.setReleaseDate(releaseDate);
+                release.addIdentifiersItem(
+                        new Identifier().idType(IdentifierType.PURL).idValue(purl.toString()));
+                repositoryManager.saveRelease(component, release);
+                releases++;
+            }
+        }
+    }
+
+    private static @Nullable PackageURL parsePurl(@Nullable String purl) {
+        if (purl == null) {
+            return null;
+        }
+        try {
+            return new PackageURL(purl);
+        } catch (MalformedPackageURLException e) {
+            return null;
+        }
+    }
+
+    private static PackageURL withoutVersion(PackageURL purl) {
+        try {
+            return new PackageURL(purl.getType(), purl.getNamespace(), purl.getName(), null, null, null);
+        } catch (MalformedPackageURLException e) {
+            // The components come from a valid Package URL
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A persistent store of the fingerprints of the inputs used to generate each TEA object.
+ * <p>
+ *     A fingerprint is a SHA-256 hash of all the inputs of an object (e.g., the coordinates of a release and the
+ *     checksums of its SBOMs). If the fingerprint of an object did not change since the last successful execution,
+ *     the object does not need to be read or written again.
+ * </p>
+ * <p>
+ *     The store also records the fingerprint of the plugin configuration: if the configuration changes, all the
+ *     stored fingerprints are discarded.
+ * </p>
+ */
+@NullMarked
+final class FingerprintStore {
+
+    private static final String CONFIGURATION_KEY = "#configuration";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path file;
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    private FingerprintStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the fingerprints from a file.
+     *
+     * @param file the file containing the fingerprints, which does not need to exist
+     * @param configuration the fingerprint of the plugin configuration
+     */
+    static FingerprintStore load(Path file, String configuration) throws IOException {
+        FingerprintStore store = new FingerprintStore(file);
+        if (Files.isRegularFile(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    store.fingerprints.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        }
+        if (!configuration.equals(store.fingerprints.get(CONFIGURATION_KEY))) {
+            store.fingerprints.clear();
+            store.fingerprints.put(CONFIGURATION_KEY, configuration);
+            store.modified = true;
+        }
+        return store;
+    }
+
+    /**
+     * Creates a new fingerprint builder.
+     */
+    static Builder fingerprint() {
+        return new Builder();
+    }
+
+    /**
+     * Checks if the inputs of an object did not change since they were last {@link #update recorded}.
+     *
+     * @param key the key of the object, e.g., {@code release/<uuid>}
+     * @param fingerprint the fingerprint of the current inputs of the object
+     */
+    boolean isUpToDate(String key, String fingerprint) {
+        return fingerprint.equals(fingerprints.get(key));
+    }
+
+    /**
+     * Records the fingerprint of the inputs of an object, after it has been successfully written.
+     *
+     * @param key the key of the object
+     * @param fingerprint the fingerprint of the inputs of the object
+     */
+    void update(String key, String fingerprint) {
+        if (!fingerprint.equals(fingerprints.put(key, fingerprint))) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes the fingerprints to disk, if they changed.
+     */
+    synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        Path directory = Objects.requireNonNull(file.toAbsolutePath().getParent());
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, file.getFileName() + ".", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : new TreeMap<>(fingerprints).entrySet()) {
+                    writer.write(entry.getValue() + " " + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        modified = false;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+    }
+
+    /**
+     * Computes a fingerprint from a sequence of named inputs.
+     */
+    static final class Builder {
+
+        private final MessageDigest digest;
+
+        private Builder() {
+            digest = newDigest();
+        }
+
+        /**
+         * Adds an input.
+         *
+         * @param name the name of the input
+         * @param value the value of the input
+         * @return this builder
+         */
+        Builder add(String name, @Nullable Object value) {
+            update(name);
+            update(value != null ? value.toString() : "\0");
+            return this;
+        }
+
+        /**
+         * Adds the content of a file as input.
+         *
+         * @param name the name of the input
+         * @param file the file
+         * @return this builder
+         */
+        Builder addFile(String name, Path file) throws IOException {
+            MessageDigest fileDigest = newDigest();
+            try (InputStream input = Files.newInputStream(file)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    fileDigest.update(buffer, 0, read);
+                }
+            }
+            return add(name, HexFormat.of().formatHex(fileDigest.digest()));
+        }
+
+        /**
+         * Returns the hex-encoded fingerprint.
+         */
+        String build() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private void update(String value) {
+            // Length-prefixed, so that different sequences of inputs never have the same encoding
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            digest.update(
+                    ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+    }
+}
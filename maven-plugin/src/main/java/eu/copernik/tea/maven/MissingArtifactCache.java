@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * A persistent record of optional artifacts that could not be found in the remote repositories.
+ * <p>
+ *     Each entry is keyed by the artifact coordinates and the identifiers of the repositories that were searched, so
+ *     that a project using different repositories performs its own lookups. Entries expire after a configurable
+ *     delay, so that artifacts published later are eventually picked up.
+ * </p>
+ * <p>
+ *     The file is shared by all the builds using the same local repository: {@link #save()} merges the entries found
+ *     on disk with the new ones while holding a file lock.
+ * </p>
+ */
+@NullMarked
+final class MissingArtifactCache {
+
+    private final Path file;
+    private final Duration expiry;
+    private final Clock clock;
+    private final Map<String, Instant> entries = new ConcurrentHashMap<>();
+    private final Map<String, Instant> added = new ConcurrentHashMap<>();
+
+    private MissingArtifactCache(Path file, Duration expiry, Clock clock) {
+        this.file = file;
+        this.expiry = expiry;
+        this.clock = clock;
+    }
+
+    /**
+     * Loads the cache from a file.
+     *
+     * @param file the file containing the cache, which does not need to exist
+     * @param expiry the delay after which a missing artifact is looked up again
+     * @param clock the clock used to timestamp the entries
+     */
+    static MissingArtifactCache load(Path file, Duration expiry, Clock clock) throws IOException {
+        MissingArtifactCache cache = new MissingArtifactCache(file, expiry, clock);
+        cache.entries.putAll(read(file));
+        return cache;
+    }
+
+    /**
+     * Checks if an artifact was recently found to be missing from the given repositories.
+     */
+    boolean isMissing(Artifact artifact, List<RemoteRepository> repositories) {
+        Instant timestamp = entries.get(key(artifact, repositories));
+        return timestamp != null && timestamp.plus(expiry).isAfter(clock.instant());
+    }
+
+    /**
+     * Records that an artifact is missing from the given repositories.
+     */
+    void markMissing(Artifact artifact, List<RemoteRepository> repositories) {
+        String key = key(artifact, repositories);
+        Instant now = clock.instant();
+        entries.put(key, now);
+        added.put(key, now);
+    }
+
+    /**
+     * Merges the new entries into the file and drops the expired ones.
+     */
+    void save() throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        Path directory = Objects.requireNonNull(file.toAbsolutePath().getParent());
+        Files.createDirectories(directory);
+        Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed
+            channel.lock();
+            Map<String, Instant> merged = new TreeMap<>(read(file));
+            added.forEach((key, timestamp) -> merged.merge(key, timestamp, (a, b) -> a.isAfter(b) ? a : b));
+            Instant oldest = clock.instant().minus(expiry);
+            merged.values().removeIf(timestamp -> !timestamp.isAfter(oldest));
+            Path tempFile = Files.createTempFile(directory, file.getFileName() + ".", ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Instant> entry : merged.entrySet()) {
+                        writer.write(entry.getValue().toEpochMilli() + " " + entry.getKey());
+                        writer.newLine();
+                    }
+                }
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            added.clear();
+        }
+    }
+
+    private static Map<String, Instant> read(Path file) throws IOException {
+        Map<String, Instant> result = new TreeMap<>();
+        if (Files.isRegularFile(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    try {
+                        long timestamp = Long.parseLong(line.substring(0, separator));
+                        result.put(line.substring(separator + 1), Instant.ofEpochMilli(timestamp));
+                    } catch (NumberFormatException e) {
+                        // Ignore corrupted lines
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String key(Artifact artifact, List<RemoteRepository> repositories) {
+        StringBuilder key = new StringBuilder(artifact.toString()).append(' ');
+        for (int i = 0; i < repositories.size(); i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(repositories.get(i).getId());
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Reads the components of a CycloneDX BOM with a pull parser.
+ * <p>
+ *     Contrary to the object parsers of {@code cyclonedx-core-java}, only the component that is currently parsed is
+ *     kept in memory, so that BOMs of any size can be read with a constant amount of memory. Nested components are
+ *     reported after their children; the components described in the metadata of the BOM, or in the pedigree of a
+ *     component, are ignored.
+ * </p>
+ */
+@NullMarked
+final class StreamingBomReader {
+
+    private static final String COMPONENTS = "components";
+    private static final String COMPONENT = "component";
+    private static final String NAME = "name";
+    private static final String VERSION = "version";
+    private static final String PURL = "purl";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final XMLInputFactory XML_FACTORY = createXmlInputFactory();
+
+    /**
+     * A component of a BOM.
+     *
+     * @param name the name of the component
+     * @param version the version of the component, if present
+     * @param purl the Package URL of the component, if present
+     */
+    record BomComponent(String name, @Nullable String version, @Nullable String purl) {}
+
+    /**
+     * The serialization format of a BOM.
+     */
+    enum Format {
+        JSON,
+        XML;
+
+        /**
+         * Determines the format of a BOM from its file name or artifact extension.
+         *
+         * @param fileName a file name or extension
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        static Format fromFileName(String fileName) {
+            String lowerCase = fileName.toLowerCase(Locale.ROOT);
+            if (lowerCase.endsWith("json")) {
+                return JSON;
+            }
+            if (lowerCase.endsWith("xml")) {
+                return XML;
+            }
+            throw new IllegalArgumentException("Unsupported BOM format: " + fileName);
+        }
+    }
+
+    private StreamingBomReader() {}
+
+    /**
+     * Reads the components of a BOM.
+     *
+     * @param input the BOM
+     * @param format the format of the BOM
+     * @param consumer receives each component of the BOM
+     */
+    static void readComponents(InputStream input, Format format, Consumer<BomComponent> consumer) throws IOException {
+        switch (format) {
+            case JSON -> readJson(input, consumer);
+            case XML -> readXml(input, consumer);
+        }
+    }
+
+    private static void readJson(InputStream input, Consumer<BomComponent> consumer) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid CycloneDX BOM: expecting a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (COMPONENTS.equals(field) && value == JsonToken.START_ARRAY) {
+                    readJsonComponents(parser, consumer);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readJsonComponents(JsonParser parser, Consumer<BomComponent> consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            String version = null;
+            String purl = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case NAME -> name = parser.getValueAsString();
+                    case VERSION -> version = parser.getValueAsString();
+                    case PURL -> purl = parser.getValueAsString();
+                    case COMPONENTS -> {
+                        if (value == JsonToken.START_ARRAY) {
+                            readJsonComponents(parser, consumer);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (name != null) {
+                consumer.accept(new BomComponent(name, version, purl));
+            }
+        }
+    }
+
+    private static void readXml(InputStream input, Consumer<BomComponent> consumer) throws IOException {
+        try {
+            XMLStreamReader reader = XML_FACTORY.createXMLStreamReader(input);
+            try {
+                // The builders of the ancestors of the current component
+                Deque<ComponentBuilder> stack = new ArrayDeque<>();
+                // The path of the current element
+                Deque<String> elements = new ArrayDeque<>();
+                ComponentBuilder current = null;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamReader.START_ELEMENT -> {
+                            String element = reader.getLocalName();
+                            // Like in JSON, only bom/components and the components of a component are read
+                            int componentsDepth = current != null ? current.depth + 1 : 2;
+                            if (COMPONENT.equals(element)
+                                    && COMPONENTS.equals(elements.peek())
+                                    && elements.size() == componentsDepth) {
+                                if (current != null) {
+                                    stack.push(current);
+                                }
+                                elements.push(element);
+                                current = new ComponentBuilder(elements.size());
+                            } else if (current != null
+                                    && elements.size() == current.depth
+                                    && (NAME.equals(element) || VERSION.equals(element) || PURL.equals(element))) {
+                                // Consumes the end element
+                                current.set(element, reader.getElementText().trim());
+                            } else {
+                                elements.push(element);
+                            }
+                        }
+                        case XMLStreamReader.END_ELEMENT -> {
+                            if (current != null && elements.size() == current.depth) {
+                                current.accept(consumer);
+                                current = stack.poll();
+                            }
+                            elements.pop();
+                        }
+                        default -> {
+                            // Ignore other events
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid CycloneDX BOM: " + e.getMessage(), e);
+        }
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // BOMs are untrusted input
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static final class ComponentBuilder {
+
+        /**
+         * The depth of the {@code component} element.
+         */
+        private final int depth;
+
+        private @Nullable String name;
+        private @Nullable String version;
+        private @Nullable String purl;
+
+        ComponentBuilder(int depth) {
+            this.depth = depth;
+        }
+
+        void set(String element, String value) {
+            switch (element) {
+                case NAME -> name = value;
+                case VERSION -> version = value;
+                default -> purl = value;
+            }
+        }
+
+        void accept(Consumer<BomComponent> consumer) {
+            if (name != null) {
+                consumer.accept(new BomComponent(name, version, purl));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AbstractTeaMojoTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void execute_opensRepositoryAndLogsStatistics() throws Exception {
+        Product product = new Product().uuid(UUID.randomUUID()).name("Product");
+        AbstractTeaMojo mojo =
+                new AbstractTeaMojo(TeaRepositoryManagerFactory.getInstance(), mock(RepositorySystem.class)) {
+                    @Override
+                    protected void execute(TeaRepositoryManager repositoryManager) throws IOException {
+                        repositoryManager.saveProduct(product);
+                    }
+                };
+        setParameter(mojo, "repositoryDirectory", tempDir.toFile());
+        setParameter(mojo, "repositoryBackend", TeaRepository.DIRECTORY_BACKEND);
+        Log log = mock(Log.class);
+        mojo.setLog(log);
+
+        mojo.execute();
+
+        assertThat(tempDir.resolve("product/" + product.getUuid() + ".json")).isRegularFile();
+        verify(log).info("TEA repository statistics:");
+        verify(log).info(startsWith("  SAVE "));
+    }
+
+    @Test
+    void loadFingerprints_discardsFingerprintsOfOtherRepositories() throws Exception {
+        AbstractTeaMojo mojo =
+                new AbstractTeaMojo(TeaRepositoryManagerFactory.getInstance(), mock(RepositorySystem.class)) {
+                    @Override
+                    protected void execute(TeaRepositoryManager repositoryManager) {}
+                };
+        Path repository = tempDir.resolve("repository");
+        setParameter(mojo, "repositoryDirectory", repository.toFile());
+        setParameter(mojo, "repositoryBackend", TeaRepository.DIRECTORY_BACKEND);
+        setParameter(mojo, "fingerprintFile", tempDir.resolve("target/fingerprints.txt").toFile());
+        setParameter(mojo, "incremental", true);
+        setParameter(mojo, "pluginVersion", "1.0.0");
+        FingerprintStore store = mojo.loadFingerprints();
+        store.update("release/a", "f1");
+        store.save();
+        assertThat(mojo.loadFingerprints().isUpToDate("release/a", "f1")).isTrue();
+
+        setParameter(mojo, "repositoryBackend", TeaRepository.SINGLE_FILE_BACKEND);
+        assertThat(mojo.loadFingerprints().isUpToDate("release/a", "f1")).isFalse();
+        setParameter(mojo, "repositoryBackend", TeaRepository.DIRECTORY_BACKEND);
+        setParameter(mojo, "repositoryDirectory", tempDir.resolve("other").toFile());
+        assertThat(mojo.loadFingerprints().isUpToDate("release/a", "f1")).isFalse();
+        // A deleted repository gets a new identifier
+        setParameter(mojo, "repositoryDirectory", repository.toFile());
+        assertThat(mojo.loadFingerprints().isUpToDate("release/a", "f1")).isTrue();
+        deleteRecursively(repository);
+        assertThat(mojo.loadFingerprints().isUpToDate("release/a", "f1")).isFalse();
+    }
+
+    private static void deleteRecursively(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void setParameter(AbstractTeaMojo mojo, String name, Object value) throws Exception {
+        Field field = AbstractTeaMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+}
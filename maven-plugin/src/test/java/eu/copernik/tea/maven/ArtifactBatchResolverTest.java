@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactBatchResolverTest {
+
+    private static final List<RemoteRepository> REPOSITORIES =
+            List.of(new RemoteRepository.Builder("central", "default", "https://repo.maven.apache.org/maven2").build());
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-06-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    private Path tempDir;
+
+    /**
+     * A repository system that finds only the artifacts without a classifier and fails on the {@code broken} ones.
+     */
+    private static RepositorySystem repositorySystem(List<Integer> batchSizes) throws ArtifactResolutionException {
+        RepositorySystem system = mock(RepositorySystem.class);
+        when(system.resolveArtifacts(any(), anyList())).thenAnswer(invocation -> {
+            Collection<ArtifactRequest> requests = invocation.getArgument(1);
+            synchronized (batchSizes) {
+                batchSizes.add(requests.size());
+            }
+            List<ArtifactResult> results = new ArrayList<>();
+            boolean failed = false;
+            for (ArtifactRequest request : requests) {
+                Artifact artifact = request.getArtifact();
+                ArtifactResult result = new ArtifactResult(request);
+                if (artifact.getArtifactId().equals("broken")) {
+                    result.addException(new ArtifactTransferException(artifact, null, "Connection refused"));
+                    failed = true;
+                } else if (artifact.getClassifier().isEmpty()
+                        && !artifact.getExtension().endsWith(".asc")) {
+                    result.setArtifact(artifact.setFile(new File(artifact.getArtifactId() + ".jar")));
+                } else {
+                    result.addException(new ArtifactNotFoundException(artifact, null));
+                    failed = true;
+                }
+                results.add(result);
+            }
+            if (failed) {
+                throw new ArtifactResolutionException(results);
+            }
+            return results;
+        });
+        return system;
+    }
+
+    private static List<Artifact> artifacts(int count) {
+        List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            artifacts.add(new DefaultArtifact("org.example", "artifact-" + i, "jar", "1.0.0"));
+        }
+        return artifacts;
+    }
+
+    @Test
+    void resolve_splitsRequestsInBatches() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        RepositorySystem system = repositorySystem(batchSizes);
+        MissingArtifactCache cache =
+                MissingArtifactCache.load(tempDir.resolve("missing.txt"), Duration.ofHours(1), CLOCK);
+        List<Artifact> artifacts = artifacts(25);
+        try (ArtifactBatchResolver resolver =
+                new ArtifactBatchResolver(system, mock(RepositorySystemSession.class), REPOSITORIES, 4, 10, cache)) {
+            Map<Artifact, Artifact> resolved = resolver.resolve(artifacts);
+            assertThat(resolved).containsOnlyKeys(artifacts);
+            assertThat(resolved.get(artifacts.get(3)).getFile()).hasName("artifact-3.jar");
+            assertThat(batchSizes).containsExactlyInAnyOrder(10, 10, 5);
+            // Already resolved artifacts are not requested again
+            assertThat(resolver.resolve(artifacts)).isEqualTo(resolved);
+            verify(system, times(3)).resolveArtifacts(any(), anyList());
+
+            Artifact broken = new DefaultArtifact("org.example", "broken", "jar", "1.0.0");
+            assertThatThrownBy(() -> resolver.resolve(List.of(broken))).isInstanceOf(ArtifactResolutionException.class);
+        }
+    }
+
+    @Test
+    void resolveOptional_remembersMissingArtifacts() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        RepositorySystem system = repositorySystem(batchSizes);
+        Path cacheFile = tempDir.resolve("missing.txt");
+        Artifact main = new DefaultArtifact("org.example", "main", "jar", "1.0.0");
+        Artifact broken = new DefaultArtifact("org.example", "broken", "cyclonedx", "json", "1.0.0");
+        List<Artifact> attached = new ArrayList<>(ArtifactBatchResolver.attachedArtifacts(main));
+        attached.add(broken);
+        assertThat(attached)
+                .extracting(Artifact::toString)
+                .containsExactly(
+                        "org.example:main:jar.asc:1.0.0",
+                        "org.example:main:json:cyclonedx:1.0.0",
+                        "org.example:main:json.asc:cyclonedx:1.0.0",
+                        "org.example:main:xml:cyclonedx:1.0.0",
+                        "org.example:main:xml.asc:cyclonedx:1.0.0",
+                        "org.example:broken:json:cyclonedx:1.0.0");
+
+        MissingArtifactCache cache = MissingArtifactCache.load(cacheFile, Duration.ofHours(1), CLOCK);
+        try (ArtifactBatchResolver resolver =
+                new ArtifactBatchResolver(system, mock(RepositorySystemSession.class), REPOSITORIES, 2, 2, cache)) {
+            assertThat(resolver.resolveOptional(attached)).isEmpty();
+        }
+        cache.save();
+        assertThat(batchSizes).hasSize(3);
+
+        // A new build does not look up the missing artifacts, but retries the failed ones
+        batchSizes.clear();
+        cache = MissingArtifactCache.load(cacheFile, Duration.ofHours(1), CLOCK);
+        try (ArtifactBatchResolver resolver =
+                new ArtifactBatchResolver(system, mock(RepositorySystemSession.class), REPOSITORIES, 2, 2, cache)) {
+            assertThat(resolver.resolveOptional(attached)).isEmpty();
+        }
+        assertThat(batchSizes).containsExactly(1);
+        for (Artifact artifact : attached.subList(0, 5)) {
+            assertThat(cache.isMissing(artifact, REPOSITORIES)).isTrue();
+            assertThat(cache.isMissing(artifact, List.of())).isFalse();
+        }
+
+        // Expired entries are looked up again
+        Clock later = Clock.offset(CLOCK, Duration.ofHours(2));
+        cache = MissingArtifactCache.load(cacheFile, Duration.ofHours(1), later);
+        for (Artifact artifact : attached) {
+            assertThat(cache.isMissing(artifact, REPOSITORIES)).isFalse();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Release;
+import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BomIngesterTest {
+
+    private static final OffsetDateTime RELEASE_DATE = OffsetDateTime.of(2025, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void ingest_createsComponentsAndReleasesInBatches() throws Exception {
+        StringBuilder bom = new StringBuilder("{\"components\": [");
+        for (int i = 0; i < 25; i++) {
+            for (String version : List.of("1.0.0", "2.0.0")) {
+                bom.append(String.format(
+                        "{\"name\": \"library-%d\", \"version\": \"%s\", \"purl\": \"pkg:maven/org.example/library-%d@%s\"},",
+                        i, version, i, version));
+            }
+        }
+        bom.append("{\"name\": \"no-version\", \"purl\": \"pkg:maven/org.example/no-version\"},");
+        bom.append("{\"name\": \"invalid\", \"version\": \"1.0.0\", \"purl\": \"not-a-purl\"}]}");
+        try (TeaRepositoryManager manager = TeaRepositoryManagerFactory.getInstance()
+                .newInstance(TeaRepository.builder(tempDir).build())) {
+            BomIngester ingester = new BomIngester(manager, 7, RELEASE_DATE);
+            assertThat(ingester.ingest(
+                            new ByteArrayInputStream(bom.toString().getBytes(StandardCharsets.UTF_8)),
+                            StreamingBomReader.Format.JSON))
+                    .isEqualTo(new BomIngester.Result(25, 50, 2));
+
+            Component component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/library-3"));
+            assertThat(component.getName()).isEqualTo("library-3");
+            Release release = manager.getOrCreateRelease(component, "2.0.0");
+            assertThat(release.getReleaseDate()).isEqualTo(RELEASE_DATE);
+            assertThat(release.getIdentifiers())
+                    .containsExactly(new Identifier()
+                            .idType(IdentifierType.PURL)
+                            .idValue("pkg:maven/org.example/library-3@2.0.0"));
+
+            // A second import does not modify the repository
+            assertThat(ingester.ingest(
+                            new ByteArrayInputStream(bom.toString().getBytes(StandardCharsets.UTF_8)),
+                            StreamingBomReader.Format.JSON))
+                    .isEqualTo(new BomIngester.Result(0, 0, 2));
+        }
+    }
+
+    @Test
+    void ingest_readsXml() throws Exception {
+        try (TeaRepositoryManager manager = TeaRepositoryManagerFactory.getInstance()
+                .newInstance(TeaRepository.builder(tempDir).build())) {
+            BomIngester ingester = new BomIngester(manager, 1, RELEASE_DATE);
+            assertThat(ingester.ingest(
+                            new ByteArrayInputStream(StreamingBomReaderTest.XML_BOM.getBytes(StandardCharsets.UTF_8)),
+                            StreamingBomReader.Format.XML))
+                    .isEqualTo(new BomIngester.Result(2, 2, 1));
+            Component parent = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/parent"));
+            assertThat(manager.getOrCreateRelease(parent, "1.0.0").getIdentifiers())
+                    .extracting(Identifier::getIdValue)
+                    .containsExactly("pkg:maven/org.example/parent@1.0.0?type=jar");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FingerprintStoreTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void fingerprint_dependsOnAllInputs() throws Exception {
+        Path sbom = Files.writeString(tempDir.resolve("bom.json"), "{}");
+        String fingerprint = FingerprintStore.fingerprint()
+                .add("purl", "pkg:maven/org.example/example@1.0.0")
+                .addFile("sbom", sbom)
+                .build();
+        assertThat(FingerprintStore.fingerprint()
+                        .add("purl", "pkg:maven/org.example/example@1.0.0")
+                        .addFile("sbom", sbom)
+                        .build())
+                .isEqualTo(fingerprint)
+                .hasSize(64);
+        // Inputs are delimited
+        assertThat(FingerprintStore.fingerprint().add("ab", "c").build())
+                .isNotEqualTo(FingerprintStore.fingerprint().add("a", "bc").build());
+        assertThat(FingerprintStore.fingerprint().add("a", null).build())
+                .isNotEqualTo(FingerprintStore.fingerprint().add("a", "").build());
+
+        Files.writeString(sbom, "{\"components\":[]}");
+        assertThat(FingerprintStore.fingerprint()
+                        .add("purl", "pkg:maven/org.example/example@1.0.0")
+                        .addFile("sbom", sbom)
+                        .build())
+                .isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void isUpToDate_persistsFingerprints() throws Exception {
+        Path file = tempDir.resolve("target/fingerprints.txt");
+        FingerprintStore store = FingerprintStore.load(file, "config-1");
+        assertThat(store.isUpToDate("release/a", "f1")).isFalse();
+        store.update("release/a", "f1");
+        store.update("release/b", "f2");
+        assertThat(store.isUpToDate("release/a", "f1")).isTrue();
+        store.save();
+
+        store = FingerprintStore.load(file, "config-1");
+        assertThat(store.isUpToDate("release/a", "f1")).isTrue();
+        assertThat(store.isUpToDate("release/b", "f2")).isTrue();
+        assertThat(store.isUpToDate("release/b", "f3")).isFalse();
+
+        // Saving an unmodified store does not touch the file
+        Files.delete(file);
+        store.save();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void load_discardsFingerprintsIfConfigurationChanged() throws Exception {
+        Path file = tempDir.resolve("fingerprints.txt");
+        FingerprintStore store = FingerprintStore.load(file, "config-1");
+        store.update("release/a", "f1");
+        store.save();
+
+        store = FingerprintStore.load(file, "config-2");
+        assertThat(store.isUpToDate("release/a", "f1")).isFalse();
+        store.save();
+        assertThat(FingerprintStore.load(file, "config-1").isUpToDate("release/a", "f1"))
+                .isFalse();
+    }
+}
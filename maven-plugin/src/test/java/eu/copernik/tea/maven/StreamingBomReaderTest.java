@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import eu.copernik.tea.maven.StreamingBomReader.BomComponent;
+import eu.copernik.tea.maven.StreamingBomReader.Format;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class StreamingBomReaderTest {
+
+    static final String JSON_BOM =
+            """
+            {
+              "bomFormat": "CycloneDX",
+              "specVersion": "1.6",
+              "metadata": {
+                "component": {
+                  "name": "platform",
+                  "version": "1.0.0",
+                  "purl": "pkg:maven/org.example/platform@1.0.0",
+                  "components": [{"name": "platform-module", "version": "1.0.0"}]
+                }
+              },
+              "components": [
+                {
+                  "type": "library",
+                  "name": "parent",
+                  "supplier": {"name": "Example"},
+                  "pedigree": {"ancestors": [{"name": "upstream", "version": "0.9.0"}]},
+                  "components": [
+                    {"name": "child", "version": "2.0.0", "purl": "pkg:maven/org.example/child@2.0.0"}
+                  ],
+                  "version": "1.0.0",
+                  "purl": "pkg:maven/org.example/parent@1.0.0?type=jar",
+                  "hashes": [{"alg": "SHA-256", "content": "00"}]
+                },
+                {"name": "no-purl", "version": "1.0.0"}
+              ],
+              "dependencies": []
+            }
+            """;
+
+    static final String XML_BOM =
+            """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <bom xmlns="http://cyclonedx.org/schema/bom/1.6" version="1">
+              <metadata>
+                <component type="application">
+                  <name>platform</name>
+                  <version>1.0.0</version>
+                  <purl>pkg:maven/org.example/platform@1.0.0</purl>
+                  <components>
+                    <component type="library">
+                      <name>platform-module</name>
+                      <version>1.0.0</version>
+                    </component>
+                  </components>
+                </component>
+              </metadata>
+              <components>
+                <component type="library">
+                  <supplier><name>Example</name></supplier>
+                  <name>parent</name>
+                  <pedigree>
+                    <ancestors>
+                      <component type="library">
+                        <name>upstream</name>
+                        <version>0.9.0</version>
+                      </component>
+                    </ancestors>
+                  </pedigree>
+                  <components>
+                    <component type="library">
+                      <name>child</name>
+                      <version>2.0.0</version>
+                      <purl>pkg:maven/org.example/child@2.0.0</purl>
+                    </component>
+                  </components>
+                  <version>1.0.0</version>
+                  <purl>pkg:maven/org.example/parent@1.0.0?type=jar</purl>
+                </component>
+                <component type="library">
+                  <name>no-purl</name>
+                  <version>1.0.0</version>
+                </component>
+              </components>
+            </bom>
+            """;
+
+    private static final List<BomComponent> EXPECTED = List.of(
+            new BomComponent("child", "2.0.0", "pkg:maven/org.example/child@2.0.0"),
+            new BomComponent("parent", "1.0.0", "pkg:maven/org.example/parent@1.0.0?type=jar"),
+            new BomComponent("no-purl", "1.0.0", null));
+
+    private static List<BomComponent> read(String bom, Format format) throws IOException {
+        List<BomComponent> components = new ArrayList<>();
+        StreamingBomReader.readComponents(
+                new ByteArrayInputStream(bom.getBytes(StandardCharsets.UTF_8)), format, components::add);
+        return components;
+    }
+
+    @Test
+    void readComponents_json() throws Exception {
+        assertThat(read(JSON_BOM, Format.JSON)).containsExactlyElementsOf(EXPECTED);
+    }
+
+    @Test
+    void readComponents_xml() throws Exception {
+        assertThat(read(XML_BOM, Format.XML)).containsExactlyElementsOf(EXPECTED);
+    }
+
+    @Test
+    void readComponents_rejectsInvalidInput() {
+        assertThatThrownBy(() -> read("[]", Format.JSON)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() ->
+                        read("<!DOCTYPE bom [<!ENTITY x SYSTEM \"file:///etc/passwd\">]><bom>&x;</bom>", Format.XML))
+                .isInstanceOf(IOException.class);
+        assertThat(Format.fromFileName("example-1.0.0-cyclonedx.json")).isEqualTo(Format.JSON);
+        assertThat(Format.fromFileName("xml")).isEqualTo(Format.XML);
+        assertThatThrownBy(() -> Format.fromFileName("bom.spdx")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
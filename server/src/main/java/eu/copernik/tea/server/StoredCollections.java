@@ -0,0 +1,354 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Expands the collections of a repository whose artifacts are content-addressed.
+ * <p>
+ *     Such a repository only stores the collection versions in {@code .store/release}, with the {@code artifacts}
+ *     property of each collection replaced by the array of the SHA-256 hashes of its artifacts. The artifact with hash
+ *     {@code h} is stored in {@code .store/artifact/<first two digits of h>/<h>.json} and never changes.
+ * </p>
+ * <p>
+ *     The server does not depend on the core module at runtime, so this duplicates the layout of
+ *     {@code ArtifactStore}. {@code TeaServerTest} checks that the result matches the stored collections.
+ * </p>
+ * <p>
+ *     The expanded collections are cached until the stamp of the stored collection or of the folder of the collection
+ *     versions changes, so that clients polling a release only cost a file system lookup.
+ * </p>
+ */
+final class StoredCollections {
+
+    /**
+     * The folder containing the artifacts, whose presence marks a content-addressed repository.
+     */
+    static final String ARTIFACT_FOLDER = ".store/artifact";
+
+    /**
+     * The folder containing the collections of each release.
+     */
+    static final String RELEASE_FOLDER = ".store/release";
+
+    private static final String ARTIFACTS_PROPERTY = "artifacts";
+
+    /**
+     * The maximum number of expanded collections kept in memory.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * An expanded collection or list of collections.
+     */
+    static final class Content {
+
+        private final byte[] content;
+        private final Instant lastModified;
+
+        /**
+         * The compressed content, computed on the first request that accepts it.
+         */
+        private byte @Nullable [] gzipped;
+
+        private Content(byte[] content, Instant lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the last modification time of the stored collections.
+         */
+        Instant lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the size of the uncompressed content.
+         */
+        int size() {
+            return content.length;
+        }
+
+        /**
+         * Returns the JSON content.
+         *
+         * @param gzip whether to return the content compressed with GZIP
+         * @return a read-only buffer
+         */
+        ByteBuffer content(boolean gzip) throws IOException {
+            return ByteBuffer.wrap(gzip ? gzipped() : content).asReadOnlyBuffer();
+        }
+
+        private synchronized byte[] gzipped() throws IOException {
+            byte[] result = gzipped;
+            if (result == null) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 4);
+                try (OutputStream gzip = new GZIPOutputStream(output)) {
+                    gzip.write(content);
+                }
+                result = output.toByteArray();
+                gzipped = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The modification time and size of a file or folder.
+     */
+    private record Stamp(FileTime lastModifiedTime, long size) {
+
+        private static @Nullable Stamp of(Path file) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new Stamp(attributes.lastModifiedTime(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Cached(Stamp stamp, Content content) {}
+
+    @FunctionalInterface
+    private interface Expander {
+
+        @Nullable
+        Content expand() throws IOException;
+    }
+
+    private final Path artifactFolder;
+
+    /**
+     * The expanded collections, keyed by the path of the stored collection or aggregate, guarded by itself.
+     */
+    private final Map<Path, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Cached> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    StoredCollections(Path basePath) {
+        this.artifactFolder = basePath.resolve(ARTIFACT_FOLDER);
+    }
+
+    /**
+     * Returns whether the repository stores its artifacts by hash.
+     */
+    static boolean isContentAddressed(Path basePath) {
+        return Files.isDirectory(basePath.resolve(ARTIFACT_FOLDER));
+    }
+
+    /**
+     * Expands a single collection version.
+     *
+     * @param collectionFile the stored collection
+     * @return the expanded collection or {@code null} if the collection does not exist
+     */
+    @Nullable
+    Content collection(Path collectionFile) throws IOException {
+        return cached(collectionFile, collectionFile, () -> expandCollection(collectionFile));
+    }
+
+    /**
+     * Expands the latest collection version of a release.
+     *
+     * @param aggregateFile the path of the {@code collection.json} aggregate, which is not stored
+     * @param collectionFolder the folder containing the stored collection versions
+     * @return the expanded collection or {@code null} if the release has no collection
+     */
+    @Nullable
+    Content latestCollection(Path aggregateFile, Path collectionFolder) throws IOException {
+        return cached(aggregateFile, collectionFolder, () -> {
+            SortedMap<Integer, Path> versions = findVersions(collectionFolder);
+            return versions.isEmpty() ? null : expandCollection(versions.get(versions.lastKey()));
+        });
+    }
+
+    /**
+     * Expands all the collection versions of a release, in version order.
+     *
+     * @param aggregateFile the path of the {@code collections.json} aggregate, which is not stored
+     * @param collectionFolder the folder containing the stored collection versions
+     * @return the array of expanded collections or {@code null} if the release has no collection
+     */
+    @Nullable
+    Content collections(Path aggregateFile, Path collectionFolder) throws IOException {
+        return cached(aggregateFile, collectionFolder, () -> expandCollections(collectionFolder));
+    }
+
+    /**
+     * Returns a cached expansion, if the stamp of the file it depends on did not change.
+     *
+     * @param key the key of the expansion
+     * @param stampedFile the file or folder whose modification invalidates the expansion
+     * @param expander computes the expansion
+     */
+    private @Nullable Content cached(Path key, Path stampedFile, Expander expander) throws IOException {
+        Stamp stamp = Stamp.of(stampedFile);
+        if (stamp == null) {
+            return null;
+        }
+        Cached cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.stamp().equals(stamp)) {
+            return cached.content();
+        }
+        Content content = expander.expand();
+        // Do not cache the result if the collections were modified while they were read
+        if (content != null && stamp.equals(Stamp.of(stampedFile))) {
+            synchronized (cache) {
+                cache.put(key, new Cached(stamp, content));
+            }
+        }
+        return content;
+    }
+
+    private @Nullable Content expandCollection(Path collectionFile) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Instant lastModified;
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+            lastModified = expand(collectionFile, generator);
+        }
+        return lastModified != null ? new Content(output.toByteArray(), lastModified) : null;
+    }
+
+    private @Nullable Content expandCollections(Path collectionFolder) throws IOException {
+        SortedMap<Integer, Path> versions = findVersions(collectionFolder);
+        if (versions.isEmpty()) {
+            return null;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Instant lastModified = Instant.EPOCH;
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+            generator.writeStartArray();
+            for (Path collectionFile : versions.values()) {
+                Instant collectionModified = expand(collectionFile, generator);
+                // Otherwise deleted in the meantime
+                if (collectionModified != null && collectionModified.isAfter(lastModified)) {
+                    lastModified = collectionModified;
+                }
+            }
+            generator.writeEndArray();
+        }
+        return new Content(output.toByteArray(), lastModified);
+    }
+
+    private static SortedMap<Integer, Path> findVersions(Path collectionFolder) throws IOException {
+        SortedMap<Integer, Path> versions = new TreeMap<>();
+        if (!Files.isDirectory(collectionFolder)) {
+            return versions;
+        }
+        try (Stream<Path> files = Files.list(collectionFolder)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = collectionFolder.relativize(file).toString();
+                if (fileName.endsWith(".json")) {
+                    try {
+                        int version = Integer.parseInt(fileName.substring(0, fileName.length() - ".json".length()));
+                        versions.put(version, file);
+                    } catch (NumberFormatException e) {
+                        // Not a collection version
+                    }
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Copies a stored collection, replacing the hashes of the top-level {@code artifacts} property with the artifacts.
+     *
+     * @return the last modification time of the stored collection or {@code null} if it does not exist
+     */
+    private @Nullable Instant expand(Path collectionFile, JsonGenerator generator) throws IOException {
+        Instant lastModified;
+        InputStream input;
+        try {
+            lastModified = Files.getLastModifiedTime(collectionFile).toInstant();
+            input = Files.newInputStream(collectionFile);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try (InputStream collection = input;
+                JsonParser parser = JSON_FACTORY.createParser(collection)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid collection in artifact store: " + collectionFile);
+            }
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                generator.writeFieldName(name);
+                if (ARTIFACTS_PROPERTY.equals(name) && value == JsonToken.START_ARRAY) {
+                    generator.writeStartArray();
+                    while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        generator.writeRawValue(readArtifact(parser.getText()));
+                    }
+                    if (parser.currentToken() != JsonToken.END_ARRAY) {
+                        throw new IOException("Invalid artifact hash in collection: " + collectionFile);
+                    }
+                    generator.writeEndArray();
+                } else {
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            generator.writeEndObject();
+        }
+        return lastModified;
+    }
+
+    private String readArtifact(String hash) throws IOException {
+        // The hash is part of a file name
+        if (hash.length() != 64 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IOException("Invalid artifact hash: " + hash);
+        }
+        Path artifactFile = artifactFolder.resolve(hash.substring(0, 2) + "/" + hash + ".json");
+        try {
+            return Files.readString(artifactFile, StandardCharsets.UTF_8).strip();
+        } catch (NoSuchFileException e) {
+            throw new IOException("Missing artifact " + hash + " in artifact store.", e);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Serves the files of a TEA repository in the directory layout.
+ * <p>
+ *     Only the paths of the TEA API are mapped to files, so that the internal files of the repository, such as the
+ *     indexes, are never exposed. The flat URLs of the TEA API are mapped to the directory layout of the repository,
+ *     which is either flat or sharded by the first four hexadecimal digits of the UUIDs.
+ * </p>
+ * <p>
+ *     If the artifacts of the repository are content-addressed, the collection endpoints are mapped to the stored
+ *     collections, which are expanded when they change.
+ * </p>
+ */
+final class TeaRequestHandler implements HttpHandler {
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String GZIP = "gzip";
+
+    /**
+     * The values of the {@code identifier-type} enumeration of the TEA API.
+     */
+    private static final Set<String> ID_TYPES = Set.of("CPE", "TEI", "PURL");
+
+    /**
+     * The file that records the directory layout of a repository.
+     * <p>
+     *     The server does not depend on the core module at runtime, so the detection of the layout and the paths of the
+     *     entries duplicate {@code DirectoryLayout}. {@code TeaServerTest} checks that both agree.
+     * </p>
+     */
+    static final String LAYOUT_FILE = ".index/layout";
+
+    /**
+     * The file that records the page size of the product list, like {@code TeaRepository.PRODUCTS_PAGE_SIZE_FILE}.
+     */
+    static final String PRODUCTS_PAGE_SIZE_FILE = ".index/products-page-size";
+
+    private final Path basePath;
+    private final boolean sharded;
+    private final @Nullable StoredCollections storedCollections;
+    private final String contextPath;
+    private final int productsPageSize;
+
+    TeaRequestHandler(Path basePath, String contextPath, int productsPageSize) throws IOException {
+        this.basePath = basePath;
+        this.sharded = isSharded(basePath);
+        this.storedCollections =
+                StoredCollections.isContentAddressed(basePath) ? new StoredCollections(basePath) : null;
+        this.contextPath = contextPath;
+        this.productsPageSize = readProductsPageSize(basePath, productsPageSize);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath().substring(contextPath.length());
+            String file;
+            try {
+                file = resolve(path, exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            if (file == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (storedCollections != null && file.startsWith(StoredCollections.RELEASE_FOLDER + "/")) {
+                serveContent(exchange, expandCollection(storedCollections, file), head);
+            } else {
+                serveFile(exchange, basePath.resolve(file), head);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Maps a path of the TEA API to a file of the repository.
+     *
+     * @param path the path relative to the context path
+     * @param rawQuery the query string of the request
+     * @return the relative path of the file or {@code null} if the path is not a TEA API endpoint
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    @Nullable
+    String resolve(String path, @Nullable String rawQuery) {
+        String[] segments = path.split("/", -1);
+        if (segments.length < 2 || !segments[0].isEmpty()) {
+            return null;
+        }
+        return switch (segments[1]) {
+            case "product" -> segments.length == 3 ? "product/" + uuid(segments[2]) + ".json" : null;
+            case "products" -> segments.length == 2 ? productsPage(rawQuery) : null;
+            case "component" -> {
+                if (segments.length == 3) {
+                    yield entryPath("component", uuid(segments[2])) + ".json";
+                }
+                yield segments.length == 4 && "releases".equals(segments[3])
+                        ? entryPath("component", uuid(segments[2])) + "/releases.json"
+                        : null;
+            }
+            case "release" -> {
+                String releaseFolder = storedCollections != null ? StoredCollections.RELEASE_FOLDER : "release";
+                if (segments.length == 4 && "collection".equals(segments[3])) {
+                    yield entryPath(releaseFolder, uuid(segments[2])) + "/collection.json";
+                }
+                if (segments.length == 4 && "collections".equals(segments[3])) {
+                    yield entryPath(releaseFolder, uuid(segments[2])) + "/collections.json";
+                }
+                yield segments.length == 5 && "collection".equals(segments[3])
+                        ? entryPath(releaseFolder, uuid(segments[2])) + "/collection/" + version(segments[4]) + ".json"
+                        : null;
+            }
+            case "changes" -> {
+                if (segments.length == 2) {
+                    yield "changes.json";
+                }
+                yield segments.length == 3 ? "changes/page-" + page(segments[2]) + ".json" : null;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns whether the repository uses the {@code SHARDED} layout, like {@code DirectoryLayout.detect}.
+     */
+    /**
+     * Returns the page size recorded by the repository or the configured one, if none is recorded.
+     */
+    private static int readProductsPageSize(Path basePath, int defaultPageSize) throws IOException {
+        Path pageSizeFile = basePath.resolve(PRODUCTS_PAGE_SIZE_FILE);
+        if (!Files.exists(pageSizeFile)) {
+            return defaultPageSize;
+        }
+        String value = Files.readString(pageSizeFile, StandardCharsets.UTF_8).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid page size '" + value + "' in file: " + pageSizeFile, e);
+        }
+    }
+
+    private static boolean isSharded(Path basePath) throws IOException {
+        Path layoutFile = basePath.resolve(LAYOUT_FILE);
+        if (!Files.exists(layoutFile)) {
+            return false;
+        }
+        String value =
+                Files.readString(layoutFile, StandardCharsets.UTF_8).trim().toUpperCase(Locale.ROOT);
+        return switch (value) {
+            case "FLAT" -> false;
+            case "SHARDED" -> true;
+            default -> throw new IOException("Unknown directory layout '" + value + "' in file: " + layoutFile);
+        };
+    }
+
+    /**
+     * Returns the path of an entry, like {@code DirectoryLayout.entryPath}.
+     */
+    private String entryPath(String folder, UUID uuid) {
+        String name = uuid.toString();
+        return sharded
+                ? folder + "/" + name.substring(0, 2) + "/" + name.substring(2, 4) + "/" + name
+                : folder + "/" + name;
+    }
+
+    private static UUID uuid(String segment) {
+        return UUID.fromString(segment);
+    }
+
+    private static int version(String segment) {
+        int version = Integer.parseInt(segment);
+        if (version < 0) {
+            throw new IllegalArgumentException("Invalid collection version: " + segment);
+        }
+        return version;
+    }
+
+    private static long page(String segment) {
+        long page = Long.parseLong(segment);
+        if (page < 0) {
+            throw new IllegalArgumentException("Invalid page: " + segment);
+        }
+        return page;
+    }
+
+    /**
+     * Maps the parameters of the product list to a page file.
+     */
+    private String productsPage(@Nullable String rawQuery) {
+        Map<String, String> parameters = parseQuery(rawQuery);
+        long pageOffset = Long.parseLong(parameters.getOrDefault("pageOffset", "0"));
+        String idType = parameters.get("idType");
+        String idValue = parameters.get("idValue");
+        if (idType != null || idValue != null) {
+            if (idType == null || idValue == null || !ID_TYPES.contains(idType) || pageOffset != 0) {
+                throw new IllegalArgumentException("Invalid query by identifier: " + parameters);
+            }
+            return identifierPage(idType, idValue);
+        }
+        long pageSize = Long.parseLong(parameters.getOrDefault("pageSize", String.valueOf(productsPageSize)));
+        if (pageOffset < 0 || pageSize != productsPageSize || pageOffset % pageSize != 0) {
+            throw new IllegalArgumentException("Unsupported page: offset " + pageOffset + ", size " + pageSize);
+        }
+        long page = pageOffset / pageSize;
+        return page == 0 ? "products.json" : "products/page-" + page + ".json";
+    }
+
+    /**
+     * Returns the page that contains the results of a query by identifier, precomputed by the repository manager.
+     * <p>
+     *     The page is named after the SHA-256 hash of the identifier, like in
+     *     {@code DefaultTeaRepositoryManager.writeProductIdentifierPage}. {@code TeaServerTest} checks that both agree.
+     * </p>
+     */
+    private static String identifierPage(String idType, String idValue) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(idValue.getBytes(StandardCharsets.UTF_8));
+        return "products/identifier/" + idType + "/" + HexFormat.of().formatHex(hash) + ".json";
+    }
+
+    private static Map<String, String> parseQuery(@Nullable String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String parameter : rawQuery.split("&", -1)) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : parameter.substring(equals + 1);
+                parameters.putIfAbsent(
+                        URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Expands the stored collections that correspond to a path returned by {@link #resolve(String, String)}.
+     * <p>
+     *     Content-addressed repositories do not store {@code collection.json} and {@code collections.json}: they are
+     *     computed from the stored collection versions.
+     * </p>
+     */
+    private StoredCollections.@Nullable Content expandCollection(StoredCollections collections, String file)
+            throws IOException {
+        Path path = basePath.resolve(file);
+        if (file.endsWith("/collection.json")) {
+            return collections.latestCollection(path, path.resolveSibling("collection"));
+        }
+        if (file.endsWith("/collections.json")) {
+            return collections.collections(path, path.resolveSibling("collection"));
+        }
+        return collections.collection(path);
+    }
+
+    private static void serveContent(HttpExchange exchange, StoredCollections.@Nullable Content content, boolean head)
+            throws IOException {
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        Instant lastModified = content.lastModified();
+        boolean gzip = acceptsGzip(exchange.getRequestHeaders());
+        if (sendHeaders(exchange, etag(lastModified, content.size(), gzip), lastModified, gzip, head)) {
+            ByteBuffer body = content.content(gzip);
+            exchange.sendResponseHeaders(200, body.remaining() == 0 ? -1 : body.remaining());
+            try (OutputStream output = exchange.getResponseBody()) {
+                WritableByteChannel target = Channels.newChannel(output);
+                while (body.hasRemaining()) {
+                    target.write(body);
+                }
+            }
+        }
+    }
+
+    private static void serveFile(HttpExchange exchange, Path file, boolean head) throws IOException {
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null || !attributes.isRegularFile()) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        Instant lastModified = attributes.lastModifiedTime().toInstant();
+        Path servedFile = file;
+        BasicFileAttributes servedAttributes = attributes;
+        boolean gzip = false;
+        if (acceptsGzip(exchange.getRequestHeaders())) {
+            Path compressedFile = file.resolveSibling(file.getFileName() + ".gz");
+            BasicFileAttributes compressedAttributes = readAttributes(compressedFile);
+            // An older compressed file is stale
+            if (compressedAttributes != null
+                    && compressedAttributes.isRegularFile()
+                    && !compressedAttributes.lastModifiedTime().toInstant().isBefore(lastModified)) {
+                servedFile = compressedFile;
+                servedAttributes = compressedAttributes;
+                gzip = true;
+            }
+        }
+        if (!sendHeaders(exchange, etag(lastModified, attributes.size(), gzip), lastModified, gzip, head)) {
+            return;
+        }
+        long size = servedAttributes.size();
+        try (FileChannel channel = FileChannel.open(servedFile)) {
+            exchange.sendResponseHeaders(200, size == 0 ? -1 : size);
+            try (OutputStream output = exchange.getResponseBody()) {
+                WritableByteChannel target = Channels.newChannel(output);
+                for (long position = 0; position < size; ) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+        }
+    }
+
+    private static String etag(Instant lastModified, long size, boolean gzip) {
+        return '"'
+                + Long.toHexString(lastModified.toEpochMilli())
+                + '-'
+                + Long.toHexString(size)
+                + (gzip ? "-gz" : "")
+                + '"';
+    }
+
+    /**
+     * Sets the response headers and answers conditional and {@code HEAD} requests.
+     *
+     * @return {@code true} if the body of the response must be sent
+     */
+    private static boolean sendHeaders(
+            HttpExchange exchange, String etag, Instant lastModified, boolean gzip, boolean head) throws IOException {
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("Content-Type", JSON_CONTENT_TYPE);
+        responseHeaders.set("ETag", etag);
+        responseHeaders.set(
+                "Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atOffset(ZoneOffset.UTC)));
+        // Clients must revalidate, which is cheap thanks to conditional requests
+        responseHeaders.set("Cache-Control", "no-cache");
+        responseHeaders.set("Vary", "Accept-Encoding");
+        if (gzip) {
+            responseHeaders.set("Content-Encoding", GZIP);
+        }
+        if (isNotModified(exchange.getRequestHeaders(), etag, lastModified)) {
+            exchange.sendResponseHeaders(304, -1);
+            return false;
+        }
+        if (head) {
+            exchange.sendResponseHeaders(200, -1);
+            return false;
+        }
+        return true;
+    }
+
+    private static @Nullable BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static boolean acceptsGzip(Headers requestHeaders) {
+        for (String header : requestHeaders.getOrDefault("Accept-Encoding", List.of())) {
+            for (String coding : header.split(",", -1)) {
+                String[] parts = coding.split(";", -1);
+                String name = parts[0].trim();
+                if (GZIP.equalsIgnoreCase(name) || "*".equals(name)) {
+                    return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the conditional request headers.
+     * <p>
+     *     As required by RFC 9110, {@code If-Modified-Since} is ignored if {@code If-None-Match} is present.
+     * </p>
+     */
+    private static boolean isNotModified(Headers requestHeaders, String etag, Instant lastModified) {
+        List<String> ifNoneMatch = requestHeaders.get("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String header : ifNoneMatch) {
+                for (String candidate : header.split(",", -1)) {
+                    String tag = candidate.trim();
+                    if (tag.startsWith("W/")) {
+                        tag = tag.substring(2);
+                    }
+                    if ("*".equals(tag) || etag.equals(tag)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                Instant since = DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifModifiedSince, Instant::from);
+                return !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+            } catch (DateTimeParseException e) {
+                // Invalid dates are ignored
+            }
+        }
+        return false;
+    }
+}
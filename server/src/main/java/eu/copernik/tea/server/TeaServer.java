@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.server;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A read-only HTTP server that publishes a TEA repository written in the directory layout.
+ * <p>
+ *     The server maps the endpoints of the TEA API to the JSON files of the repository and supports conditional
+ *     requests through {@code ETag} and {@code Last-Modified} headers. If the repository was written with the
+ *     {@code PUBLICATION} output profile, the precompressed {@code .gz} files are served to clients that accept them.
+ * </p>
+ * <p>
+ *     If the artifacts of the repository are content-addressed, only the compact form of the collections is stored:
+ *     the server expands them and keeps the result in memory until the stored collections change.
+ * </p>
+ * <p>
+ *     In addition to the TEA API, the change feed of the repository is served at {@code /changes} and its pages at
+ *     {@code /changes/{page}}, so that mirrors can fetch only the objects modified since their last visit.
+ * </p>
+ */
+public final class TeaServer implements Closeable {
+
+    /**
+     * The context path of the TEA API, as in the {@code servers} section of the specification.
+     */
+    public static final String DEFAULT_CONTEXT_PATH = "/tea/v1";
+
+    private static final System.Logger LOGGER = System.getLogger(TeaServer.class.getName());
+
+    private final HttpServer server;
+    private final @Nullable ExecutorService ownExecutor;
+
+    private TeaServer(HttpServer server, @Nullable ExecutorService ownExecutor) {
+        this.server = server;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * Creates a builder for a server publishing the given repository.
+     *
+     * @param basePath the base path of a TEA repository in the directory layout
+     * @return a new builder
+     */
+    public static Builder builder(Path basePath) {
+        return new Builder(basePath);
+    }
+
+    /**
+     * Starts a server from the command line.
+     *
+     * @param args the base path of the repository and, optionally, the port to listen on
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            throw new IllegalArgumentException("Usage: TeaServer <repository path> [<port>]");
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        TeaServer server =
+                builder(Paths.get(args[0])).address(new InetSocketAddress(port)).start();
+        // The port is converted to a string, so that it is not formatted as a number, e.g. "8,080"
+        LOGGER.log(
+                System.Logger.Level.INFO,
+                "Serving {0} on port {1}",
+                args[0],
+                String.valueOf(server.getAddress().getPort()));
+    }
+
+    /**
+     * Returns the address the server is listening on.
+     *
+     * @return the bound address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the server, closing all the open connections.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        if (ownExecutor != null) {
+            ownExecutor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(
+                threads, runnable -> new Thread(runnable, "tea-server-" + threadCount.incrementAndGet()));
+    }
+
+    /**
+     * Builder for {@link TeaServer} instances.
+     */
+    public static final class Builder {
+
+        private final Path basePath;
+        private InetSocketAddress address = new InetSocketAddress(8080);
+        private String contextPath = DEFAULT_CONTEXT_PATH;
+        private int productsPageSize = 100;
+        private int threads = 2 * Runtime.getRuntime().availableProcessors();
+        private @Nullable Executor executor;
+
+        private Builder(Path basePath) {
+            this.basePath = Objects.requireNonNull(basePath, "Base path cannot be null");
+        }
+
+        /**
+         * Sets the address to listen on.
+         *
+         * @param address a socket address, whose port may be {@code 0} to choose a free port
+         * @return this builder
+         */
+        public Builder address(InetSocketAddress address) {
+            this.address = Objects.requireNonNull(address, "Address cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the path prefix of the TEA API.
+         *
+         * @param contextPath a path starting with {@code /}, {@value #DEFAULT_CONTEXT_PATH} by default
+         * @return this builder
+         */
+        public Builder contextPath(String contextPath) {
+            if (!contextPath.startsWith("/")) {
+                throw new IllegalArgumentException("Context path must start with '/': " + contextPath);
+            }
+            this.contextPath = contextPath;
+            return this;
+        }
+
+        /**
+         * Sets the number of products in each page of the published product list.
+         * <p>
+         *     It is only used if the repository does not record the page size it was written with. Requests for other
+         *     page sizes, or for offsets that are not a multiple of the page size, are rejected.
+         * </p>
+         *
+         * @param productsPageSize a positive number of products
+         * @return this builder
+         */
+        public Builder productsPageSize(int productsPageSize) {
+            if (productsPageSize < 1) {
+                throw new IllegalArgumentException("Page size must be positive: " + productsPageSize);
+            }
+            this.productsPageSize = productsPageSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads handling requests.
+         * <p>
+         *     Ignored if an executor is set with {@link #executor(Executor)}.
+         * </p>
+         *
+         * @param threads a positive number of threads
+         * @return this builder
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the executor handling requests.
+         * <p>
+         *     On Java 21 or later, a virtual thread per task executor can be used. The executor is not shut down when
+         *     the server is closed.
+         * </p>
+         *
+         * @param executor an executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+            return this;
+        }
+
+        /**
+         * Binds the server and starts handling requests.
+         * <p>
+         *     The directory layout of the repository is read once: the server must be restarted after a
+         *     migration.
+         * </p>
+         *
+         * @return the running server
+         * @throws IOException if the server cannot be bound or the layout of the repository cannot be read
+         */
+        public TeaServer start() throws IOException {
+            HttpServer server = HttpServer.create(address, 0);
+            String prefix =
+                    contextPath.endsWith("/") ? contextPath.substring(0, contextPath.length() - 1) : contextPath;
+            server.createContext(
+                    prefix.isEmpty() ? "/" : prefix, new TeaRequestHandler(basePath, prefix, productsPageSize));
+            ExecutorService ownExecutor = executor == null ? newExecutor(threads) : null;
+            server.setExecutor(executor != null ? executor : ownExecutor);
+            server.start();
+            return new TeaServer(server, ownExecutor);
+        }
+    }
+}
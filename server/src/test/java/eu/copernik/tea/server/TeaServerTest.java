@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2025 Piotr P. Karwasz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.copernik.tea.server;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.packageurl.PackageURL;
+import eu.copernik.tea.DirectoryLayout;
+import eu.copernik.tea.OutputProfile;
+import eu.copernik.tea.TeaRepository;
+import eu.copernik.tea.TeaRepositoryManager;
+import eu.copernik.tea.model.Artifact;
+import eu.copernik.tea.model.ArtifactType;
+import eu.copernik.tea.model.Collection;
+import eu.copernik.tea.model.Component;
+import eu.copernik.tea.model.Identifier;
+import eu.copernik.tea.model.IdentifierType;
+import eu.copernik.tea.model.Product;
+import eu.copernik.tea.model.Release;
+import eu.copernik.tea.spi.TeaRepositoryManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TeaServerTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private static final String PRODUCT_PURL = "pkg:maven/org.example/product?type=pom&index=";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private TeaServer server;
+
+    private Product product;
+    private Component component;
+    private Release release;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TeaRepository repository = TeaRepository.builder(tempDir)
+                .outputProfile(OutputProfile.PUBLICATION)
+                .productsPageSize(2)
+                .build();
+        try (TeaRepositoryManager manager =
+                TeaRepositoryManagerFactory.getInstance().newInstance(repository)) {
+            for (int i = 0; i < 3; i++) {
+                product = new Product()
+                        .uuid(UUID.randomUUID())
+                        .name("Product " + i)
+                        .addIdentifiersItem(
+                                new Identifier().idType(IdentifierType.PURL).idValue(PRODUCT_PURL + i));
+                manager.saveProduct(product);
+            }
+            component = manager.getOrCreateComponentByPurl(new PackageURL("pkg:maven/org.example/foo"));
+            manager.saveComponent(component.name("Foo"));
+            release = manager.getOrCreateRelease(component, "1.0.0").releaseDate(OffsetDateTime.now(UTC));
+            manager.saveRelease(component, release);
+            for (int version = 1; version <= 2; version++) {
+                manager.saveCollection(new Collection().uuid(release.getUuid()).version(version));
+            }
+        }
+        // The page size is recorded by the repository
+        server = TeaServer.builder(tempDir)
+                .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .threads(2)
+                .start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(
+                "http://localhost:" + server.getAddress().getPort() + TeaServer.DEFAULT_CONTEXT_PATH + path));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void servesRepositoryFiles() throws Exception {
+        String[][] mappings = {
+            {"/product/" + product.getUuid(), "product/" + product.getUuid() + ".json"},
+            {"/products", "products.json"},
+            {"/products?pageOffset=2&pageSize=2", "products/page-1.json"},
+            {"/release/" + release.getUuid() + "/collection", "release/" + release.getUuid() + "/collection.json"},
+            {"/release/" + release.getUuid() + "/collection/1", "release/" + release.getUuid() + "/collection/1.json"},
+            {"/release/" + release.getUuid() + "/collections", "release/" + release.getUuid() + "/collections.json"},
+            {"/changes", "changes.json"},
+            {"/changes/0", "changes/page-0.json"},
+        };
+        for (String[] mapping : mappings) {
+            HttpResponse<byte[]> response = send(request(mapping[0]));
+            assertThat(response.statusCode()).as(mapping[0]).isEqualTo(200);
+            assertThat(response.headers().firstValue("Content-Type")).hasValue("application/json");
+            assertThat(response.body()).isEqualTo(Files.readAllBytes(tempDir.resolve(mapping[1])));
+        }
+    }
+
+    @Test
+    void servesShardedRepositoryAtFlatUrls() throws Exception {
+        server.close();
+        DirectoryLayout.SHARDED.migrate(tempDir, 2);
+        server = TeaServer.builder(tempDir)
+                .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .start();
+        String releaseFolder = DirectoryLayout.SHARDED.entryPath("release", release.getUuid());
+        String componentFolder = DirectoryLayout.SHARDED.entryPath("component", component.getUuid());
+        String[][] mappings = {
+            {"/product/" + product.getUuid(), "product/" + product.getUuid() + ".json"},
+            {"/component/" + component.getUuid(), componentFolder + ".json"},
+            {"/component/" + component.getUuid() + "/releases", componentFolder + "/releases.json"},
+            {"/release/" + release.getUuid() + "/collection", releaseFolder + "/collection.json"},
+            {"/release/" + release.getUuid() + "/collections", releaseFolder + "/collections.json"},
+        };
+        for (String[] mapping : mappings) {
+            HttpResponse<byte[]> response = send(request(mapping[0]));
+            assertThat(response.statusCode()).as(mapping[0]).isEqualTo(200);
+            assertThat(response.body()).isEqualTo(Files.readAllBytes(tempDir.resolve(mapping[1])));
+        }
+        assertThat(tempDir.resolve("release/" + release.getUuid())).doesNotExist();
+    }
+
+    @Test
+    void servesContentAddressedRepository() throws Exception {
+        Path basePath = tempDir.resolve("content-addressed");
+        Artifact bom = new Artifact().uuid(UUID.randomUUID()).name("SBOM").type(ArtifactType.BOM);
+        Artifact vex = new Artifact().uuid(UUID.randomUUID()).name("VEX").type(ArtifactType.VULNERABILITIES);
+        Collection first = new Collection().uuid(release.getUuid()).version(1).addArtifactsItem(bom);
+        Collection second = new Collection()
+                .uuid(release.getUuid())
+                .version(2)
+                .addArtifactsItem(bom)
+                .addArtifactsItem(vex);
+        try (TeaRepositoryManager manager = TeaRepositoryManagerFactory.getInstance()
+                .newInstance(TeaRepository.builder(basePath)
+                        .contentAddressedArtifacts(true)
+                        .build())) {
+            manager.saveCollection(first);
+            manager.saveCollection(second);
+        }
+        // Only the compact collections are stored
+        assertThat(basePath.resolve("release")).doesNotExist();
+        server.close();
+        server = TeaServer.builder(basePath)
+                .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .start();
+
+        ObjectMapper objectMapper =
+                JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        String releasePath = "/release/" + release.getUuid();
+        HttpResponse<byte[]> response = send(request(releasePath + "/collection/1"));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(objectMapper.readValue(response.body(), Collection.class)).isEqualTo(first);
+        response = send(request(releasePath + "/collection"));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(objectMapper.readValue(response.body(), Collection.class)).isEqualTo(second);
+        response = send(request(releasePath + "/collections"));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(objectMapper.readValue(response.body(), new TypeReference<List<Collection>>() {}))
+                .containsExactly(first, second);
+
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+        assertThat(send(request(releasePath + "/collections").header("If-None-Match", etag))
+                        .statusCode())
+                .isEqualTo(304);
+        assertThat(send(request(releasePath + "/collection/3")).statusCode()).isEqualTo(404);
+        assertThat(send(request("/release/" + UUID.randomUUID() + "/collection")).statusCode())
+                .isEqualTo(404);
+
+        // The expanded collections are compressed on demand
+        response = send(request(releasePath + "/collection").header("Accept-Encoding", "gzip"));
+        assertThat(response.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            assertThat(objectMapper.readValue(input, Collection.class)).isEqualTo(second);
+        }
+        // A new version invalidates the cached expansions
+        Collection third = new Collection().uuid(release.getUuid()).version(3).addArtifactsItem(vex);
+        try (TeaRepositoryManager manager = TeaRepositoryManagerFactory.getInstance()
+                .newInstance(TeaRepository.builder(basePath)
+                        .contentAddressedArtifacts(true)
+                        .build())) {
+            manager.saveCollection(third);
+        }
+        response = send(request(releasePath + "/collection"));
+        assertThat(objectMapper.readValue(response.body(), Collection.class)).isEqualTo(third);
+        response = send(request(releasePath + "/collections"));
+        assertThat(objectMapper.readValue(response.body(), new TypeReference<List<Collection>>() {}))
+                .containsExactly(first, second, third);
+    }
+
+    /**
+     * The request handler duplicates the layout logic of the core module, which is only a test dependency.
+     */
+    @Test
+    void requestHandler_agreesWithDirectoryLayout() throws Exception {
+        assertThat(TeaRequestHandler.LAYOUT_FILE).isEqualTo(DirectoryLayout.LAYOUT_FILE);
+        assertThat(TeaRequestHandler.PRODUCTS_PAGE_SIZE_FILE).isEqualTo(TeaRepository.PRODUCTS_PAGE_SIZE_FILE);
+        UUID uuid = UUID.randomUUID();
+        for (DirectoryLayout layout : DirectoryLayout.values()) {
+            Path basePath = tempDir.resolve(layout.name());
+            Files.createDirectories(
+                    basePath.resolve(DirectoryLayout.LAYOUT_FILE).getParent());
+            Files.writeString(basePath.resolve(DirectoryLayout.LAYOUT_FILE), layout.name());
+            assertThat(DirectoryLayout.detect(basePath)).isEqualTo(layout);
+
+            TeaRequestHandler handler = new TeaRequestHandler(basePath, "", 2);
+            assertThat(handler.resolve("/component/" + uuid, null))
+                    .as(layout.name())
+                    .isEqualTo(layout.entryPath("component", uuid) + ".json");
+            assertThat(handler.resolve("/release/" + uuid + "/collection/3", null))
+                    .as(layout.name())
+                    .isEqualTo(layout.entryPath("release", uuid) + "/collection/3.json");
+        }
+    }
+
+    @Test
+    void servesProductsByIdentifier() throws Exception {
+        String query = "/products?idType=PURL&idValue=" + URLEncoder.encode(PRODUCT_PURL + 2, StandardCharsets.UTF_8);
+        HttpResponse<byte[]> response = send(request(query));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(new String(response.body(), StandardCharsets.UTF_8))
+                .contains(product.getUuid().toString())
+                .contains("\"totalResults\":1");
+        assertThat(send(request("/products?idType=PURL")).statusCode()).isEqualTo(400);
+        assertThat(send(request("/products?idType=FOO&idValue=bar")).statusCode())
+                .isEqualTo(400);
+    }
+
+    @Test
+    void servesPrecompressedFiles() throws Exception {
+        String path = "/release/" + release.getUuid() + "/collection";
+        HttpResponse<byte[]> response = send(request(path).header("Accept-Encoding", "br, gzip;q=0.8"));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            assertThat(input.readAllBytes())
+                    .isEqualTo(
+                            Files.readAllBytes(tempDir.resolve("release/" + release.getUuid() + "/collection.json")));
+        }
+        assertThat(send(request(path).header("Accept-Encoding", "gzip;q=0"))
+                        .headers()
+                        .firstValue("Content-Encoding"))
+                .isEmpty();
+    }
+
+    @Test
+    void supportsConditionalRequests() throws Exception {
+        String path = "/product/" + product.getUuid();
+        HttpResponse<byte[]> response = send(request(path));
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+        String lastModified = response.headers().firstValue("Last-Modified").orElseThrow();
+
+        assertThat(send(request(path).header("If-None-Match", "\"other\", " + etag))
+                        .statusCode())
+                .isEqualTo(304);
+        assertThat(send(request(path).header("If-Modified-Since", lastModified)).statusCode())
+                .isEqualTo(304);
+        assertThat(send(request(path).header("If-None-Match", "\"other\"").header("If-Modified-Since", lastModified))
+                        .statusCode())
+                .isEqualTo(200);
+        HttpResponse<byte[]> head = send(request(path).method("HEAD", HttpRequest.BodyPublishers.noBody()));
+        assertThat(head.statusCode()).isEqualTo(200);
+        assertThat(head.headers().firstValue("ETag")).hasValue(etag);
+    }
+
+    @Test
+    void rejectsInvalidRequests() throws Exception {
+        assertThat(send(request("/product/" + UUID.randomUUID())).statusCode()).isEqualTo(404);
+        assertThat(send(request("/product/not-a-uuid")).statusCode()).isEqualTo(400);
+        assertThat(send(request("/products?pageOffset=1")).statusCode()).isEqualTo(400);
+        assertThat(send(request("/.index/component-identifiers.idx")).statusCode())
+                .isEqualTo(404);
+        // Not stored by the repository managers
+        assertThat(send(request("/artifact/" + UUID.randomUUID())).statusCode()).isEqualTo(404);
+        // Non-idempotent requests are not retried by the client if a kept-alive connection is stale: use a new one
+        HttpResponse<Void> post = HttpClient.newHttpClient()
+                .send(
+                        request("/product/" + product.getUuid())
+                                .POST(HttpRequest.BodyPublishers.noBody())
+                                .build(),
+                        HttpResponse.BodyHandlers.discarding());
+        assertThat(post.statusCode()).isEqualTo(405);
+    }
+}